@@ -0,0 +1,34 @@
+package com.weblyzard.sparql.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the streaming-sparql benchmarks with the GC profiler enabled, so that the allocation rate
+ * (<code>gc.alloc.rate.norm</code> = bytes allocated per row) is reported next to the throughput.
+ *
+ * <p>
+ * Accepts the standard JMH command line options, e.g. <code>
+ * java -jar benchmarks.jar TsvParserBenchmark -p shape=WIDE_ROWS
+ * </code>
+ *
+ * @author Albert Weichselbraun
+ */
+public class BenchmarkRunner {
+
+    private BenchmarkRunner() {}
+
+    /**
+     * Main method.
+     *
+     * @param args JMH command line arguments
+     */
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        new Runner(new OptionsBuilder().parent(new CommandLineOptions(args)).addProfiler(GCProfiler.class).build())
+                .run();
+    }
+}
@@ -0,0 +1,97 @@
+package com.weblyzard.sparql.benchmark;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.apache.jena.graph.Node;
+import org.apache.jena.sparql.util.NodeFactoryExtra;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import com.weblyzard.sparql.benchmark.TsvCorpus.TermKind;
+import com.weblyzard.sparql.tsv.TsvParser;
+import com.weblyzard.sparql.tsv.TsvTermParser;
+
+/**
+ * Measures the cost of the TsvParser's resource and literal consumers for single RDF terms.
+ *
+ * <p>
+ * {@link #parseNode(Blackhole)} provides the baseline for Jena's node parsing,
+ * {@link #parseTerm(Blackhole)} for the {@link TsvTermParser}, while
+ * {@link #consumeTerms(ParseCounters, Blackhole)} drives the complete consumer (tokenizing, quote
+ * handling and node parsing) with single column TSV data. The primary score is reported in
+ * terms/s.
+ *
+ * @author Albert Weichselbraun
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class NodeParsingBenchmark {
+
+    private static final int TERMS = 10_000;
+
+    @Param
+    private TermKind kind;
+
+    private String[] terms;
+    private String tsv;
+    private long tsvBytes;
+
+    @Setup
+    public void setUp() {
+        tsv = TsvCorpus.terms(kind, TERMS);
+        tsvBytes = TsvCorpus.toBytes(tsv).length;
+        // NodeFactoryExtra expects Turtle escaping rather than TSV quote doubling
+        terms = TsvCorpus.termValues(kind, TERMS);
+        for (int i = 0; i < terms.length; i++) {
+            if (terms[i].startsWith("\"")) {
+                terms[i] = "\"" + terms[i].substring(1, terms[i].lastIndexOf('"')).replace("\"\"", "\\\"")
+                        + terms[i].substring(terms[i].lastIndexOf('"'));
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TERMS)
+    public void parseNode(Blackhole blackhole) {
+        for (String term : terms) {
+            blackhole.consume(NodeFactoryExtra.parseNode(term));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TERMS)
+    public void parseTerm(Blackhole blackhole) {
+        for (String term : terms) {
+            blackhole.consume(TsvTermParser.parse(term));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TERMS)
+    public void consumeTerms(ParseCounters counters, Blackhole blackhole) throws IOException {
+        TsvParser parser = new TsvParser(new BufferedReader(new StringReader(tsv)));
+        Map<String, Node> tuple;
+        while ((tuple = parser.getTuple()) != null) {
+            blackhole.consume(tuple);
+            counters.rows++;
+        }
+        counters.bytes += tsvBytes;
+    }
+}
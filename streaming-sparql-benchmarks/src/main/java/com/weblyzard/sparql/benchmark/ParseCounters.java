@@ -0,0 +1,28 @@
+package com.weblyzard.sparql.benchmark;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Secondary benchmark results which JMH reports as rows/s and bytes/s next to the primary score.
+ *
+ * @author Albert Weichselbraun
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.OPERATIONS)
+public class ParseCounters {
+
+    /** number of rows returned by the parser. */
+    public long rows;
+    /** number of (uncompressed) bytes consumed by the parser. */
+    public long bytes;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+        rows = 0;
+        bytes = 0;
+    }
+}
@@ -0,0 +1,81 @@
+package com.weblyzard.sparql.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.apache.jena.graph.Node;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import com.weblyzard.sparql.ResultFormat;
+import com.weblyzard.sparql.ResultSetOptions;
+import com.weblyzard.sparql.StreamingResultSet;
+import com.weblyzard.sparql.benchmark.TsvCorpus.Shape;
+import com.weblyzard.sparql.tsv.TsvMode;
+
+/**
+ * Compares the {@link StreamingResultSet} throughput of the supported result formats for the same
+ * data.
+ *
+ * <p>
+ * The primary score is reported in rows/s; the byte counter reports the size of the response in
+ * the respective format.
+ *
+ * @author Albert Weichselbraun
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ResultFormatBenchmark {
+
+    private static final int ROWS = 10_000;
+
+    @Param
+    private Shape shape;
+
+    @Param
+    private ResultFormat format;
+
+    /** the TSV mode used for {@link ResultFormat#TSV} responses. */
+    @Param({"UTF8_BYTES"})
+    private TsvMode mode;
+
+    private ResultSetOptions options;
+    private byte[] response;
+
+    @Setup
+    public void setUp() {
+        response = TsvCorpus.convert(TsvCorpus.generate(shape, ROWS), format);
+        options = ResultSetOptions.builder().format(format).tsvMode(mode).build();
+    }
+
+    /**
+     * Consumes all bindings of every row.
+     */
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void next(ParseCounters counters, Blackhole blackhole) throws IOException {
+        try (StreamingResultSet resultSet = new StreamingResultSet(new ByteArrayInputStream(response), options)) {
+            while (resultSet.hasNext()) {
+                for (Node node : resultSet.next().values()) {
+                    blackhole.consume(node);
+                }
+                counters.rows++;
+            }
+        }
+        counters.bytes += response.length;
+    }
+}
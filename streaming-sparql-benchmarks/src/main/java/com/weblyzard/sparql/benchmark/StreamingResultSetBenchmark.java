@@ -0,0 +1,126 @@
+package com.weblyzard.sparql.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+import org.apache.jena.graph.Node;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import com.weblyzard.sparql.ResultSetOptions;
+import com.weblyzard.sparql.StreamingResultSet;
+import com.weblyzard.sparql.benchmark.TsvCorpus.Shape;
+import com.weblyzard.sparql.encoding.GzipDecoder;
+import com.weblyzard.sparql.tsv.TsvMode;
+
+/**
+ * Measures the end-to-end {@link StreamingResultSet#next()} throughput including UTF-8 decoding
+ * and (optionally) gzip decompression of the server response.
+ *
+ * <p>
+ * The primary score is reported in rows/s.
+ *
+ * @author Albert Weichselbraun
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StreamingResultSetBenchmark {
+
+    private static final int ROWS = 10_000;
+
+    /**
+     * The content encoding used by the simulated server response.
+     */
+    public enum Compression {
+        PLAIN, GZIP
+    }
+
+    @Param
+    private Shape shape;
+
+    @Param
+    private Compression compression;
+
+    @Param
+    private TsvMode mode;
+
+    @Param({"false", "true"})
+    private boolean lazyNodes;
+
+    @Param({"0", "1024"})
+    private int pipelineCapacity;
+
+    @Param({"0"})
+    private int parallelism;
+
+    /** simulated per-row work of the consumer (see {@link Blackhole#consumeCPU(long)}). */
+    @Param({"0"})
+    private long consumerTokens;
+
+    private ResultSetOptions options;
+    private byte[] response;
+    private long tsvBytes;
+
+    @Setup
+    public void setUp() {
+        String tsv = TsvCorpus.generate(shape, ROWS);
+        tsvBytes = TsvCorpus.toBytes(tsv).length;
+        response = compression == Compression.GZIP ? TsvCorpus.toGzipBytes(tsv) : TsvCorpus.toBytes(tsv);
+        options = ResultSetOptions.builder().tsvMode(mode).lazyNodes(lazyNodes)
+                .pipelineCapacity(pipelineCapacity).parallelism(parallelism).build();
+    }
+
+    /**
+     * Consumes all bindings of every row.
+     */
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void next(ParseCounters counters, Blackhole blackhole) throws IOException {
+        try (StreamingResultSet resultSet = new StreamingResultSet(openResponse(), options)) {
+            while (resultSet.hasNext()) {
+                for (Node node : resultSet.next().values()) {
+                    blackhole.consume(node);
+                }
+                Blackhole.consumeCPU(consumerTokens);
+                counters.rows++;
+            }
+        }
+        counters.bytes += tsvBytes;
+    }
+
+    /**
+     * Only consumes the first variable of every row, as common for consumers that only need a few
+     * of the selected columns.
+     */
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void firstVariable(ParseCounters counters, Blackhole blackhole) throws IOException {
+        try (StreamingResultSet resultSet = new StreamingResultSet(openResponse(), options)) {
+            while (resultSet.hasNext()) {
+                blackhole.consume(resultSet.nextRow().get(0));
+                counters.rows++;
+            }
+        }
+        counters.bytes += tsvBytes;
+    }
+
+    private InputStream openResponse() throws IOException {
+        InputStream in = new ByteArrayInputStream(response);
+        return compression == Compression.GZIP ? new GzipDecoder().decode(in) : in;
+    }
+}
@@ -0,0 +1,242 @@
+package com.weblyzard.sparql.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+import org.apache.jena.query.ResultSet;
+import org.apache.jena.query.ResultSetFormatter;
+import org.apache.jena.riot.thrift.BinRDF;
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.engine.ResultSetStream;
+import org.apache.jena.sparql.engine.binding.Binding;
+import org.apache.jena.sparql.engine.binding.BindingFactory;
+import org.apache.jena.sparql.engine.binding.BindingMap;
+import com.weblyzard.sparql.ResultFormat;
+import com.weblyzard.sparql.ResultSetOptions;
+import com.weblyzard.sparql.StreamingResultSet;
+import com.weblyzard.sparql.tsv.TsvMode;
+
+/**
+ * Generates synthetic SPARQL TSV responses for the benchmarks, so that they can be run offline and
+ * yield reproducible results.
+ *
+ * @author Albert Weichselbraun
+ */
+public final class TsvCorpus {
+
+    private static final long SEED = 4711;
+    private static final String RESOURCE_TEMPLATE = "<http://www.htwchur.ch/%d#>";
+    private static final String LITERAL_TEMPLATE = "\"\"%d\"\" and \"\"%d\"\"";
+    private static final String[] WORDS = {"Sophia", "Magdalena", "Scholl", "was", "a", "German",
+        "student", "and", "anti-Nazi", "political", "activist", "active", "within", "the", "White",
+        "Rose", "non-violent", "resistance", "group", "in", "Nazi", "Germany", "Zürich", "Chur"};
+
+    /**
+     * The shape of the generated TSV data.
+     */
+    public enum Shape {
+        /** three short IRIs per row. */
+        SHORT_IRIS,
+        /** sixteen mixed resource and literal columns per row (compare ManyColumnsTsvParserTest). */
+        WIDE_ROWS,
+        /** long language tagged literals spanning multiple lines. */
+        MULTILINE_LITERALS,
+        /** literals containing many quotes escaped as <code>""</code>. */
+        ESCAPED_QUOTES
+    }
+
+    /**
+     * The RDF term used in the single column corpora created by {@link #terms(TermKind, int)}.
+     */
+    public enum TermKind {
+        RESOURCE, LITERAL, LANG_LITERAL, TYPED_LITERAL, ESCAPED_LITERAL
+    }
+
+    private TsvCorpus() {}
+
+    /**
+     * Creates a TSV response with the given shape.
+     *
+     * @param shape the shape of the rows
+     * @param rows the number of rows to generate
+     * @return the TSV response including the header line
+     */
+    public static String generate(Shape shape, int rows) {
+        Random random = new Random(SEED);
+        StringBuilder tsv = new StringBuilder();
+        switch (shape) {
+            case SHORT_IRIS:
+                tsv.append("?s\t?p\t?o\n");
+                for (int i = 0; i < rows; i++) {
+                    tsv.append("<http://test.org/").append(i).append(">\t")
+                            .append("<http://test.org/p").append(random.nextInt(20)).append(">\t")
+                            .append("<http://test.org/").append(random.nextInt(rows)).append(">\n");
+                }
+                break;
+            case WIDE_ROWS:
+                String pattern = "LRLLRRLRLRLLRRLR";
+                for (int col = 0; col < pattern.length(); col++) {
+                    tsv.append(col == 0 ? "" : "\t").append(pattern.charAt(col) == 'R' ? "?res" : "?lit")
+                            .append(col);
+                }
+                tsv.append('\n');
+                for (int i = 0; i < rows; i++) {
+                    for (int col = 0; col < pattern.length(); col++) {
+                        if (col > 0) {
+                            tsv.append('\t');
+                        }
+                        int value = i * pattern.length() + col;
+                        tsv.append(pattern.charAt(col) == 'R' ? String.format(RESOURCE_TEMPLATE, value)
+                                : "\"" + String.format(LITERAL_TEMPLATE, value, value) + "\"");
+                    }
+                    tsv.append('\n');
+                }
+                break;
+            case MULTILINE_LITERALS:
+                tsv.append("?s\t?p\t?o\n");
+                for (int i = 0; i < rows; i++) {
+                    tsv.append("<http://test.org/").append(i).append(">\t")
+                            .append("<http://www.w3.org/2000/01/rdf-schema#comment>\t\"");
+                    for (int line = 0; line < 5; line++) {
+                        tsv.append(line == 0 ? "" : "\n").append(sentence(random, 16));
+                    }
+                    tsv.append("\"@en\n");
+                }
+                break;
+            case ESCAPED_QUOTES:
+                tsv.append("?s\t?o\n");
+                for (int i = 0; i < rows; i++) {
+                    tsv.append("<http://test.org/").append(i).append(">\t\"");
+                    for (int quote = 0; quote < 8; quote++) {
+                        tsv.append("\"\"").append(sentence(random, 3)).append("\"\" ");
+                    }
+                    tsv.append("\"\n");
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported shape " + shape);
+        }
+        return tsv.toString();
+    }
+
+    /**
+     * Creates a single column TSV response that only contains terms of the given kind.
+     *
+     * @param kind the kind of RDF term to generate
+     * @param rows the number of rows to generate
+     * @return the TSV response including the header line
+     */
+    public static String terms(TermKind kind, int rows) {
+        StringBuilder tsv = new StringBuilder("?o\n");
+        for (String term : termValues(kind, rows)) {
+            tsv.append(term).append('\n');
+        }
+        return tsv.toString();
+    }
+
+    /**
+     * Creates the TSV encoded values of RDF terms of the given kind.
+     *
+     * @param kind the kind of RDF term to generate
+     * @param count the number of terms to generate
+     * @return an array of TSV encoded RDF terms
+     */
+    public static String[] termValues(TermKind kind, int count) {
+        Random random = new Random(SEED);
+        String[] result = new String[count];
+        for (int i = 0; i < count; i++) {
+            switch (kind) {
+                case RESOURCE:
+                    result[i] = String.format(RESOURCE_TEMPLATE, i);
+                    break;
+                case LITERAL:
+                    result[i] = "\"" + sentence(random, 4) + "\"";
+                    break;
+                case LANG_LITERAL:
+                    result[i] = "\"" + sentence(random, 4) + "\"@" + (i % 2 == 0 ? "en" : "de");
+                    break;
+                case TYPED_LITERAL:
+                    result[i] = "\"" + random.nextInt() + "\"^^<http://www.w3.org/2001/XMLSchema#int>";
+                    break;
+                case ESCAPED_LITERAL:
+                    result[i] = "\"\"\"" + sentence(random, 2) + "\"\" is \"\"" + sentence(random, 2)
+                            + "\"\"\"";
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unsupported term kind " + kind);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Translates the given TSV response into another SPARQL result format.
+     *
+     * @param tsv the TSV response
+     * @param format the target format
+     * @return the response serialized by Jena in the given format
+     */
+    public static byte[] convert(String tsv, ResultFormat format) {
+        if (format == ResultFormat.TSV) {
+            return toBytes(tsv);
+        }
+        List<Binding> bindings = new ArrayList<>();
+        List<String> vars;
+        try (StreamingResultSet resultSet = new StreamingResultSet(new StringReader(tsv),
+                ResultSetOptions.builder().tsvMode(TsvMode.CHAR_BUFFER).build())) {
+            vars = Arrays.asList(resultSet.getResultVars());
+            while (resultSet.hasNext()) {
+                BindingMap binding = BindingFactory.create();
+                resultSet.next().forEach((var, node) -> binding.add(Var.alloc(var), node));
+                bindings.add(binding);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ResultSet resultSet = new ResultSetStream(vars, null, bindings.iterator());
+        if (format == ResultFormat.JSON) {
+            ResultSetFormatter.outputAsJSON(out, resultSet);
+        } else if (format == ResultFormat.XML) {
+            ResultSetFormatter.outputAsXML(out, resultSet);
+        } else {
+            BinRDF.writeResultSet(out, resultSet);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Returns the UTF-8 encoding of the given TSV data.
+     */
+    public static byte[] toBytes(String tsv) {
+        return tsv.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns the gzip compressed UTF-8 encoding of the given TSV data.
+     */
+    public static byte[] toGzipBytes(String tsv) {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(bos)) {
+            out.write(toBytes(tsv));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bos.toByteArray();
+    }
+
+    private static String sentence(Random random, int words) {
+        StringBuilder s = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            s.append(i == 0 ? "" : " ").append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return s.toString();
+    }
+}
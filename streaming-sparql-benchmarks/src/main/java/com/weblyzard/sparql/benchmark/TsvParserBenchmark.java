@@ -0,0 +1,94 @@
+package com.weblyzard.sparql.benchmark;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.apache.jena.graph.Node;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import com.weblyzard.sparql.ResultParser;
+import com.weblyzard.sparql.ResultSetOptions;
+import com.weblyzard.sparql.benchmark.TsvCorpus.Shape;
+import com.weblyzard.sparql.tsv.CharBufferTsvParser;
+import com.weblyzard.sparql.tsv.TermCache;
+import com.weblyzard.sparql.tsv.TsvMode;
+import com.weblyzard.sparql.tsv.TsvParser;
+import com.weblyzard.sparql.tsv.Utf8TsvParser;
+
+/**
+ * Measures the raw {@link ResultParser#getTuple()} throughput of the TSV parsers for different TSV
+ * shapes.
+ *
+ * <p>
+ * The primary score is reported in rows/s.
+ *
+ * @author Albert Weichselbraun
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TsvParserBenchmark {
+
+    private static final int ROWS = 10_000;
+
+    @Param
+    private Shape shape;
+
+    @Param
+    private TsvMode mode;
+
+    @Param({"false", "true"})
+    private boolean termCache;
+
+    private ResultSetOptions options;
+    private String tsv;
+    private byte[] tsvUtf8;
+    private long tsvBytes;
+
+    @Setup
+    public void setUp() {
+        tsv = TsvCorpus.generate(shape, ROWS);
+        tsvUtf8 = TsvCorpus.toBytes(tsv);
+        tsvBytes = tsvUtf8.length;
+        options = ResultSetOptions.builder().termCache(termCache ? new TermCache() : null).build();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void getTuple(ParseCounters counters, Blackhole blackhole) throws IOException {
+        ResultParser parser;
+        switch (mode) {
+            case UTF8_BYTES:
+                parser = new Utf8TsvParser(new ByteArrayInputStream(tsvUtf8), options);
+                break;
+            case CHAR_BUFFER:
+                parser = new CharBufferTsvParser(new StringReader(tsv), options);
+                break;
+            default:
+                parser = new TsvParser(new BufferedReader(new StringReader(tsv)), options);
+        }
+        Map<String, Node> tuple;
+        while ((tuple = parser.getTuple()) != null) {
+            blackhole.consume(tuple);
+            counters.rows++;
+        }
+        counters.bytes += tsvBytes;
+    }
+}
@@ -0,0 +1,6 @@
+/**
+ * JMH benchmarks for the streaming-sparql parsers based on synthetic SPARQL TSV responses.
+ *
+ * @author Albert Weichselbraun
+ */
+package com.weblyzard.sparql.benchmark;
@@ -0,0 +1,206 @@
+package com.weblyzard.sparql;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalDouble;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import lombok.Builder;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Negotiates the result format with every endpoint based on the throughput observed so far.
+ *
+ * <p>
+ * The negotiator requests all formats it can parse with a weighted Accept header. Formats which
+ * have not been received from an endpoint yet are ranked first, so that every format the endpoint
+ * supports is tried once. Afterwards, the formats are ranked by the rows per second measured for
+ * completely consumed results. Formats which the endpoint ignored in favor of a lower ranked one
+ * are considered unsupported and ranked last.
+ *
+ * <p>
+ * Share a single instance between queries by passing it in the {@link ResultSetOptions}:
+ * <code>ResultSetOptions.builder().negotiator(FormatNegotiator.builder().build()).build()</code>
+ *
+ * @author Albert Weichselbraun
+ *
+ */
+@Slf4j
+public class FormatNegotiator {
+
+    /** the minimum number of rows a result requires for measuring its throughput. */
+    public static final int DEFAULT_MIN_ROWS = 1000;
+    /** the formats requested by default, in the order of their expected throughput. */
+    public static final List<ResultFormat> DEFAULT_FORMATS = Collections.unmodifiableList(
+            Arrays.asList(ResultFormat.THRIFT, ResultFormat.TSV, ResultFormat.JSON, ResultFormat.XML));
+    // the weight of a new measurement in the moving average
+    private static final double SMOOTHING = 0.3;
+
+    private final List<ResultFormat> formats;
+    private final int minRows;
+    private final ConcurrentMap<String, EndpointStatistics> endpoints = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a new negotiator.
+     *
+     * @param formats the formats to request in the order of preference for endpoints without
+     *        measurements (default: {@link #DEFAULT_FORMATS})
+     * @param minRows the minimum number of rows a result requires for measuring its throughput
+     */
+    @Builder
+    private FormatNegotiator(List<ResultFormat> formats, Integer minRows) {
+        this.formats = formats == null ? DEFAULT_FORMATS : Collections.unmodifiableList(new ArrayList<>(formats));
+        this.minRows = minRows == null ? DEFAULT_MIN_ROWS : minRows;
+        if (this.formats.isEmpty()) {
+            throw new IllegalArgumentException("At least one result format is required.");
+        }
+    }
+
+    /**
+     * Returns the formats in the order in which they are requested from the given endpoint.
+     *
+     * @param repositoryUrl the url of the repository
+     * @return the ranked formats
+     */
+    public List<ResultFormat> getRanking(String repositoryUrl) {
+        EndpointStatistics statistics = endpoints.get(repositoryUrl);
+        return statistics == null ? formats : statistics.getRanking();
+    }
+
+    /**
+     * Returns the value of the Accept header for queries to the given endpoint, which lists the
+     * ranked formats with decreasing quality values.
+     *
+     * @param repositoryUrl the url of the repository
+     * @return the Accept header
+     */
+    public String getAcceptHeader(String repositoryUrl) {
+        List<ResultFormat> ranking = getRanking(repositoryUrl);
+        StringBuilder accept = new StringBuilder(ranking.get(0).getContentType());
+        for (int i = 1; i < ranking.size(); i++) {
+            accept.append(", ").append(ranking.get(i).getContentType()).append(";q=0.")
+                    .append(Math.max(1, 10 - i));
+        }
+        return accept.toString();
+    }
+
+    /**
+     * Returns the throughput measured for the given endpoint and format.
+     *
+     * @param repositoryUrl the url of the repository
+     * @param format the result format
+     * @return the moving average of the measured rows per second or an empty
+     *         {@link OptionalDouble}, if the format has not been measured yet.
+     */
+    public OptionalDouble getThroughput(String repositoryUrl, ResultFormat format) {
+        EndpointStatistics statistics = endpoints.get(repositoryUrl);
+        return statistics == null ? OptionalDouble.empty() : statistics.getThroughput(format);
+    }
+
+    /**
+     * Records the format of a response of the given endpoint.
+     */
+    void recordResponse(String repositoryUrl, ResultFormat format) {
+        getStatistics(repositoryUrl).recordResponse(format);
+    }
+
+    /**
+     * Records the throughput of a completely consumed result.
+     *
+     * @param repositoryUrl the url of the repository
+     * @param format the format of the result
+     * @param rows the number of rows
+     * @param nanos the time required for receiving the rows
+     */
+    void recordThroughput(String repositoryUrl, ResultFormat format, long rows, long nanos) {
+        if (rows < minRows || nanos <= 0) {
+            return;
+        }
+        double rowsPerSecond = rows * (double) TimeUnit.SECONDS.toNanos(1) / nanos;
+        log.debug("Received {} rows/s in format {} from '{}'.", (long) rowsPerSecond, format, repositoryUrl);
+        getStatistics(repositoryUrl).recordThroughput(format, rowsPerSecond);
+    }
+
+    private EndpointStatistics getStatistics(String repositoryUrl) {
+        return endpoints.computeIfAbsent(repositoryUrl, url -> new EndpointStatistics(formats));
+    }
+
+    /**
+     * The formats observed for a single endpoint.
+     */
+    private static class EndpointStatistics {
+        private final List<ResultFormat> formats;
+        private final Map<ResultFormat, Double> throughput = new EnumMap<>(ResultFormat.class);
+        private final Set<ResultFormat> unsupported = EnumSet.noneOf(ResultFormat.class);
+        private List<ResultFormat> ranking;
+
+        EndpointStatistics(List<ResultFormat> formats) {
+            this.formats = formats;
+            this.ranking = formats;
+        }
+
+        synchronized List<ResultFormat> getRanking() {
+            return ranking;
+        }
+
+        synchronized OptionalDouble getThroughput(ResultFormat format) {
+            Double value = throughput.get(format);
+            return value == null ? OptionalDouble.empty() : OptionalDouble.of(value);
+        }
+
+        /**
+         * Marks the unmeasured formats ranked above the received one as unsupported.
+         */
+        synchronized void recordResponse(ResultFormat format) {
+            if (!formats.contains(format)) {
+                return;
+            }
+            for (ResultFormat preferred : ranking) {
+                if (preferred == format) {
+                    break;
+                }
+                if (!throughput.containsKey(preferred)) {
+                    unsupported.add(preferred);
+                }
+            }
+            unsupported.remove(format);
+            updateRanking();
+        }
+
+        synchronized void recordThroughput(ResultFormat format, double rowsPerSecond) {
+            if (!formats.contains(format)) {
+                return;
+            }
+            Double previous = throughput.get(format);
+            throughput.put(format,
+                    previous == null ? rowsPerSecond : (1 - SMOOTHING) * previous + SMOOTHING * rowsPerSecond);
+            updateRanking();
+        }
+
+        /**
+         * Ranks untried formats first, followed by the measured formats in the order of their
+         * throughput and the unsupported formats.
+         */
+        private void updateRanking() {
+            List<ResultFormat> result = new ArrayList<>(formats);
+            result.sort(Comparator.comparingInt(this::getGroup)
+                    .thenComparingDouble(format -> -throughput.getOrDefault(format, 0.)));
+            ranking = Collections.unmodifiableList(result);
+        }
+
+        private int getGroup(ResultFormat format) {
+            if (unsupported.contains(format)) {
+                return 2;
+            }
+            return throughput.containsKey(format) ? 1 : 0;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.weblyzard.sparql;
+
+import java.util.Optional;
+
+/**
+ * The SPARQL result formats supported by the {@link StreamingResultSet}.
+ *
+ * @author Albert Weichselbraun
+ */
+public enum ResultFormat {
+
+    /** SPARQL results in tab separated values. */
+    TSV("text/tab-separated-values"),
+    /** SPARQL results in JSON, which preserve blank node labels and datatypes. */
+    JSON("application/sparql-results+json"),
+    /** SPARQL results in XML, which are supported by older endpoints. */
+    XML("application/sparql-results+xml"),
+    /**
+     * SPARQL results in Jena's binary RDF Thrift encoding, which is only supported by Jena based
+     * endpoints such as Fuseki. Other endpoints are asked for TSV instead.
+     */
+    THRIFT("application/sparql-results+thrift", TSV);
+
+    private final String contentType;
+    private final ResultFormat fallback;
+
+    ResultFormat(String contentType) {
+        this(contentType, null);
+    }
+
+    ResultFormat(String contentType, ResultFormat fallback) {
+        this.contentType = contentType;
+        this.fallback = fallback;
+    }
+
+    /**
+     * Returns the format's content type.
+     */
+    public String getContentType() {
+        return contentType;
+    }
+
+    /**
+     * Returns the value of the Accept header which requests this format. Formats that are not
+     * widely supported list their fallback format with a lower quality value.
+     */
+    public String getAcceptHeader() {
+        return fallback == null ? contentType : contentType + ", " + fallback.contentType + ";q=0.9";
+    }
+
+    /**
+     * Determines the format of a server response.
+     *
+     * @param contentType the response's content type, including optional parameters
+     * @return the corresponding {@link ResultFormat} or an empty {@link Optional} if the content
+     *         type is not supported.
+     */
+    public static Optional<ResultFormat> fromContentType(String contentType) {
+        if (contentType != null) {
+            String mimeType = contentType.split(";", 2)[0].trim();
+            for (ResultFormat format : values()) {
+                if (format.contentType.equalsIgnoreCase(mimeType)) {
+                    return Optional.of(format);
+                }
+            }
+        }
+        return Optional.empty();
+    }
+}
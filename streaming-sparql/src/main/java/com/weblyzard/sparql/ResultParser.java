@@ -0,0 +1,28 @@
+package com.weblyzard.sparql;
+
+/**
+ * Translates a SPARQL server's response into result tuples.
+ *
+ * @author Albert Weichselbraun
+ */
+public interface ResultParser {
+
+    /**
+     * Returns the variable names used in the result.
+     */
+    public String[] getResultVars();
+
+    /**
+     * Returns the {@link ResultSchema} shared by all tuples.
+     */
+    public ResultSchema getSchema();
+
+    /**
+     * Parses the next tuple.
+     *
+     * @return a mapping of binding set names to the corresponding
+     *         {@link org.apache.jena.graph.Node} or <code>null</code> if no further tuples are
+     *         available.
+     */
+    public ResultRow getTuple();
+}
@@ -0,0 +1,205 @@
+package com.weblyzard.sparql;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import org.apache.jena.graph.Node;
+import lombok.Getter;
+
+/**
+ * A single result tuple.
+ *
+ * <p>
+ * Bindings are stored in an array indexed by column position and resolved through the shared
+ * {@link ResultSchema}, which avoids allocating hash map entries for every row. The {@link Map}
+ * view only contains bound variables. Rows are copied into a {@link HashMap} once they are
+ * modified, so that modifications neither affect the schema nor other rows.
+ *
+ * <p>
+ * If the result contains a variable more than once, its last column takes precedence.
+ *
+ * @author Albert Weichselbraun
+ */
+public class ResultRow extends AbstractMap<String, Node> {
+
+    @Getter
+    private final ResultSchema schema;
+    private final Node[] values;
+    // the bindings, once the row has been modified
+    private Map<String, Node> modified;
+
+    /**
+     * Creates a row backed by the given values.
+     *
+     * @param schema the schema of the result
+     * @param values the bindings in column order; unbound columns are <code>null</code>.
+     */
+    public ResultRow(ResultSchema schema, Node[] values) {
+        this.schema = schema;
+        this.values = values;
+    }
+
+    /**
+     * Returns the binding of the given column.
+     *
+     * @param idx the column index
+     * @return the bound {@link Node} or <code>null</code> if the variable is unbound.
+     */
+    public Node get(int idx) {
+        return modified == null ? getValue(idx) : modified.get(schema.getVariable(idx));
+    }
+
+    /**
+     * Returns the binding of the given column as retrieved from the server.
+     *
+     * @param idx the column index
+     * @return the bound {@link Node} or <code>null</code> if the variable is unbound.
+     */
+    protected Node getValue(int idx) {
+        return values[idx];
+    }
+
+    /**
+     * Returns a new row with the bindings retrieved from the server, i.e. without the modifications
+     * of this row. Both rows share the underlying bindings.
+     *
+     * @return the copy of the original row
+     */
+    public ResultRow copyOriginal() {
+        return new ResultRow(schema, values);
+    }
+
+    @Override
+    public Node get(Object variable) {
+        if (modified != null) {
+            return modified.get(variable);
+        }
+        int idx = schema.indexOf(variable);
+        return idx < 0 ? null : getValue(idx);
+    }
+
+    @Override
+    public boolean containsKey(Object variable) {
+        return modified == null ? get(variable) != null : modified.containsKey(variable);
+    }
+
+    @Override
+    public int size() {
+        if (modified != null) {
+            return modified.size();
+        }
+        int size = 0;
+        for (int i = 0; i < values.length; i++) {
+            if (isBound(i)) {
+                size++;
+            }
+        }
+        return size;
+    }
+
+    @Override
+    public Node put(String variable, Node node) {
+        return getModifiable().put(variable, node);
+    }
+
+    @Override
+    public Node remove(Object variable) {
+        return getModifiable().remove(variable);
+    }
+
+    @Override
+    public void clear() {
+        getModifiable().clear();
+    }
+
+    /**
+     * Copies the bindings into a modifiable map, if necessary.
+     */
+    private Map<String, Node> getModifiable() {
+        if (modified == null) {
+            modified = new HashMap<>(this);
+        }
+        return modified;
+    }
+
+    /**
+     * @return whether the given column is bound and not superseded by a later column of the same
+     *         variable.
+     */
+    private boolean isBound(int idx) {
+        return getValue(idx) != null && schema.indexOf(schema.getVariable(idx)) == idx;
+    }
+
+    @Override
+    public Set<Entry<String, Node>> entrySet() {
+        if (modified != null) {
+            return modified.entrySet();
+        }
+        return new AbstractSet<Entry<String, Node>>() {
+
+            @Override
+            public Iterator<Entry<String, Node>> iterator() {
+                return new BindingIterator();
+            }
+
+            @Override
+            public int size() {
+                return ResultRow.this.size();
+            }
+        };
+    }
+
+    /**
+     * Iterates over the bound columns. Modifications are applied to a copy of the bindings and,
+     * therefore, do not affect the iteration.
+     */
+    private class BindingIterator implements Iterator<Entry<String, Node>> {
+        private int idx = nextBinding(0);
+        private String last;
+
+        @Override
+        public boolean hasNext() {
+            return idx < values.length;
+        }
+
+        @Override
+        public Entry<String, Node> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            last = schema.getVariable(idx);
+            Entry<String, Node> entry = new SimpleEntry<String, Node>(last, getValue(idx)) {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                public Node setValue(Node value) {
+                    ResultRow.this.put(getKey(), value);
+                    return super.setValue(value);
+                }
+            };
+            idx = nextBinding(idx + 1);
+            return entry;
+        }
+
+        @Override
+        public void remove() {
+            if (last == null) {
+                throw new IllegalStateException();
+            }
+            ResultRow.this.remove(last);
+            last = null;
+        }
+
+        private int nextBinding(int start) {
+            int i = start;
+            while (i < values.length && !isBound(i)) {
+                i++;
+            }
+            return i;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.weblyzard.sparql;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The variables of a SPARQL result and their column positions.
+ *
+ * <p>
+ * A schema is computed once per result set from its header and shared by all of its
+ * {@link ResultRow}s.
+ *
+ * @author Albert Weichselbraun
+ */
+public final class ResultSchema {
+
+    private final String[] variables;
+    private final Map<String, Integer> index;
+
+    /**
+     * Creates the schema for the given result variables.
+     *
+     * @param variables the result variables in column order
+     */
+    public ResultSchema(String[] variables) {
+        this.variables = variables.clone();
+        index = new HashMap<>(variables.length * 2);
+        for (int i = 0; i < variables.length; i++) {
+            // the last column of a variable takes precedence
+            index.put(variables[i], i);
+        }
+    }
+
+    /**
+     * Returns the position of the given variable.
+     *
+     * @param variable the variable name
+     * @return the variable's column or -1, if the variable is not part of the result.
+     */
+    public int indexOf(Object variable) {
+        Integer idx = index.get(variable);
+        return idx == null ? -1 : idx;
+    }
+
+    /**
+     * Returns the name of the variable at the given position.
+     */
+    public String getVariable(int idx) {
+        return variables[idx];
+    }
+
+    /**
+     * Returns the number of variables.
+     */
+    public int size() {
+        return variables.length;
+    }
+}
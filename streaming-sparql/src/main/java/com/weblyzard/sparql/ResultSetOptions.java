@@ -0,0 +1,131 @@
+package com.weblyzard.sparql;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import com.weblyzard.sparql.cache.RevalidationCache;
+import com.weblyzard.sparql.encoding.ContentDecoders;
+import com.weblyzard.sparql.tsv.CharBufferTsvParser;
+import com.weblyzard.sparql.tsv.TermCache;
+import com.weblyzard.sparql.tsv.TsvMode;
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * Options that control how a {@link StreamingResultSet} processes the server's response.
+ *
+ * <p>
+ * Example: <code>ResultSetOptions.builder().tsvMode(TsvMode.CHAR_BUFFER).build()</code>
+ *
+ * @author Albert Weichselbraun
+ */
+@Value
+@Builder
+public class ResultSetOptions {
+
+    /** the default maximum number of remaining bytes read for reusing the connection. */
+    public static final long DEFAULT_DRAIN_THRESHOLD = 64 * 1024;
+
+    /** the options used if no options are specified. */
+    public static final ResultSetOptions DEFAULT = ResultSetOptions.builder().build();
+
+    /**
+     * the result format requested from the server. Responses are parsed according to the content
+     * type returned by the server, which might differ from the requested one.
+     */
+    @Builder.Default
+    private final ResultFormat format = ResultFormat.TSV;
+
+    /**
+     * an optional {@link FormatNegotiator} which selects the requested result formats per
+     * endpoint based on the observed throughput, rather than requesting {@link #format}. Pass the
+     * same instance to share the observations between queries.
+     */
+    private final FormatNegotiator negotiator;
+
+    /**
+     * the decoders for compressed responses, whose encodings are advertised to the server (default:
+     * {@link ContentDecoders#getDefault()}).
+     */
+    @Builder.Default
+    private final ContentDecoders contentDecoders = ContentDecoders.getDefault();
+
+    /**
+     * an optional {@link RevalidationCache} which keeps recent results together with their
+     * validators, so that repeated queries are sent as conditional requests and answered from the
+     * cache if the server confirms that the result has not changed.
+     */
+    private final RevalidationCache revalidationCache;
+
+    /** the strategy used for tokenizing TSV responses. */
+    @Builder.Default
+    private final TsvMode tsvMode = TsvMode.LINE;
+
+    /** the initial size of the read-ahead buffer (chars or bytes) used by the buffer based TSV modes. */
+    @Builder.Default
+    private final int readAheadSize = CharBufferTsvParser.DEFAULT_READ_AHEAD_SIZE;
+
+    /**
+     * an optional {@link TermCache} that provides shared {@link org.apache.jena.graph.Node}
+     * instances for frequent terms. Pass the same instance to share the cache between result sets.
+     */
+    private final TermCache termCache;
+
+    /**
+     * whether cells are kept as raw text and only parsed into {@link org.apache.jena.graph.Node}s
+     * on first access. Recommended if consumers only access some of the variables of every row.
+     */
+    private final boolean lazyNodes;
+
+    /**
+     * the variables (without the leading <code>?</code>) required by the caller or
+     * <code>null</code> for all variables. The parsers skip the columns of all other variables,
+     * which remain unbound in the result.
+     */
+    private final Set<String> projection;
+
+    /**
+     * the number of rows buffered by a background thread which reads and parses the response
+     * ahead of the consumer (see {@link com.weblyzard.sparql.pipeline.PipelinedResultParser}). The
+     * default (0) processes the response on the caller's thread.
+     */
+    private final int pipelineCapacity;
+
+    /**
+     * the {@link Executor} which runs the background threads of pipelined and parallel processing
+     * (default: {@link StreamingQueryExecutor#getDefaultExecutor()}). Parallel parsing requires up
+     * to {@link #parallelism} threads in addition to the thread which splits the response.
+     */
+    private final Executor executor;
+
+    /**
+     * the number of threads of the {@link #executor} used for parsing the response (see
+     * {@link com.weblyzard.sparql.tsv.ParallelTsvParser}). The default (0) parses the response
+     * sequentially. Parallel parsing always scans characters, i.e. it uses
+     * {@link TsvMode#CHAR_BUFFER} rather than {@link TsvMode#UTF8_BYTES}.
+     */
+    private final int parallelism;
+
+    /**
+     * whether parallel parsing may return rows out of order, which increases throughput if chunks
+     * take different amounts of time to parse.
+     */
+    private final boolean parallelUnordered;
+
+    /**
+     * an optional deadline for the query, i.e. the maximum time from sending the query until the
+     * result has been consumed. Queries exceeding their deadline are cancelled and their
+     * connection is aborted (see {@link StreamingResultSet#cancel()}).
+     */
+    private final Duration deadline;
+
+    /**
+     * the maximum number of remaining bytes which are read when a partially consumed result is
+     * closed, so that the connection can be reused. Connections of responses with more remaining
+     * bytes (or an unknown length exceeding this threshold) are closed instead. Responses read by
+     * background threads (see {@link #pipelineCapacity} and {@link #parallelism}) are never
+     * drained.
+     */
+    @Builder.Default
+    private final long drainThreshold = DEFAULT_DRAIN_THRESHOLD;
+}
@@ -0,0 +1,77 @@
+package com.weblyzard.sparql;
+
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import org.apache.jena.graph.Node;
+
+/**
+ * A {@link Spliterator} over the rows of a {@link StreamingResultSet}.
+ *
+ * <p>
+ * Splitting reads the next batch of rows from the result set and hands it over as an array based
+ * {@link Spliterator}, which fork-join workers can split further. In contrast to
+ * {@link Spliterators#spliteratorUnknownSize(java.util.Iterator, int)}, batches have a fixed
+ * size, so that even moderately sized results are distributed across all workers.
+ *
+ * @author Albert Weichselbraun
+ */
+class ResultSetSpliterator implements Spliterator<Map<String, Node>> {
+
+    /** the default number of rows handed out per split. */
+    static final int DEFAULT_BATCH_SIZE = 128;
+
+    private final StreamingResultSet resultSet;
+    private final int batchSize;
+
+    /**
+     * Creates a {@link Spliterator} for the given result set.
+     *
+     * @param resultSet the {@link StreamingResultSet} to consume
+     * @param batchSize the number of rows handed out per split
+     */
+    ResultSetSpliterator(StreamingResultSet resultSet, int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("The batch size must be positive.");
+        }
+        this.resultSet = resultSet;
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super Map<String, Node>> action) {
+        if (!resultSet.hasNext()) {
+            return false;
+        }
+        action.accept(resultSet.next());
+        return true;
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super Map<String, Node>> action) {
+        while (resultSet.hasNext()) {
+            action.accept(resultSet.next());
+        }
+    }
+
+    @Override
+    public Spliterator<Map<String, Node>> trySplit() {
+        Object[] batch = new Object[batchSize];
+        int size = 0;
+        while (size < batchSize && resultSet.hasNext()) {
+            batch[size++] = resultSet.next();
+        }
+        return size == 0 ? null : Spliterators.spliterator(batch, 0, size, characteristics());
+    }
+
+    @Override
+    public long estimateSize() {
+        return Long.MAX_VALUE;
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | NONNULL;
+    }
+}
@@ -1,14 +1,20 @@
 package com.weblyzard.sparql;
 
 import java.io.IOException;
-import java.io.OutputStream;
+import java.io.InterruptedIOException;
 import java.net.HttpURLConnection;
-import java.net.URL;
-import java.nio.charset.Charset;
-import java.nio.charset.StandardCharsets;
-import java.util.Arrays;
-import org.apache.http.NameValuePair;
-import org.apache.http.client.utils.URLEncodedUtils;
+import java.util.concurrent.Executor;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import com.weblyzard.sparql.cache.RevalidationCache;
+import com.weblyzard.sparql.reactive.ResultPublisher;
+import com.weblyzard.sparql.transport.Cancellation;
+import com.weblyzard.sparql.transport.HttpClientTransport;
+import com.weblyzard.sparql.transport.SparqlRequest;
+import com.weblyzard.sparql.transport.SparqlResponse;
+import com.weblyzard.sparql.transport.Transport;
 import lombok.extern.slf4j.Slf4j;
 
 /**
@@ -24,17 +30,28 @@ import lombok.extern.slf4j.Slf4j;
 public class StreamingQueryExecutor {
 
     private static final String USER_AGENT = "iSPARQL Library 0.0.6";
-    protected static final String ACCEPT_CONTENT_TYPE = "text/tab-separated-values";
-    private static final String POST_CONTENT_TYPE = "application/sparql-query";
-    protected static final String COMPRESSED_CONTENT_ENCODING = "gzip";
 
-    private static final int MAX_GET_QUERY_LEN = 2 * 1024 - 1;
+    private StreamingQueryExecutor() {
+    }
 
-    static {
-        System.setProperty("http.maxConnections", Integer.toString(Runtime.getRuntime().availableProcessors()));
+    /**
+     * Returns the {@link Transport} used if no transport is specified. The default transport
+     * pools connections with up to {@link HttpClientTransport#DEFAULT_MAX_CONNECTIONS_PER_ENDPOINT}
+     * connections per endpoint. Queries which do not obtain a connection within
+     * {@link HttpClientTransport#DEFAULT_CONNECTION_REQUEST_TIMEOUT} milliseconds fail, e.g. if
+     * unclosed result sets occupy all connections.
+     */
+    public static Transport getDefaultTransport() {
+        return DefaultTransportHolder.TRANSPORT;
     }
 
-    private StreamingQueryExecutor() {
+    /**
+     * Returns the {@link Executor} used for asynchronous queries and background parsing if no
+     * executor is specified. The executor runs tasks on daemon threads, which are discarded after
+     * being idle for a minute.
+     */
+    public static Executor getDefaultExecutor() {
+        return DefaultExecutorHolder.EXECUTOR;
     }
 
     /**
@@ -47,21 +64,102 @@ public class StreamingQueryExecutor {
      * @throws IOException in case of IO errors.
      */
     public static StreamingResultSet getResultSet(String repositoryUrl, String query, int timeout) throws IOException {
-        HttpURLConnection conn;
-        String queryString = URLEncodedUtils.format(Arrays.asList(new Pair("query", query)), StandardCharsets.UTF_8);
-
-        // open connection
-        if ((repositoryUrl.length() + queryString.length()) < MAX_GET_QUERY_LEN) {
-            conn = (HttpURLConnection) new URL(repositoryUrl + "?" + queryString).openConnection();
-            setCommonHeaders(conn, timeout);
-        } else {
-            conn = openPostConnection(repositoryUrl, query, timeout);
+        return getResultSet(repositoryUrl, query, timeout, ResultSetOptions.DEFAULT);
+    }
+
+    /**
+     * Open a connection to the repository and return a {@link StreamingResultSet} for processing.
+     *
+     * @param repositoryUrl the url of the repository to query
+     * @param query the query to perform on the repository
+     * @param timeout query timeout in milliseconds.
+     * @param options the {@link ResultSetOptions} used for processing the server's response.
+     * @return a {@link StreamingResultSet} for processing
+     * @throws IOException in case of IO errors.
+     */
+    public static StreamingResultSet getResultSet(String repositoryUrl, String query, int timeout,
+            ResultSetOptions options) throws IOException {
+        return getResultSet(getDefaultTransport(), repositoryUrl, query, timeout, options);
+    }
+
+    /**
+     * Query the repository with the given {@link Transport} and return a {@link StreamingResultSet}
+     * for processing.
+     *
+     * @param transport the {@link Transport} used for querying the repository
+     * @param repositoryUrl the url of the repository to query
+     * @param query the query to perform on the repository
+     * @param timeout query timeout in milliseconds.
+     * @param options the {@link ResultSetOptions} used for processing the server's response.
+     * @return a {@link StreamingResultSet} for processing
+     * @throws IOException in case of IO errors.
+     */
+    public static StreamingResultSet getResultSet(Transport transport, String repositoryUrl, String query,
+            int timeout, ResultSetOptions options) throws IOException {
+        RevalidationCache cache = options.getRevalidationCache();
+        RevalidationCache.CachedResult cached =
+                cache == null ? null : cache.lookup(repositoryUrl, query, timeout, options);
+        Cancellation cancellation =
+                options.getDeadline() == null ? new Cancellation() : new Cancellation(options.getDeadline());
+        SparqlResponse response;
+        StreamingResultSet resultSet;
+        try {
+            response = transport.execute(createRequest(repositoryUrl, query, timeout, options, cached, cancellation));
+            if (cached != null && response.getStatusCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                cancellation.complete();
+                response.close();
+                log.debug("iSparql replaying cached result of query '{}'.", query);
+                return cached.replay();
+            }
+
+            // create result set
+            log.info("iSparql receiving '{}' bytes of content type '{}' with encoding '{}'.",
+                    response.getContentLength(), response.getContentType(), response.getContentEncoding());
+            resultSet = new StreamingResultSet(response, options, repositoryUrl, cancellation);
+        } catch (IOException e) {
+            cancellation.complete();
+            if (cancellation.isDeadlineExceeded()) {
+                InterruptedIOException timeoutException = new InterruptedIOException(
+                        String.format("Query exceeded its deadline of %d ms.", options.getDeadline().toMillis()));
+                timeoutException.initCause(e);
+                throw timeoutException;
+            }
+            throw e;
         }
+        return cache == null ? resultSet : cache.record(repositoryUrl, query, timeout, options, response, resultSet);
+    }
+
+    /**
+     * Return a {@link ResultPublisher} which queries the repository once a subscriber subscribes
+     * and emits the result's rows according to the subscriber's demand.
+     *
+     * @param transport the {@link Transport} used for querying the repository
+     * @param repositoryUrl the url of the repository to query
+     * @param query the query to perform on the repository
+     * @param timeout query timeout in milliseconds.
+     * @param options the {@link ResultSetOptions} used for processing the server's response.
+     * @param executor the {@link Executor} used for sending the query and reading the response
+     * @return a {@link ResultPublisher} of the query's rows
+     */
+    public static ResultPublisher getResultPublisher(Transport transport, String repositoryUrl, String query,
+            int timeout, ResultSetOptions options, Executor executor) {
+        return new ResultPublisher(() -> getResultSet(transport, repositoryUrl, query, timeout, options), executor);
+    }
 
-        // create result set
-        log.info("iSparql receiving '{}' bytes of content type '{}' with encoding '{}'.", conn.getContentLengthLong(),
-                conn.getContentType(), conn.getContentEncoding());
-        return new StreamingResultSet(conn);
+    /**
+     * Return a {@link ResultPublisher} for the given query, which uses the default transport and
+     * executor.
+     *
+     * @param repositoryUrl the url of the repository to query
+     * @param query the query to perform on the repository
+     * @param timeout query timeout in milliseconds.
+     * @param options the {@link ResultSetOptions} used for processing the server's response.
+     * @return a {@link ResultPublisher} of the query's rows
+     */
+    public static ResultPublisher getResultPublisher(String repositoryUrl, String query, int timeout,
+            ResultSetOptions options) {
+        return getResultPublisher(getDefaultTransport(), repositoryUrl, query, timeout, options,
+                getDefaultExecutor());
     }
 
     /**
@@ -77,57 +175,59 @@ public class StreamingQueryExecutor {
     }
 
     /**
-     * Handle large queries which require a POST query.
+     * Create the {@link SparqlRequest} for the given query.
      *
      * @param repositoryUrl the URL of the repository to query
-     * @param queryString the SPARQL query
-     * @return a {@link HttpURLConnection} to the given repository
-     * @throws IOException in case of IO errors
+     * @param query the SPARQL query
+     * @param timeout query timeout in milliseconds.
+     * @param options the {@link ResultSetOptions} which specify the requested result format or
+     *        the {@link FormatNegotiator} which selects it, and the supported content encodings.
+     * @return the corresponding {@link SparqlRequest}, including the HTTP headers common to all
+     *         queries.
      */
-    private static HttpURLConnection openPostConnection(String repositoryUrl, String queryString, int timeout)
-            throws IOException {
-        URL url = new URL(repositoryUrl);
-        HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-        setCommonHeaders(conn, timeout);
-        conn.setRequestProperty("Content-Type", POST_CONTENT_TYPE);
-
-        conn.setRequestMethod("POST");
-        conn.setDoOutput(true);
-        conn.setDoInput(true);
-        // send form
-        try (OutputStream out = conn.getOutputStream()) {
-            out.write(queryString.getBytes(Charset.forName("UTF-8")));
-        }
-        return conn;
+    static SparqlRequest createRequest(String repositoryUrl, String query, int timeout, ResultSetOptions options) {
+        return createRequest(repositoryUrl, query, timeout, options, null, null);
     }
 
     /**
-     * Set the HTTP header common to all connections.
-     *
-     * @param conn the {@link HttpURLConnection} to the SPARQL repository.
+     * Create the {@link SparqlRequest} for the given query, which is sent as a conditional request
+     * if a cached result is available and may be aborted by the given {@link Cancellation}.
      */
-    private static void setCommonHeaders(HttpURLConnection conn, int timeout) {
-        conn.setRequestProperty("User-Agent", USER_AGENT);
-        conn.setRequestProperty("Accept", ACCEPT_CONTENT_TYPE);
-        conn.setRequestProperty("Accept-Encoding", COMPRESSED_CONTENT_ENCODING);
+    private static SparqlRequest createRequest(String repositoryUrl, String query, int timeout,
+            ResultSetOptions options, RevalidationCache.CachedResult cached, Cancellation cancellation) {
+        String accept = options.getNegotiator() == null ? options.getFormat().getAcceptHeader()
+                : options.getNegotiator().getAcceptHeader(repositoryUrl);
+        SparqlRequest.SparqlRequestBuilder request = SparqlRequest.builder().endpointUrl(repositoryUrl).query(query)
+                .header("User-Agent", USER_AGENT).header("Accept", accept)
+                .header("Accept-Encoding", options.getContentDecoders().getAcceptEncoding())
+                .cancellation(cancellation);
         if (timeout > 0) {
-            conn.setRequestProperty("Timeout", Integer.toString(timeout));
+            request.header("Timeout", Integer.toString(timeout));
         }
-    }
-
-    private static class Pair extends org.apache.jena.atlas.lib.Pair<String, String> implements NameValuePair {
-        public Pair(String name, String value) {
-            super(name, value);
+        if (cached != null) {
+            cached.addValidators(request);
         }
+        return request.build();
+    }
 
-        @Override
-        public String getName() {
-            return getLeft();
-        }
+    /**
+     * Lazily creates the default transport.
+     */
+    private static class DefaultTransportHolder {
+        private static final Transport TRANSPORT = HttpClientTransport.builder().build();
+    }
 
-        @Override
-        public String getValue() {
-            return getRight();
-        }
+    /**
+     * Lazily creates the default executor.
+     */
+    private static class DefaultExecutorHolder {
+        private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+        private static final Executor EXECUTOR = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60, TimeUnit.SECONDS,
+                new SynchronousQueue<>(), runnable -> {
+                    Thread thread =
+                            new Thread(runnable, "streaming-sparql-worker-" + THREAD_COUNT.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
     }
 }
@@ -3,15 +3,36 @@ package com.weblyzard.sparql;
 import java.io.BufferedReader;
 import java.io.Closeable;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
 import java.net.HttpURLConnection;
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.StandardCharsets;
+import java.nio.charset.UnsupportedCharsetException;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.Optional;
 import java.util.stream.Collectors;
-import java.util.zip.GZIPInputStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 import org.apache.jena.graph.Node;
+import com.weblyzard.sparql.json.JsonResultParser;
+import com.weblyzard.sparql.pipeline.PipelinedResultParser;
+import com.weblyzard.sparql.thrift.ThriftResultParser;
+import com.weblyzard.sparql.transport.Cancellation;
+import com.weblyzard.sparql.transport.SparqlResponse;
+import com.weblyzard.sparql.transport.UrlConnectionResponse;
+import com.weblyzard.sparql.tsv.CharBufferTsvParser;
+import com.weblyzard.sparql.tsv.ParallelTsvParser;
+import com.weblyzard.sparql.tsv.TsvMode;
 import com.weblyzard.sparql.tsv.TsvParser;
+import com.weblyzard.sparql.tsv.Utf8TsvParser;
+import com.weblyzard.sparql.xml.XmlResultParser;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 
@@ -26,13 +47,34 @@ import lombok.extern.slf4j.Slf4j;
  */
 @Slf4j
 public class StreamingResultSet implements Iterator<Map<String, Node>>, Closeable {
-    private BufferedReader in;
+    private Closeable in;
+    // the server's response, if any
+    private SparqlResponse response;
 
-    private final TsvParser tsvParser;
-    private Map<String, Node> currentTuple;
+    private final ResultParser parser;
+    private ResultRow currentTuple;
     private boolean hasNext = true;
     @Getter
     private int rowNumber;
+    /** the format of the parsed input. */
+    @Getter
+    private final ResultFormat format;
+    // the endpoint and negotiator which receive the throughput of the response, if any
+    private String repositoryUrl;
+    private FormatNegotiator negotiator;
+    private long startNanos;
+    // records IO errors of the server's response, if any
+    private TruncationDetectingInputStream body;
+    // the encoded body, which is drained when closing partially consumed responses
+    private TruncationDetectingInputStream rawBody;
+    private long drainThreshold;
+    // aborts the server's response, if any
+    private Cancellation cancellation;
+    // the result set whose rows are provided by the parser, if any
+    private StreamingResultSet source;
+    private volatile boolean cancelled;
+    // whether all rows have been read, after which the result set cannot be cancelled anymore
+    private boolean completed;
 
     /**
      * Create a {@link StreamingResultSet} that consumes the given {@link BufferedReader}.
@@ -41,10 +83,70 @@ public class StreamingResultSet implements Iterator<Map<String, Node>>, Closeabl
      * @throws IOException in case of IO errors.
      */
     public StreamingResultSet(BufferedReader in) throws IOException {
+        this(in, ResultSetOptions.DEFAULT);
+    }
+
+    /**
+     * Create a {@link StreamingResultSet} that consumes the given {@link Reader}.
+     *
+     * <p>
+     * {@link TsvMode#UTF8_BYTES} requires an {@link InputStream}; readers are processed with
+     * {@link TsvMode#CHAR_BUFFER} instead.
+     *
+     * @param in the {@link Reader} to consume.
+     * @param options the {@link ResultSetOptions} used for processing the input.
+     * @throws IOException in case of IO errors.
+     */
+    public StreamingResultSet(Reader in, ResultSetOptions options) throws IOException {
+        this.in = in;
+        format = ResultFormat.TSV;
+        parser = createPipeline(createParser(in, options), options);
+        if ((currentTuple = parser.getTuple()) == null) {
+            hasNext = false;
+            complete();
+        }
+    }
+
+    /**
+     * Create a {@link StreamingResultSet} that consumes the given UTF-8 encoded
+     * {@link InputStream}.
+     *
+     * @param in the {@link InputStream} to consume.
+     * @param options the {@link ResultSetOptions} used for processing the input, which is expected
+     *        to use the format specified by {@link ResultSetOptions#getFormat()}.
+     * @throws IOException in case of IO errors.
+     */
+    public StreamingResultSet(InputStream in, ResultSetOptions options) throws IOException {
+        this.in = in;
+        format = options.getFormat();
+        parser = createPipeline(createParser(in, StandardCharsets.UTF_8, format, options), options);
+        if ((currentTuple = parser.getTuple()) == null) {
+            hasNext = false;
+            complete();
+        }
+    }
+
+    /**
+     * Create a {@link StreamingResultSet} that provides the rows of the given {@link ResultParser}.
+     *
+     * <p>
+     * If the parser's input is a {@link StreamingResultSet}, cancelling this result set cancels
+     * the input and its truncation and cancellation are reported by this result set.
+     *
+     * @param parser the {@link ResultParser} which provides the rows.
+     * @param format the format of the parser's input.
+     * @param in the input of the parser, which is closed together with the result set.
+     */
+    public StreamingResultSet(ResultParser parser, ResultFormat format, Closeable in) {
         this.in = in;
-        tsvParser = new TsvParser(in);
-        if ((currentTuple = tsvParser.getTuple()) == null) {
+        if (in instanceof StreamingResultSet) {
+            source = (StreamingResultSet) in;
+        }
+        this.format = format;
+        this.parser = parser;
+        if ((currentTuple = parser.getTuple()) == null) {
             hasNext = false;
+            complete();
         }
     }
 
@@ -56,29 +158,186 @@ public class StreamingResultSet implements Iterator<Map<String, Node>>, Closeabl
      * @throws IOException in case of IO errors.
      */
     public StreamingResultSet(HttpURLConnection conn) throws IOException {
-        in = StreamingQueryExecutor.COMPRESSED_CONTENT_ENCODING
-                .equalsIgnoreCase(conn.getContentEncoding())
-                        ? new BufferedReader(
-                                new InputStreamReader(new GZIPInputStream(conn.getInputStream())))
-                        : new BufferedReader(new InputStreamReader(conn.getInputStream()));
-
-        if (!conn.getContentType().startsWith(StreamingQueryExecutor.ACCEPT_CONTENT_TYPE)) {
-
-            final String logMessage =
-                    String.format("Server returned incorrect content type '%s' rather than '%s'.",
-                            conn.getContentType(), StreamingQueryExecutor.ACCEPT_CONTENT_TYPE);
-            log.error(logMessage);
-            log.error("Content returned by the server (first 3 lines): "
-                    + in.lines().limit(3).collect(Collectors.joining("\n")));
-            in.close();
-            throw new IOException(logMessage);
+        this(conn, ResultSetOptions.DEFAULT);
+    }
+
+    /**
+     * Create a {link {@link StreamingResultSet} that consumes data from the given
+     * {@link HttpURLConnection}.
+     *
+     * @param conn the connection to read the data from.
+     * @param options the {@link ResultSetOptions} used for processing the server's response.
+     * @throws IOException in case of IO errors.
+     */
+    public StreamingResultSet(HttpURLConnection conn, ResultSetOptions options) throws IOException {
+        this(new UrlConnectionResponse(conn), options, null, null);
+    }
+
+    /**
+     * Create a {@link StreamingResultSet} that consumes the given {@link SparqlResponse}.
+     *
+     * <p>
+     * Closing the result set closes the response, which disconnects from the server if the
+     * response has not been consumed completely.
+     *
+     * @param response the server's response.
+     * @param options the {@link ResultSetOptions} used for processing the server's response.
+     * @throws IOException in case of IO errors.
+     */
+    public StreamingResultSet(SparqlResponse response, ResultSetOptions options) throws IOException {
+        this(response, options, null, null);
+    }
+
+    /**
+     * Create a {@link StreamingResultSet} that consumes the given {@link SparqlResponse} and
+     * reports its format and throughput to the {@link ResultSetOptions#getNegotiator()}.
+     *
+     * @param response the server's response.
+     * @param options the {@link ResultSetOptions} used for processing the server's response.
+     * @param repositoryUrl the url of the queried repository or <code>null</code> if the response
+     *        should not be reported.
+     * @param cancellation the {@link Cancellation} which aborts the response or <code>null</code>
+     *        if the response cannot be cancelled.
+     * @throws IOException in case of IO errors.
+     */
+    StreamingResultSet(SparqlResponse response, ResultSetOptions options, String repositoryUrl,
+            Cancellation cancellation) throws IOException {
+        this.response = response;
+        this.cancellation = cancellation;
+        try {
+            if (response.getStatusCode() >= 400) {
+                throw new IOException(
+                        String.format("Server returned HTTP response code: %d.", response.getStatusCode()));
+            }
+            // IO errors are recorded after decoding, while the length refers to the encoded body
+            rawBody = new TruncationDetectingInputStream(response.getBody(), response.getContentLength());
+            body = new TruncationDetectingInputStream(
+                    options.getContentDecoders().decode(response.getContentEncoding(), rawBody), -1);
+            // background threads might still read from the response while it is being closed
+            drainThreshold = options.getPipelineCapacity() > 0 || options.getParallelism() > 0 ? 0
+                    : options.getDrainThreshold();
+            InputStream in = body;
+            this.in = in;
+            String contentType = response.getContentType();
+            Charset charset = getCharset(contentType);
+
+            Optional<ResultFormat> responseFormat = contentType == null
+                    ? Optional.of(getRequestedFormat(options, repositoryUrl))
+                    : ResultFormat.fromContentType(contentType);
+            if (!responseFormat.isPresent()) {
+
+                final String logMessage =
+                        String.format("Server returned incorrect content type '%s' rather than '%s'.",
+                                contentType, options.getFormat().getContentType());
+                log.error(logMessage);
+                try (BufferedReader content = new BufferedReader(new InputStreamReader(in, charset))) {
+                    log.error("Content returned by the server (first 3 lines): "
+                            + content.lines().limit(3).collect(Collectors.joining("\n")));
+                }
+                throw new IOException(logMessage);
+            }
+            format = responseFormat.get();
+            parser = createPipeline(createParser(in, charset, format, options), options);
+        } catch (IOException | RuntimeException e) {
+            response.close();
+            throw e;
+        }
+        if (repositoryUrl != null && options.getNegotiator() != null) {
+            this.repositoryUrl = repositoryUrl;
+            negotiator = options.getNegotiator();
+            negotiator.recordResponse(repositoryUrl, format);
+            startNanos = System.nanoTime();
         }
-        tsvParser = new TsvParser(in);
-        if ((currentTuple = tsvParser.getTuple()) == null) {
+        if ((currentTuple = parser.getTuple()) == null) {
             hasNext = false;
+            complete();
         }
     }
 
+    /**
+     * Returns the format that has been requested with the highest priority, which is assumed for
+     * responses without content type.
+     */
+    private static ResultFormat getRequestedFormat(ResultSetOptions options, String repositoryUrl) {
+        ResultFormat format = options.getNegotiator() == null || repositoryUrl == null ? options.getFormat()
+                : options.getNegotiator().getRanking(repositoryUrl).get(0);
+        log.warn("Server did not specify a content type - assuming '{}'.", format.getContentType());
+        return format;
+    }
+
+    /**
+     * Create the {@link ResultParser} for the given input.
+     */
+    private static ResultParser createParser(InputStream in, Charset charset, ResultFormat format,
+            ResultSetOptions options) throws IOException {
+        // the JSON and XML parsers detect the encoding themselves
+        if (format == ResultFormat.JSON) {
+            return new JsonResultParser(in, options);
+        } else if (format == ResultFormat.XML) {
+            return new XmlResultParser(in, options);
+        } else if (format == ResultFormat.THRIFT) {
+            return new ThriftResultParser(in, options);
+        }
+        if (options.getTsvMode() == TsvMode.UTF8_BYTES) {
+            if (options.getParallelism() == 0 && StandardCharsets.UTF_8.equals(charset)) {
+                return new Utf8TsvParser(in, options);
+            }
+            log.debug("Parsing the response's characters, since {} requires sequential parsing of UTF-8.",
+                    TsvMode.UTF8_BYTES);
+        }
+        return createParser(new InputStreamReader(in, charset), options);
+    }
+
+    /**
+     * Create the {@link ResultParser} for the given input.
+     */
+    private static ResultParser createParser(Reader in, ResultSetOptions options) throws IOException {
+        if (options.getParallelism() > 0) {
+            return new ParallelTsvParser(in, options);
+        }
+        switch (options.getTsvMode()) {
+            case CHAR_BUFFER:
+            case UTF8_BYTES:
+                return new CharBufferTsvParser(in, options);
+            case LINE:
+            default:
+                return new TsvParser(in instanceof BufferedReader ? (BufferedReader) in : new BufferedReader(in),
+                        options);
+        }
+    }
+
+    /**
+     * Moves the given {@link ResultParser} to a background thread, if requested by the options.
+     */
+    private static ResultParser createPipeline(ResultParser parser, ResultSetOptions options) {
+        if (options.getPipelineCapacity() <= 0) {
+            return parser;
+        }
+        return new PipelinedResultParser(parser, options.getPipelineCapacity(),
+                options.getExecutor() == null ? StreamingQueryExecutor.getDefaultExecutor() : options.getExecutor());
+    }
+
+    /**
+     * Returns the charset specified in the given content type. SPARQL results are UTF-8 encoded,
+     * unless the server specifies otherwise.
+     */
+    private static Charset getCharset(String contentType) {
+        if (contentType == null) {
+            return StandardCharsets.UTF_8;
+        }
+        for (String parameter : contentType.split(";")) {
+            String[] keyValue = parameter.trim().split("=", 2);
+            if (keyValue.length == 2 && "charset".equalsIgnoreCase(keyValue[0].trim())) {
+                try {
+                    return Charset.forName(keyValue[1].trim().replace("\"", ""));
+                } catch (IllegalCharsetNameException | UnsupportedCharsetException e) {
+                    log.warn("Server returned unsupported charset '{}' - using UTF-8.", keyValue[1]);
+                }
+            }
+        }
+        return StandardCharsets.UTF_8;
+    }
+
     /**
      * Return the next result set for the current query.
      *
@@ -86,31 +345,234 @@ public class StreamingResultSet implements Iterator<Map<String, Node>>, Closeabl
      */
     @Override
     public Map<String, Node> next() {
-        if (!hasNext) {
+        return nextRow();
+    }
+
+    /**
+     * Return the next result set for the current query.
+     *
+     * @return the next {@link ResultRow}, which also provides index based access to the bindings.
+     * @throws UncheckedIOException if the query has been cancelled (see {@link #isCancelled()})
+     */
+    public ResultRow nextRow() {
+        if (!hasNext()) {
             throw new NoSuchElementException();
         }
-        Map<String, Node> result = currentTuple;
-        if ((currentTuple = tsvParser.getTuple()) == null) {
+        ResultRow result = currentTuple;
+        if ((currentTuple = parser.getTuple()) == null) {
             hasNext = false;
         }
         rowNumber++;
+        if (!hasNext) {
+            complete();
+            if (negotiator != null && completed && !isTruncated()) {
+                negotiator.recordThroughput(repositoryUrl, format, rowNumber, System.nanoTime() - startNanos);
+            }
+        }
         return result;
     }
 
+    /**
+     * Returns whether the server's response ended prematurely (e.g. due to a connection reset),
+     * rather than after the last row. Parsers consider such errors as the end of the result, so
+     * that truncated results cannot be distinguished from complete ones otherwise.
+     *
+     * @return <code>true</code> if reading the response failed, unless the result has been
+     *         cancelled
+     */
+    public boolean isTruncated() {
+        if (source != null) {
+            return source.isTruncated();
+        }
+        return !isCancelled() && body != null && body.getFailure() != null;
+    }
+
+    /**
+     * Stops the deadline once all rows have been read and logs truncated responses.
+     */
+    private void complete() {
+        if (cancellation != null) {
+            cancellation.complete();
+        }
+        synchronized (this) {
+            completed = !isCancelled();
+        }
+        if (isTruncated()) {
+            log.warn("Server's response has been truncated after {} rows: {}", rowNumber,
+                    body.getFailure().getMessage());
+        }
+    }
+
+    /**
+     * Cancels the query and aborts its connection immediately, without draining the remaining
+     * response, if supported by the {@link com.weblyzard.sparql.transport.Transport}. May be called
+     * from any thread; subsequent calls to {@link #hasNext()} and {@link #next()} fail with an
+     * {@link UncheckedIOException} and the result set still needs to be closed. Has no effect once
+     * all rows have been read.
+     */
+    public void cancel() {
+        synchronized (this) {
+            if (completed) {
+                return;
+            }
+            cancelled = true;
+        }
+        if (cancellation != null) {
+            cancellation.cancel();
+        }
+        if (source != null) {
+            source.cancel();
+        }
+    }
+
+    /**
+     * Returns whether the query has been cancelled before all rows have been read, either by
+     * {@link #cancel()} or since it exceeded its deadline (see {@link ResultSetOptions#getDeadline()}).
+     */
+    public boolean isCancelled() {
+        return cancelled || cancellation != null && cancellation.isCancelled()
+                || source != null && source.isCancelled();
+    }
+
+    /**
+     * Returns the exception reported for cancelled results.
+     */
+    private UncheckedIOException getCancellationException() {
+        if (source != null && source.isCancelled()) {
+            return source.getCancellationException();
+        }
+        String reason = cancellation != null && cancellation.isDeadlineExceeded() ? "exceeded its deadline"
+                : "has been cancelled";
+        return new UncheckedIOException(
+                new InterruptedIOException(String.format("Query %s after %d rows.", reason, rowNumber)));
+    }
+
     /**
      * Returns an array of the bindings used in the result.
      */
     public String[] getResultVars() {
-        return tsvParser.getTsvHeader();
+        return parser.getResultVars();
+    }
+
+    /**
+     * Returns the {@link ResultSchema} which maps the result's variables to column indices.
+     */
+    public ResultSchema getSchema() {
+        return parser.getSchema();
+    }
+
+    /**
+     * Returns a sequential {@link Stream} of the remaining rows. Closing the stream closes the
+     * result set.
+     */
+    public Stream<Map<String, Node>> stream() {
+        return stream(false, ResultSetSpliterator.DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Returns a parallel {@link Stream} of the remaining rows, which are handed out to fork-join
+     * workers in batches. Closing the stream closes the result set.
+     */
+    public Stream<Map<String, Node>> parallelStream() {
+        return stream(true, ResultSetSpliterator.DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Returns a parallel {@link Stream} of the remaining rows.
+     *
+     * @param batchSize the number of rows handed out to a fork-join worker at once. Use small
+     *        batches for expensive per row computations.
+     */
+    public Stream<Map<String, Node>> parallelStream(int batchSize) {
+        return stream(true, batchSize);
+    }
+
+    private Stream<Map<String, Node>> stream(boolean parallel, int batchSize) {
+        return StreamSupport.stream(new ResultSetSpliterator(this, batchSize), parallel).onClose(() -> {
+            try {
+                close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
     }
 
     @Override
     public void close() throws IOException {
-        in.close();
+        if (response == null) {
+            closeParser();
+            in.close();
+            return;
+        }
+        try {
+            if (hasNext && !drain()) {
+                // abort partially consumed responses first, since closing the parser or the input stream
+                // would drain them
+                response.close();
+                try {
+                    closeParser();
+                } finally {
+                    closeQuietly(in);
+                }
+            } else {
+                // closing the input stream consumes trailing bytes (e.g. the gzip trailer), so that the
+                // connection can be reused
+                try {
+                    closeParser();
+                } finally {
+                    closeQuietly(in);
+                    response.close();
+                }
+            }
+        } finally {
+            if (cancellation != null) {
+                cancellation.complete();
+            }
+        }
+    }
+
+    /**
+     * Reads the remainder of a partially consumed response, so that its connection can be reused,
+     * unless it exceeds the drain threshold (see {@link ResultSetOptions#getDrainThreshold()}).
+     *
+     * @return <code>true</code> if the response has been read completely
+     */
+    private boolean drain() {
+        if (isCancelled() || drainThreshold <= 0 || rawBody.getRemaining() > drainThreshold) {
+            return false;
+        }
+        try {
+            return rawBody.drain(drainThreshold);
+        } catch (IOException e) {
+            log.debug("Cannot drain the server's response: {}", e.getMessage());
+            return false;
+        }
     }
 
+    private void closeParser() throws IOException {
+        if (parser instanceof Closeable) {
+            ((Closeable) parser).close();
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            log.debug("Cannot close the response's input stream: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws UncheckedIOException if the query has been cancelled (see {@link #isCancelled()})
+     */
     @Override
     public boolean hasNext() {
+        if (isCancelled()) {
+            throw getCancellationException();
+        }
         return hasNext;
     }
 }
@@ -0,0 +1,126 @@
+package com.weblyzard.sparql;
+
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import lombok.Getter;
+
+/**
+ * Records IO errors of the underlying stream, which the parsers consider as end of the stream.
+ *
+ * <p>
+ * If the expected length of the stream is known, ending before all bytes have been read is
+ * reported as {@link EOFException}.
+ *
+ * @author Albert Weichselbraun
+ *
+ */
+class TruncationDetectingInputStream extends FilterInputStream {
+
+    private final long expectedLength;
+    private long count;
+    /** the first IO error raised while reading, or <code>null</code>. */
+    @Getter
+    private volatile IOException failure;
+
+    /**
+     * Creates a new stream.
+     *
+     * @param in the stream to monitor
+     * @param expectedLength the length of the stream or <code>-1</code> if unknown
+     */
+    TruncationDetectingInputStream(InputStream in, long expectedLength) {
+        super(in);
+        this.expectedLength = expectedLength;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int result;
+        try {
+            result = in.read();
+        } catch (IOException e) {
+            throw record(e);
+        }
+        if (result < 0) {
+            checkLength();
+        } else {
+            count++;
+        }
+        return result;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int result;
+        try {
+            result = in.read(b, off, len);
+        } catch (IOException e) {
+            throw record(e);
+        }
+        if (result < 0) {
+            checkLength();
+        } else {
+            count += result;
+        }
+        return result;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        try {
+            long skipped = in.skip(n);
+            count += skipped;
+            return skipped;
+        } catch (IOException e) {
+            throw record(e);
+        }
+    }
+
+    /**
+     * Returns the number of bytes which have not been read yet or <code>-1</code> if unknown.
+     */
+    long getRemaining() {
+        return expectedLength < 0 ? -1 : Math.max(0, expectedLength - count);
+    }
+
+    /**
+     * Reads and discards up to the given number of bytes.
+     *
+     * @param maxBytes the maximum number of bytes to read
+     * @return <code>true</code> if the end of the stream has been reached
+     * @throws IOException if reading fails
+     */
+    boolean drain(long maxBytes) throws IOException {
+        byte[] buf = new byte[(int) Math.min(8192, Math.max(1, maxBytes))];
+        long drained = 0;
+        while (drained <= maxBytes) {
+            int read = read(buf, 0, (int) Math.min(buf.length, maxBytes - drained + 1));
+            if (read < 0) {
+                return true;
+            }
+            drained += read;
+        }
+        return false;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    private void checkLength() throws IOException {
+        if (expectedLength >= 0 && count < expectedLength) {
+            throw record(new EOFException(
+                    String.format("Response ended after %d of %d bytes.", count, expectedLength)));
+        }
+    }
+
+    private IOException record(IOException e) {
+        if (failure == null) {
+            failure = e;
+        }
+        return e;
+    }
+}
@@ -0,0 +1,19 @@
+package com.weblyzard.sparql.batch;
+
+import lombok.Value;
+
+/**
+ * A query of a batch.
+ *
+ * @author Albert Weichselbraun
+ *
+ */
+@Value
+public class BatchQuery {
+    /** the identifier used for tagging the query's results. */
+    private final String id;
+    /** the url of the repository to query. */
+    private final String repositoryUrl;
+    /** the SPARQL query. */
+    private final String query;
+}
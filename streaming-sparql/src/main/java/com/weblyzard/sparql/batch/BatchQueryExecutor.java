@@ -0,0 +1,327 @@
+package com.weblyzard.sparql.batch;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import com.weblyzard.sparql.ResultSetOptions;
+import com.weblyzard.sparql.StreamingQueryExecutor;
+import com.weblyzard.sparql.StreamingResultSet;
+import com.weblyzard.sparql.transport.HttpClientTransport;
+import com.weblyzard.sparql.transport.SparqlRequest;
+import com.weblyzard.sparql.transport.SparqlResponse;
+import com.weblyzard.sparql.transport.Transport;
+import lombok.Builder;
+
+/**
+ * Runs batches of independent queries concurrently.
+ *
+ * <p>
+ * The number of concurrently running queries is limited per endpoint. Queries exceeding the limit
+ * wait in a queue without occupying a thread. A query occupies its endpoint until its result has
+ * been consumed or closed.
+ *
+ * <p>
+ * Example:
+ * <code>BatchQueryExecutor.builder().maxQueriesPerEndpoint(8).build().stream(queries)</code>
+ *
+ * @author Albert Weichselbraun
+ *
+ */
+public class BatchQueryExecutor {
+
+    /** the default number of rows buffered by merged result streams. */
+    public static final int DEFAULT_BUFFER_SIZE = 1024;
+
+    private final Transport transport;
+    private final Executor executor;
+    private final int maxQueriesPerEndpoint;
+    private final int timeout;
+    private final ResultSetOptions options;
+    private final int bufferSize;
+    private final ConcurrentMap<String, EndpointLimiter> limiters = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a new executor.
+     *
+     * @param transport the {@link Transport} used for querying the repositories (default:
+     *        {@link StreamingQueryExecutor#getDefaultTransport()})
+     * @param executor the {@link Executor} which runs the queries (default:
+     *        {@link StreamingQueryExecutor#getDefaultExecutor()})
+     * @param maxQueriesPerEndpoint the maximum number of concurrent queries per endpoint, which
+     *        should not exceed the transport's connection limit (default:
+     *        {@link HttpClientTransport#DEFAULT_MAX_CONNECTIONS_PER_ENDPOINT})
+     * @param timeout query timeout in milliseconds
+     * @param options the {@link ResultSetOptions} used for processing the server's responses
+     * @param bufferSize the number of rows buffered by merged result streams
+     */
+    @Builder
+    private BatchQueryExecutor(Transport transport, Executor executor, Integer maxQueriesPerEndpoint, int timeout,
+            ResultSetOptions options, Integer bufferSize) {
+        this.transport = transport == null ? StreamingQueryExecutor.getDefaultTransport() : transport;
+        this.executor = executor == null ? StreamingQueryExecutor.getDefaultExecutor() : executor;
+        this.maxQueriesPerEndpoint = maxQueriesPerEndpoint == null
+                ? HttpClientTransport.DEFAULT_MAX_CONNECTIONS_PER_ENDPOINT
+                : maxQueriesPerEndpoint;
+        this.timeout = timeout;
+        this.options = options == null ? ResultSetOptions.DEFAULT : options;
+        this.bufferSize = bufferSize == null ? DEFAULT_BUFFER_SIZE : bufferSize;
+        if (this.maxQueriesPerEndpoint < 1) {
+            throw new IllegalArgumentException("At least one query per endpoint is required.");
+        }
+    }
+
+    /**
+     * Sends the given queries and provides a {@link StreamingResultSet} per query.
+     *
+     * <p>
+     * Every result set keeps its endpoint occupied until it is closed. Consumers, therefore, need
+     * to close the result sets they have obtained before waiting for the results of queued queries.
+     *
+     * @param queries the queries to send
+     * @return a map of query identifiers to futures of the corresponding result sets, in the order
+     *         of the given queries. Cancelling a future removes its query from the queue.
+     */
+    public Map<String, CompletableFuture<StreamingResultSet>> getResultSets(Collection<BatchQuery> queries) {
+        Map<String, CompletableFuture<StreamingResultSet>> result = new LinkedHashMap<>();
+        for (BatchQuery query : queries) {
+            if (result.put(query.getId(), new CompletableFuture<>()) != null) {
+                throw new IllegalArgumentException("Duplicate query id: " + query.getId());
+            }
+        }
+        for (BatchQuery query : queries) {
+            CompletableFuture<StreamingResultSet> future = result.get(query.getId());
+            EndpointLimiter limiter = getLimiter(query);
+            limiter.submit(() -> {
+                if (future.isDone()) {
+                    limiter.release();
+                    return;
+                }
+                try {
+                    StreamingResultSet resultSet = open(query, limiter);
+                    if (!future.complete(resultSet)) {
+                        resultSet.close();
+                    }
+                } catch (IOException | RuntimeException e) {
+                    future.completeExceptionally(e);
+                }
+            }, future::completeExceptionally);
+        }
+        return result;
+    }
+
+    /**
+     * Sends the given queries and merges their results into a single {@link Stream}.
+     *
+     * <p>
+     * Rows of different queries are interleaved in the order in which they arrive. Failing queries
+     * cause an {@link UncheckedIOException} (or the {@link RuntimeException} raised by the query)
+     * once their failure is reached. Closing the stream cancels all remaining queries.
+     *
+     * @param queries the queries to send
+     * @return a {@link Stream} of the query results tagged with their query identifiers
+     */
+    public Stream<TaggedRow> stream(Collection<BatchQuery> queries) {
+        MergedRowIterator rows = new MergedRowIterator(queries.size(), bufferSize);
+        for (BatchQuery query : queries) {
+            EndpointLimiter limiter = getLimiter(query);
+            limiter.submit(() -> {
+                if (rows.closed) {
+                    limiter.release();
+                    return;
+                }
+                try (StreamingResultSet resultSet = open(query, limiter)) {
+                    while (resultSet.hasNext() && rows.offer(new TaggedRow(query.getId(), resultSet.nextRow()))) {
+                        // the rows are consumed by the merged stream
+                    }
+                } catch (IOException | RuntimeException e) {
+                    rows.offer(e);
+                    return;
+                }
+                rows.offer(MergedRowIterator.END_OF_QUERY);
+            }, rows::offer);
+        }
+        return StreamSupport
+                .stream(Spliterators.spliteratorUnknownSize(rows, Spliterator.NONNULL), false)
+                .onClose(rows::close);
+    }
+
+    private EndpointLimiter getLimiter(BatchQuery query) {
+        return limiters.computeIfAbsent(query.getRepositoryUrl(),
+                url -> new EndpointLimiter(maxQueriesPerEndpoint, executor));
+    }
+
+    /**
+     * Opens the result set of the given query, which releases the endpoint once it is closed.
+     */
+    private StreamingResultSet open(BatchQuery query, EndpointLimiter limiter) throws IOException {
+        return StreamingQueryExecutor.getResultSet(new ReleasingTransport(transport, limiter), query.getRepositoryUrl(),
+                query.getQuery(), timeout, options);
+    }
+
+    /**
+     * A {@link Transport} whose response releases the endpoint once it is closed.
+     */
+    private static class ReleasingTransport implements Transport {
+        private final Transport transport;
+        private final EndpointLimiter limiter;
+
+        ReleasingTransport(Transport transport, EndpointLimiter limiter) {
+            this.transport = transport;
+            this.limiter = limiter;
+        }
+
+        @Override
+        public SparqlResponse execute(SparqlRequest request) throws IOException {
+            try {
+                return new ReleasingResponse(transport.execute(request), limiter);
+            } catch (IOException | RuntimeException e) {
+                limiter.release();
+                throw e;
+            }
+        }
+
+        @Override
+        public void close() {
+            // the underlying transport is shared
+        }
+    }
+
+    /**
+     * Releases the endpoint after the response has been closed.
+     */
+    private static class ReleasingResponse implements SparqlResponse {
+        private final SparqlResponse response;
+        private final EndpointLimiter limiter;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        ReleasingResponse(SparqlResponse response, EndpointLimiter limiter) {
+            this.response = response;
+            this.limiter = limiter;
+        }
+
+        @Override
+        public int getStatusCode() {
+            return response.getStatusCode();
+        }
+
+        @Override
+        public String getHeader(String name) {
+            return response.getHeader(name);
+        }
+
+        @Override
+        public InputStream getBody() throws IOException {
+            return response.getBody();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                response.close();
+            } finally {
+                if (released.compareAndSet(false, true)) {
+                    limiter.release();
+                }
+            }
+        }
+    }
+
+    /**
+     * Provides the rows which the queries add to a bounded buffer.
+     */
+    private static class MergedRowIterator implements Iterator<TaggedRow> {
+        // marks the end of a query
+        static final Object END_OF_QUERY = new Object();
+        private static final long OFFER_TIMEOUT_MILLIS = 100;
+
+        private final BlockingQueue<Object> buffer;
+        private int remainingQueries;
+        private TaggedRow next;
+        volatile boolean closed;
+
+        MergedRowIterator(int queryCount, int bufferSize) {
+            remainingQueries = queryCount;
+            buffer = new ArrayBlockingQueue<>(bufferSize);
+        }
+
+        /**
+         * Adds the given item, waiting for space if necessary (query threads).
+         *
+         * @return false if the iterator has been closed
+         */
+        boolean offer(Object item) {
+            try {
+                while (!closed) {
+                    if (buffer.offer(item, OFFER_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                        return true;
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return false;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (next == null && remainingQueries > 0) {
+                Object item;
+                try {
+                    item = buffer.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    close();
+                    throw new IllegalStateException("Interrupted while waiting for query results.", e);
+                }
+                if (item == END_OF_QUERY) {
+                    remainingQueries--;
+                } else if (item instanceof IOException) {
+                    close();
+                    throw new UncheckedIOException((IOException) item);
+                } else if (item instanceof RuntimeException) {
+                    close();
+                    throw (RuntimeException) item;
+                } else {
+                    next = (TaggedRow) item;
+                }
+            }
+            return next != null;
+        }
+
+        @Override
+        public TaggedRow next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            TaggedRow row = next;
+            next = null;
+            return row;
+        }
+
+        /**
+         * Stops the remaining queries.
+         */
+        void close() {
+            closed = true;
+            remainingQueries = 0;
+            buffer.clear();
+        }
+    }
+}
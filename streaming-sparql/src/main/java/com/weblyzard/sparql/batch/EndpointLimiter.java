@@ -0,0 +1,89 @@
+package com.weblyzard.sparql.batch;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+
+/**
+ * Limits the number of concurrently running queries per endpoint.
+ *
+ * <p>
+ * Tasks exceeding the limit are queued rather than blocking an executor thread and are started
+ * once a running task calls {@link #release()}. If the executor rejects a queued task, its
+ * rejection handler is notified, since no caller waits for the task to start.
+ *
+ * @author Albert Weichselbraun
+ *
+ */
+class EndpointLimiter {
+
+    private final int limit;
+    private final Executor executor;
+    private final Queue<Task> pending = new ArrayDeque<>();
+    private int active;
+
+    EndpointLimiter(int limit, Executor executor) {
+        this.limit = limit;
+        this.executor = executor;
+    }
+
+    /**
+     * Runs the given task as soon as the limit permits. The task must call {@link #release()} once
+     * it does not occupy the endpoint anymore.
+     *
+     * @param task the task to run
+     * @param rejectionHandler receives the exception of the executor, if it rejects the task after
+     *        it has been queued
+     * @throws RuntimeException if the executor rejects the task immediately
+     */
+    void submit(Runnable task, Consumer<RuntimeException> rejectionHandler) {
+        synchronized (this) {
+            if (active >= limit) {
+                pending.add(new Task(task, rejectionHandler));
+                return;
+            }
+            active++;
+        }
+        try {
+            executor.execute(task);
+        } catch (RuntimeException e) {
+            release();
+            throw e;
+        }
+    }
+
+    /**
+     * Hands the permit of a completed task over to the next pending task.
+     */
+    void release() {
+        Task next;
+        synchronized (this) {
+            next = pending.poll();
+            if (next == null) {
+                active--;
+                return;
+            }
+        }
+        try {
+            executor.execute(next.runnable);
+        } catch (RuntimeException e) {
+            // pass the permit on and notify the rejected task
+            release();
+            next.rejectionHandler.accept(e);
+        }
+    }
+
+    /**
+     * A task and the handler which is notified if the executor rejects it.
+     */
+    private static class Task {
+        private final Runnable runnable;
+        private final Consumer<RuntimeException> rejectionHandler;
+
+        Task(Runnable runnable, Consumer<RuntimeException> rejectionHandler) {
+            this.runnable = runnable;
+            this.rejectionHandler = rejectionHandler;
+        }
+    }
+}
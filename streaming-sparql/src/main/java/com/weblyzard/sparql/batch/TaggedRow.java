@@ -0,0 +1,16 @@
+package com.weblyzard.sparql.batch;
+
+import com.weblyzard.sparql.ResultRow;
+import lombok.Value;
+
+/**
+ * A result row tagged with the identifier of the {@link BatchQuery} that produced it.
+ *
+ * @author Albert Weichselbraun
+ *
+ */
+@Value
+public class TaggedRow {
+    private final String queryId;
+    private final ResultRow row;
+}
@@ -0,0 +1,7 @@
+/**
+ * Concurrent execution of batches of SPARQL queries with per-endpoint concurrency limits.
+ *
+ * @author Albert Weichselbraun
+ *
+ */
+package com.weblyzard.sparql.batch;
@@ -0,0 +1,402 @@
+package com.weblyzard.sparql.cache;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.jena.query.QueryException;
+import org.apache.jena.query.QueryFactory;
+import com.weblyzard.sparql.ResultRow;
+import com.weblyzard.sparql.ResultParser;
+import com.weblyzard.sparql.ResultSchema;
+import com.weblyzard.sparql.ResultSetOptions;
+import com.weblyzard.sparql.StreamingQueryExecutor;
+import com.weblyzard.sparql.StreamingResultSet;
+import com.weblyzard.sparql.transport.Transport;
+import lombok.Builder;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Caches query results in local files.
+ *
+ * <p>
+ * Results are cached per endpoint and normalized query. On a cache miss, the rows are written to a
+ * file in the compact encoding of the {@link RowEncoder} while they are passed to the caller. The
+ * file is added to the cache once the caller has consumed the complete result. Subsequent queries
+ * are answered from the file until its time to live expires, without contacting the server or
+ * parsing term syntax. If the files exceed the maximum total size, the least recently used results
+ * are evicted.
+ *
+ * <p>
+ * Results cached by previous instances are reused if the same directory is specified.
+ *
+ * <p>
+ * Example:
+ * <code>QueryResultCache.builder().ttl(Duration.ofMinutes(5)).build().getResultSet(url, query)</code>
+ *
+ * @author Albert Weichselbraun
+ *
+ */
+@Slf4j
+public class QueryResultCache {
+
+    /** the default time to live of cached results. */
+    public static final Duration DEFAULT_TTL = Duration.ofMinutes(10);
+    /** the default maximum size of all cached results in bytes. */
+    public static final long DEFAULT_MAX_SIZE = 1L << 30;
+
+    private static final String SUFFIX = ".rows";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private final Path directory;
+    private final Transport transport;
+    private final int timeout;
+    private final ResultSetOptions options;
+    private final long ttlMillis;
+    private final long maxSize;
+    // cached results in the order of their last access
+    private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long size;
+
+    /**
+     * A cached result.
+     */
+    private static class Entry {
+        private final Path file;
+        private final long size;
+        private final long created;
+
+        Entry(Path file, long size, long created) {
+            this.file = file;
+            this.size = size;
+            this.created = created;
+        }
+    }
+
+    /**
+     * Creates a new cache.
+     *
+     * @param directory the directory which holds the cached results (default: a new temporary
+     *        directory)
+     * @param transport the {@link Transport} used for querying the repositories (default:
+     *        {@link StreamingQueryExecutor#getDefaultTransport()})
+     * @param timeout query timeout in milliseconds
+     * @param options the {@link ResultSetOptions} used for processing the server's responses
+     * @param ttl the time to live of cached results (default: {@link #DEFAULT_TTL})
+     * @param maxSize the maximum size of all cached results in bytes (default:
+     *        {@link #DEFAULT_MAX_SIZE})
+     * @throws UncheckedIOException if the directory cannot be created or read
+     */
+    @Builder
+    private QueryResultCache(Path directory, Transport transport, int timeout, ResultSetOptions options,
+            Duration ttl, Long maxSize) {
+        this.transport = transport == null ? StreamingQueryExecutor.getDefaultTransport() : transport;
+        this.timeout = timeout;
+        this.options = options == null ? ResultSetOptions.DEFAULT : options;
+        this.ttlMillis = (ttl == null ? DEFAULT_TTL : ttl).toMillis();
+        this.maxSize = maxSize == null ? DEFAULT_MAX_SIZE : maxSize;
+        try {
+            this.directory = directory == null ? Files.createTempDirectory("streaming-sparql-cache")
+                    : Files.createDirectories(directory);
+            loadEntries();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Registers the results cached by previous instances and removes incomplete files.
+     */
+    private void loadEntries() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path file : stream) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(SUFFIX)) {
+                    files.add(file);
+                } else if (name.endsWith(TEMP_SUFFIX)) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+        files.sort(Comparator.comparingLong(QueryResultCache::getLastModified));
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            addEntry(name.substring(0, name.length() - SUFFIX.length()),
+                    new Entry(file, Files.size(file), getLastModified(file)));
+        }
+        evict();
+    }
+
+    private static long getLastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Returns the result of the given query, which is served from the cache if available.
+     *
+     * @param repositoryUrl the url of the repository to query
+     * @param query the query to perform on the repository
+     * @return a {@link StreamingResultSet} providing the result
+     * @throws IOException if the query fails
+     */
+    public StreamingResultSet getResultSet(String repositoryUrl, String query) throws IOException {
+        String key = getKey(repositoryUrl, query);
+        Path file = lookup(key);
+        if (file != null) {
+            InputStream in = null;
+            try {
+                in = new BufferedInputStream(Files.newInputStream(file));
+                RowDecoder decoder = new RowDecoder(in, options.getTermCache());
+                return new StreamingResultSet(decoder, decoder.getFormat(), decoder);
+            } catch (IOException e) {
+                if (in != null) {
+                    in.close();
+                }
+                log.warn("Cannot read cached result '{}': {}", file, e.getMessage());
+                remove(key);
+            }
+        }
+
+        StreamingResultSet resultSet =
+                StreamingQueryExecutor.getResultSet(transport, repositoryUrl, query, timeout, options);
+        Path tempFile;
+        RowEncoder encoder;
+        try {
+            tempFile = Files.createTempFile(directory, key, TEMP_SUFFIX);
+            encoder = new RowEncoder(new BufferedOutputStream(Files.newOutputStream(tempFile)), resultSet.getFormat(),
+                    resultSet.getResultVars());
+        } catch (IOException e) {
+            log.warn("Cannot cache the result of query '{}': {}", query, e.getMessage());
+            return resultSet;
+        }
+        return new StreamingResultSet(new SpoolingParser(resultSet, key, tempFile, encoder), resultSet.getFormat(),
+                resultSet);
+    }
+
+    /**
+     * Removes the result of the given query from the cache.
+     *
+     * @param repositoryUrl the url of the repository
+     * @param query the query
+     */
+    public void invalidate(String repositoryUrl, String query) {
+        remove(getKey(repositoryUrl, query));
+    }
+
+    /**
+     * Removes all results from the cache.
+     */
+    public synchronized void clear() {
+        for (Entry entry : entries.values()) {
+            delete(entry.file);
+        }
+        entries.clear();
+        size = 0;
+    }
+
+    /**
+     * Returns the total size of the cached results in bytes.
+     */
+    public synchronized long getSize() {
+        return size;
+    }
+
+    /**
+     * Returns the file of a valid cached result.
+     */
+    private synchronized Path lookup(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (System.currentTimeMillis() - entry.created > ttlMillis) {
+            remove(key);
+            return null;
+        }
+        return entry.file;
+    }
+
+    /**
+     * Adds a completely written result to the cache.
+     */
+    private synchronized void publish(String key, Path tempFile, long fileSize) {
+        Path file = directory.resolve(key + SUFFIX);
+        try {
+            Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("Cannot add result to the cache: {}", e.getMessage());
+            delete(tempFile);
+            return;
+        }
+        Entry previous = entries.remove(key);
+        if (previous != null) {
+            size -= previous.size;
+        }
+        addEntry(key, new Entry(file, fileSize, System.currentTimeMillis()));
+        evict();
+    }
+
+    private void addEntry(String key, Entry entry) {
+        entries.put(key, entry);
+        size += entry.size;
+    }
+
+    /**
+     * Removes the least recently used results until the maximum size is met.
+     */
+    private void evict() {
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (size > maxSize && iterator.hasNext()) {
+            Entry entry = iterator.next();
+            iterator.remove();
+            size -= entry.size;
+            delete(entry.file);
+        }
+    }
+
+    private synchronized void remove(String key) {
+        Entry entry = entries.remove(key);
+        if (entry != null) {
+            size -= entry.size;
+            delete(entry.file);
+        }
+    }
+
+    private static void delete(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Cannot delete cached result '{}': {}", file, e.getMessage());
+        }
+    }
+
+    /**
+     * Returns the key of the given query, which is derived from the endpoint and the normalized
+     * query.
+     */
+    static String getKey(String repositoryUrl, String query) {
+        String normalizedQuery;
+        try {
+            normalizedQuery = QueryFactory.create(query).serialize();
+        } catch (QueryException e) {
+            // e.g. vendor specific extensions
+            normalizedQuery = query.trim().replaceAll("\\s+", " ");
+        }
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(repositoryUrl.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) '\n');
+            StringBuilder key = new StringBuilder();
+            for (byte b : digest.digest(normalizedQuery.getBytes(StandardCharsets.UTF_8))) {
+                key.append(String.format("%02x", b));
+            }
+            return key.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported.", e);
+        }
+    }
+
+    /**
+     * Passes the rows of a server's response to the caller and writes them to a file, which is
+     * added to the cache once the response has been consumed completely.
+     */
+    private class SpoolingParser implements ResultParser, Closeable {
+        private final StreamingResultSet resultSet;
+        private final String key;
+        private final Path tempFile;
+        // null once the file has been added to the cache or discarded
+        private RowEncoder encoder;
+
+        SpoolingParser(StreamingResultSet resultSet, String key, Path tempFile, RowEncoder encoder) {
+            this.resultSet = resultSet;
+            this.key = key;
+            this.tempFile = tempFile;
+            this.encoder = encoder;
+        }
+
+        @Override
+        public String[] getResultVars() {
+            return resultSet.getResultVars();
+        }
+
+        @Override
+        public ResultSchema getSchema() {
+            return resultSet.getSchema();
+        }
+
+        @Override
+        public ResultRow getTuple() {
+            if (!resultSet.hasNext()) {
+                if (encoder != null && resultSet.isTruncated()) {
+                    discard();
+                } else if (encoder != null) {
+                    try {
+                        encoder.finish();
+                        encoder.close();
+                        publish(key, tempFile, encoder.getSize());
+                    } catch (IOException e) {
+                        log.warn("Cannot add result to the cache: {}", e.getMessage());
+                        discard();
+                    }
+                    encoder = null;
+                }
+                return null;
+            }
+            ResultRow row = resultSet.nextRow();
+            if (encoder != null) {
+                try {
+                    encoder.write(row);
+                    if (encoder.getSize() > maxSize) {
+                        log.debug("Result exceeds the cache's maximum size.");
+                        discard();
+                    }
+                } catch (IOException e) {
+                    log.warn("Cannot write result to the cache: {}", e.getMessage());
+                    discard();
+                }
+            }
+            return row;
+        }
+
+        private void discard() {
+            try {
+                encoder.close();
+            } catch (IOException e) {
+                log.debug("Cannot close cache file: {}", e.getMessage());
+            }
+            encoder = null;
+            delete(tempFile);
+        }
+
+        /**
+         * Discards the file of partially consumed results.
+         */
+        @Override
+        public void close() {
+            if (encoder != null) {
+                discard();
+            }
+        }
+    }
+}
@@ -0,0 +1,280 @@
+package com.weblyzard.sparql.cache;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import com.weblyzard.sparql.ResultFormat;
+import com.weblyzard.sparql.ResultParser;
+import com.weblyzard.sparql.ResultRow;
+import com.weblyzard.sparql.ResultSchema;
+import com.weblyzard.sparql.ResultSetOptions;
+import com.weblyzard.sparql.StreamingResultSet;
+import com.weblyzard.sparql.transport.SparqlRequest;
+import com.weblyzard.sparql.transport.SparqlResponse;
+import lombok.Builder;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Keeps recent query results in memory together with the validators (ETag and Last-Modified)
+ * returned by the server.
+ *
+ * <p>
+ * Queries with a cached result are sent as conditional requests (If-None-Match and
+ * If-Modified-Since). If the server responds with <code>304 Not Modified</code>, the cached rows
+ * are replayed instead of downloading and parsing the result again. Only results with validators
+ * that do not exceed the maximum number of rows and have been consumed completely are cached.
+ * Results are cached per endpoint, query, timeout and the {@link ResultSetOptions} which affect the
+ * returned rows, i.e. the requested formats, the projection and unordered parallel parsing. The
+ * {@link com.weblyzard.sparql.tsv.TsvMode} is not part of the key, since all modes yield the same
+ * rows.
+ *
+ * <p>
+ * Share a single instance between queries by passing it in the {@link ResultSetOptions}:
+ * <code>ResultSetOptions.builder().revalidationCache(RevalidationCache.builder().build()).build()</code>
+ *
+ * @author Albert Weichselbraun
+ *
+ */
+@Slf4j
+public class RevalidationCache {
+
+    /** the default maximum number of cached results. */
+    public static final int DEFAULT_MAX_ENTRIES = 64;
+    /** the default maximum number of rows per cached result. */
+    public static final int DEFAULT_MAX_ROWS = 10000;
+
+    private final int maxRows;
+    // cached results in the order of their last access
+    private final Map<String, CachedResult> entries;
+
+    /**
+     * Creates a new cache.
+     *
+     * @param maxEntries the maximum number of cached results (default:
+     *        {@link #DEFAULT_MAX_ENTRIES}). The least recently used results are evicted first.
+     * @param maxRows the maximum number of rows of a cached result (default:
+     *        {@link #DEFAULT_MAX_ROWS})
+     */
+    @Builder
+    private RevalidationCache(Integer maxEntries, Integer maxRows) {
+        int capacity = maxEntries == null ? DEFAULT_MAX_ENTRIES : maxEntries;
+        this.maxRows = maxRows == null ? DEFAULT_MAX_ROWS : maxRows;
+        entries = new LinkedHashMap<String, CachedResult>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedResult> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Returns the number of cached results.
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Removes all results from the cache.
+     */
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    /**
+     * Returns the cached result of the given query.
+     *
+     * @param repositoryUrl the url of the queried repository
+     * @param query the query
+     * @param timeout the query timeout in milliseconds
+     * @param options the {@link ResultSetOptions} used for processing the server's response
+     * @return the cached result or <code>null</code>
+     */
+    public synchronized CachedResult lookup(String repositoryUrl, String query, int timeout,
+            ResultSetOptions options) {
+        return entries.get(getKey(repositoryUrl, query, timeout, options));
+    }
+
+    private synchronized void put(String key, CachedResult result) {
+        entries.put(key, result);
+    }
+
+    private synchronized void remove(String key) {
+        entries.remove(key);
+    }
+
+    /**
+     * Returns the key of the given query, which covers all parameters that affect its result.
+     */
+    static String getKey(String repositoryUrl, String query, int timeout, ResultSetOptions options) {
+        StringBuilder key = new StringBuilder(repositoryUrl).append('\n').append(query);
+        key.append('\n').append(Math.max(0, timeout));
+        // the negotiator's ranking changes over time, but not the set of acceptable formats
+        key.append('\n').append(options.getNegotiator() == null ? options.getFormat()
+                : EnumSet.copyOf(options.getNegotiator().getRanking(repositoryUrl)));
+        key.append('\n').append(options.getProjection() == null ? "*" : new TreeSet<>(options.getProjection()));
+        key.append('\n').append(options.getParallelism() > 0 && options.isParallelUnordered());
+        return key.toString();
+    }
+
+    /**
+     * Returns a {@link StreamingResultSet} for the given response, which caches the result once it
+     * has been consumed, if the response provides validators.
+     *
+     * @param repositoryUrl the url of the queried repository
+     * @param query the query
+     * @param timeout the query timeout in milliseconds
+     * @param options the {@link ResultSetOptions} used for processing the server's response
+     * @param response the server's response
+     * @param resultSet the result set which consumes the response
+     * @return the {@link StreamingResultSet} to return to the caller
+     */
+    public StreamingResultSet record(String repositoryUrl, String query, int timeout, ResultSetOptions options,
+            SparqlResponse response, StreamingResultSet resultSet) {
+        String key = getKey(repositoryUrl, query, timeout, options);
+        String etag = response.getHeader("ETag");
+        String lastModified = response.getHeader("Last-Modified");
+        if (etag == null && lastModified == null) {
+            remove(key);
+            return resultSet;
+        }
+        return new StreamingResultSet(new RecordingParser(key, etag, lastModified, resultSet), resultSet.getFormat(),
+                resultSet);
+    }
+
+    /**
+     * A cached result and its validators.
+     */
+    public static class CachedResult {
+        private final String etag;
+        private final String lastModified;
+        private final ResultFormat format;
+        private final ResultSchema schema;
+        private final List<ResultRow> rows;
+
+        CachedResult(String etag, String lastModified, ResultFormat format, ResultSchema schema,
+                List<ResultRow> rows) {
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.format = format;
+            this.schema = schema;
+            this.rows = Collections.unmodifiableList(rows);
+        }
+
+        /**
+         * Adds the conditional request headers to the given request.
+         */
+        public void addValidators(SparqlRequest.SparqlRequestBuilder request) {
+            if (etag != null) {
+                request.header("If-None-Match", etag);
+            }
+            if (lastModified != null) {
+                request.header("If-Modified-Since", lastModified);
+            }
+        }
+
+        /**
+         * Returns a {@link StreamingResultSet} which replays the cached rows.
+         */
+        public StreamingResultSet replay() {
+            return new StreamingResultSet(new ReplayingParser(schema, rows.iterator()), format, () -> {
+                // nothing to release
+            });
+        }
+    }
+
+    /**
+     * Provides the rows of a cached result.
+     */
+    private static class ReplayingParser implements ResultParser {
+        private final ResultSchema schema;
+        private final Iterator<ResultRow> rows;
+
+        ReplayingParser(ResultSchema schema, Iterator<ResultRow> rows) {
+            this.schema = schema;
+            this.rows = rows;
+        }
+
+        @Override
+        public String[] getResultVars() {
+            String[] resultVars = new String[schema.size()];
+            for (int i = 0; i < resultVars.length; i++) {
+                resultVars[i] = schema.getVariable(i);
+            }
+            return resultVars;
+        }
+
+        @Override
+        public ResultSchema getSchema() {
+            return schema;
+        }
+
+        @Override
+        public ResultRow getTuple() {
+            // callers might modify the returned rows
+            return rows.hasNext() ? rows.next().copyOriginal() : null;
+        }
+    }
+
+    /**
+     * Passes the rows of a server's response to the caller and caches them once the response has
+     * been consumed completely.
+     */
+    private class RecordingParser implements ResultParser {
+        private final String key;
+        private final String etag;
+        private final String lastModified;
+        private final StreamingResultSet resultSet;
+        // null if the result is not cached
+        private List<ResultRow> rows = new ArrayList<>();
+
+        RecordingParser(String key, String etag, String lastModified, StreamingResultSet resultSet) {
+            this.key = key;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.resultSet = resultSet;
+        }
+
+        @Override
+        public String[] getResultVars() {
+            return resultSet.getResultVars();
+        }
+
+        @Override
+        public ResultSchema getSchema() {
+            return resultSet.getSchema();
+        }
+
+        @Override
+        public ResultRow getTuple() {
+            if (!resultSet.hasNext()) {
+                if (rows != null) {
+                    if (!resultSet.isTruncated()) {
+                        put(key, new CachedResult(etag, lastModified, resultSet.getFormat(), resultSet.getSchema(),
+                                rows));
+                    }
+                    rows = null;
+                }
+                return null;
+            }
+            ResultRow row = resultSet.nextRow();
+            if (rows != null) {
+                if (rows.size() < maxRows) {
+                    rows.add(row);
+                } else {
+                    log.debug("Result exceeds the maximum number of cached rows.");
+                    rows = null;
+                    remove(key);
+                }
+            }
+            return row;
+        }
+    }
+}
@@ -0,0 +1,368 @@
+package com.weblyzard.sparql.cache;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import org.apache.jena.graph.Node;
+import com.weblyzard.sparql.ResultFormat;
+import com.weblyzard.sparql.ResultRow;
+import com.weblyzard.sparql.ResultSchema;
+import com.weblyzard.sparql.StreamingResultSet;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * A result set which supports multiple passes and random access to the rows of a
+ * {@link StreamingResultSet}.
+ *
+ * <p>
+ * Rows are written to a spill file in the compact encoding of the {@link RowEncoder} as they are
+ * read from the underlying result set, and the offset of every row is written to an index file.
+ * Rows that have already been read are decoded from memory-mapped windows of these files, so that
+ * the heap usage is independent of the size of the result. The files are deleted once the result
+ * set is closed (or immediately after their creation on platforms that support it).
+ *
+ * <p>
+ * Example:
+ *
+ * <pre>
+ * try (RewindableResultSet rs = new RewindableResultSet(resultSet)) {
+ *     rs.forEachRemaining(statistics::add);
+ *     rs.rewind();
+ *     rs.forEachRemaining(row -&gt; emit(row, statistics));
+ * }
+ * </pre>
+ *
+ * @author Albert Weichselbraun
+ *
+ */
+@Slf4j
+public class RewindableResultSet implements Iterator<Map<String, Node>>, Closeable {
+
+    /** the default size of the memory-mapped windows in bytes. */
+    public static final int DEFAULT_WINDOW_SIZE = 16 << 20;
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final String PREFIX = "streaming-sparql-spill";
+
+    private final StreamingResultSet source;
+    private boolean sourceClosed;
+
+    private final BufferedOutputStream dataOut;
+    private final DataOutputStream indexOut;
+    private final RowEncoder encoder;
+    private final MappedWindow dataWindow;
+    private final MappedWindow indexWindow;
+    private final ByteBufferInputStream rowIn = new ByteBufferInputStream();
+    private final RowDecoder decoder;
+    // whether rows have been written since the streams have been flushed
+    private boolean dirty;
+
+    /** the number of rows written to the spill file. */
+    @Getter
+    private int spilledRows;
+    /** the number of the row returned by the next call of {@link #nextRow()}. */
+    @Getter
+    private int rowNumber;
+
+    /**
+     * Creates a {@link RewindableResultSet} which stores its spill files in the default temporary
+     * directory.
+     *
+     * @param resultSet the {@link StreamingResultSet} to read, which is closed together with the
+     *        rewindable result set.
+     * @throws IOException if the spill files cannot be created
+     */
+    public RewindableResultSet(StreamingResultSet resultSet) throws IOException {
+        this(resultSet, null);
+    }
+
+    /**
+     * Creates a {@link RewindableResultSet}.
+     *
+     * @param resultSet the {@link StreamingResultSet} to read, which is closed together with the
+     *        rewindable result set.
+     * @param directory the directory of the spill files or <code>null</code> for the default
+     *        temporary directory
+     * @throws IOException if the spill files cannot be created
+     */
+    public RewindableResultSet(StreamingResultSet resultSet, Path directory) throws IOException {
+        this(resultSet, directory, DEFAULT_WINDOW_SIZE);
+    }
+
+    /**
+     * Creates a {@link RewindableResultSet} with the given size of the memory-mapped windows.
+     */
+    RewindableResultSet(StreamingResultSet resultSet, Path directory, int windowSize) throws IOException {
+        source = resultSet;
+        FileChannel dataChannel = null;
+        FileChannel indexChannel = null;
+        try {
+            dataChannel = createSpillFile(directory, ".rows");
+            indexChannel = createSpillFile(directory, ".index");
+            dataOut = new BufferedOutputStream(Channels.newOutputStream(dataChannel), BUFFER_SIZE);
+            indexOut = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(indexChannel),
+                    BUFFER_SIZE));
+            encoder = new RowEncoder(dataOut, resultSet.getFormat(), resultSet.getResultVars());
+        } catch (IOException e) {
+            closeQuietly(dataChannel);
+            closeQuietly(indexChannel);
+            throw e;
+        }
+        dataWindow = new MappedWindow(dataChannel, windowSize);
+        indexWindow = new MappedWindow(indexChannel, windowSize);
+        decoder = new RowDecoder(rowIn, null, resultSet.getFormat(), resultSet.getSchema());
+    }
+
+    private static FileChannel createSpillFile(Path directory, String suffix) throws IOException {
+        Path file = directory == null ? Files.createTempFile(PREFIX, suffix)
+                : Files.createTempFile(directory, PREFIX, suffix);
+        return FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                StandardOpenOption.DELETE_ON_CLOSE);
+    }
+
+    @Override
+    public boolean hasNext() {
+        return rowNumber < spilledRows || source.hasNext();
+    }
+
+    @Override
+    public Map<String, Node> next() {
+        return nextRow();
+    }
+
+    /**
+     * Returns the next row, which is either read from the underlying result set or from the spill
+     * file.
+     *
+     * @return the next {@link ResultRow}
+     * @throws UncheckedIOException if the spill file cannot be written or read
+     */
+    public ResultRow nextRow() {
+        if (rowNumber < spilledRows) {
+            return readRow(rowNumber++);
+        }
+        if (!source.hasNext()) {
+            throw new NoSuchElementException();
+        }
+        rowNumber++;
+        return spill();
+    }
+
+    /**
+     * Restarts the iteration at the first row.
+     */
+    public void rewind() {
+        rowNumber = 0;
+    }
+
+    /**
+     * Continues the iteration at the given row.
+     *
+     * @param rowNumber the number of the row returned by the next call of {@link #nextRow()}
+     * @throws IndexOutOfBoundsException if the result does not contain the given number of rows
+     */
+    public void seek(int rowNumber) {
+        spillUntil(rowNumber);
+        this.rowNumber = rowNumber;
+    }
+
+    /**
+     * Returns the given row without changing the position of the iteration. Rows which have not
+     * been read yet are read from the underlying result set and spilled.
+     *
+     * @param rowNumber the row's number, i.e. the value of {@link #getRowNumber()} before the row
+     *        has been returned by {@link #nextRow()}.
+     * @return the {@link ResultRow}
+     * @throws IndexOutOfBoundsException if the result does not contain the given row
+     */
+    public ResultRow getRow(int rowNumber) {
+        spillUntil(rowNumber + 1);
+        return readRow(rowNumber);
+    }
+
+    /**
+     * Returns an array of the bindings used in the result.
+     */
+    public String[] getResultVars() {
+        return source.getResultVars();
+    }
+
+    /**
+     * Returns the {@link ResultSchema} which maps the result's variables to column indices.
+     */
+    public ResultSchema getSchema() {
+        return source.getSchema();
+    }
+
+    /**
+     * Returns the format of the underlying result set.
+     */
+    public ResultFormat getFormat() {
+        return source.getFormat();
+    }
+
+    /**
+     * Closes the underlying result set and deletes the spill files.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            closeSource();
+        } finally {
+            closeQuietly(dataOut);
+            closeQuietly(indexOut);
+        }
+    }
+
+    /**
+     * Spills rows until the spill file contains the given number of rows.
+     */
+    private void spillUntil(int rows) {
+        if (rows < 0) {
+            throw new IndexOutOfBoundsException("Invalid row number " + rows);
+        }
+        while (spilledRows < rows && source.hasNext()) {
+            spill();
+        }
+        if (spilledRows < rows) {
+            throw new IndexOutOfBoundsException(
+                    String.format("Row number %d exceeds the result's %d rows.", rows - 1, spilledRows));
+        }
+    }
+
+    /**
+     * Reads the next row from the underlying result set and writes it to the spill file.
+     */
+    private ResultRow spill() {
+        ResultRow row = source.nextRow();
+        try {
+            indexOut.writeLong(encoder.getSize());
+            encoder.write(row);
+            if (!source.hasNext()) {
+                // release the connection before the next pass
+                closeSource();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot spill result row.", e);
+        }
+        spilledRows++;
+        dirty = true;
+        return row;
+    }
+
+    /**
+     * Decodes the given row from the spill file.
+     */
+    private ResultRow readRow(int index) {
+        try {
+            if (dirty) {
+                dataOut.flush();
+                indexOut.flush();
+                dirty = false;
+            }
+            long offset = getOffset(index);
+            long end = index + 1 < spilledRows ? getOffset(index + 1) : encoder.getSize();
+            rowIn.buffer = dataWindow.map(offset, (int) (end - offset), encoder.getSize());
+            ResultRow row = decoder.getTuple();
+            if (row == null) {
+                throw new IOException("Cannot decode spilled row " + index);
+            }
+            return row;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private long getOffset(int index) throws IOException {
+        return indexWindow.map(Long.BYTES * (long) index, Long.BYTES, Long.BYTES * (long) spilledRows).getLong();
+    }
+
+    private void closeSource() throws IOException {
+        if (!sourceClosed) {
+            sourceClosed = true;
+            source.close();
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            log.debug("Cannot close spill file: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * A memory-mapped window of an append-only file, which is moved if a region outside of the
+     * window is requested.
+     */
+    private static class MappedWindow {
+        private final FileChannel channel;
+        private final int size;
+        private MappedByteBuffer buffer;
+        private long start;
+        private long end;
+
+        MappedWindow(FileChannel channel, int size) {
+            this.channel = channel;
+            this.size = size;
+        }
+
+        /**
+         * Returns a buffer whose remaining bytes correspond to the given region.
+         *
+         * @param position the start of the region in the file
+         * @param length the length of the region
+         * @param limit the number of bytes written to the file, i.e. the maximum end of the window
+         */
+        ByteBuffer map(long position, int length, long limit) throws IOException {
+            if (buffer == null || position < start || position + length > end) {
+                start = position;
+                end = Math.max(position + length, Math.min(position + size, limit));
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+            }
+            buffer.limit((int) (position + length - start));
+            buffer.position((int) (position - start));
+            return buffer;
+        }
+    }
+
+    /**
+     * An {@link InputStream} which reads the remaining bytes of a {@link ByteBuffer}.
+     */
+    private static class ByteBufferInputStream extends InputStream {
+        private ByteBuffer buffer;
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(len, buffer.remaining());
+            buffer.get(b, off, count);
+            return count;
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package com.weblyzard.sparql.cache;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import org.apache.jena.datatypes.TypeMapper;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import com.weblyzard.sparql.ResultFormat;
+import com.weblyzard.sparql.ResultParser;
+import com.weblyzard.sparql.ResultRow;
+import com.weblyzard.sparql.ResultSchema;
+import com.weblyzard.sparql.tsv.TermCache;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Reads result rows written by the {@link RowEncoder}.
+ *
+ * <p>
+ * The terms are stored with their components, so that {@link Node}s are created without parsing
+ * any term syntax.
+ *
+ * @author Albert Weichselbraun
+ *
+ */
+@Slf4j
+public class RowDecoder implements ResultParser, Closeable {
+
+    private final InputStream in;
+    private final TermCache termCache;
+    /** the format of the original response. */
+    @Getter
+    private final ResultFormat format;
+    @Getter
+    private final String[] resultVars;
+    @Getter
+    private final ResultSchema schema;
+    private boolean hasMoreTuples = true;
+
+    /**
+     * Creates a decoder and reads the header.
+     *
+     * @param in the {@link InputStream} to read from, which should be buffered
+     * @param termCache an optional {@link TermCache} for sharing language tags
+     * @throws IOException if the header cannot be read
+     */
+    public RowDecoder(InputStream in, TermCache termCache) throws IOException {
+        this.in = in;
+        this.termCache = termCache;
+        if (readInt() != RowEncoder.MAGIC) {
+            throw new IOException("Input does not contain encoded result rows.");
+        }
+        try {
+            format = ResultFormat.valueOf(readString());
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Input contains an unknown result format.", e);
+        }
+        resultVars = new String[readVarInt()];
+        for (int i = 0; i < resultVars.length; i++) {
+            resultVars[i] = readString();
+        }
+        schema = new ResultSchema(resultVars);
+    }
+
+    /**
+     * Creates a decoder for input without header, which starts at a row marker.
+     *
+     * @param in the {@link InputStream} to read from
+     * @param termCache an optional {@link TermCache} for sharing language tags
+     * @param format the format of the original response
+     * @param schema the {@link ResultSchema} of the encoded rows
+     */
+    RowDecoder(InputStream in, TermCache termCache, ResultFormat format, ResultSchema schema) {
+        this.in = in;
+        this.termCache = termCache;
+        this.format = format;
+        this.schema = schema;
+        resultVars = new String[schema.size()];
+        for (int i = 0; i < resultVars.length; i++) {
+            resultVars[i] = schema.getVariable(i);
+        }
+    }
+
+    /**
+     * Reads the next row.
+     *
+     * @return the tuple or <code>null</code> if no further tuples are available.
+     */
+    @Override
+    public ResultRow getTuple() {
+        if (!hasMoreTuples) {
+            return null;
+        }
+        try {
+            int marker = readByte();
+            if (marker != RowEncoder.ROW) {
+                if (marker != RowEncoder.END) {
+                    throw new IOException("Invalid row marker " + marker);
+                }
+                hasMoreTuples = false;
+                return null;
+            }
+            Node[] tuple = new Node[resultVars.length];
+            for (int i = 0; i < tuple.length; i++) {
+                tuple[i] = readNode();
+            }
+            return new ResultRow(schema, tuple);
+        } catch (IOException e) {
+            // mirror TsvParser which considers IO errors as end of the stream
+            log.warn("Cannot read encoded result rows: {}", e.getMessage());
+            hasMoreTuples = false;
+            return null;
+        }
+    }
+
+    private Node readNode() throws IOException {
+        int tag = readByte();
+        switch (tag) {
+            case RowEncoder.UNBOUND:
+                return null;
+            case RowEncoder.URI:
+                return NodeFactory.createURI(readString());
+            case RowEncoder.BLANK_NODE:
+                return NodeFactory.createBlankNode(readString());
+            case RowEncoder.STRING:
+                return NodeFactory.createLiteral(readString());
+            case RowEncoder.LANGUAGE_LITERAL:
+                String value = readString();
+                String language = readString();
+                return NodeFactory.createLiteral(value,
+                        termCache == null ? language : termCache.internLanguage(language));
+            case RowEncoder.TYPED_LITERAL:
+                String lexicalForm = readString();
+                return NodeFactory.createLiteral(lexicalForm,
+                        TypeMapper.getInstance().getSafeTypeByName(readString()));
+            default:
+                throw new IOException("Invalid term type " + tag);
+        }
+    }
+
+    private int readByte() throws IOException {
+        int value = in.read();
+        if (value < 0) {
+            throw new EOFException("Unexpected end of encoded result rows.");
+        }
+        return value;
+    }
+
+    private int readInt() throws IOException {
+        int value = 0;
+        for (int i = 0; i < 4; i++) {
+            value = value << 8 | readByte();
+        }
+        return value;
+    }
+
+    private int readVarInt() throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = readByte();
+            value |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Invalid length.");
+    }
+
+    private String readString() throws IOException {
+        int length = readVarInt();
+        if (length < 0) {
+            throw new IOException("Invalid length.");
+        }
+        byte[] bytes = new byte[length];
+        int read = 0;
+        while (read < bytes.length) {
+            int count = in.read(bytes, read, bytes.length - read);
+            if (count < 0) {
+                throw new EOFException("Unexpected end of encoded result rows.");
+            }
+            read += count;
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Closes the underlying {@link InputStream}.
+     */
+    @Override
+    public void close() throws IOException {
+        hasMoreTuples = false;
+        in.close();
+    }
+}
@@ -0,0 +1,152 @@
+package com.weblyzard.sparql.cache;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import org.apache.jena.datatypes.xsd.XSDDatatype;
+import org.apache.jena.graph.Node;
+import com.weblyzard.sparql.ResultFormat;
+import com.weblyzard.sparql.ResultRow;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Writes result rows in a compact binary encoding, which is read by the {@link RowDecoder}.
+ *
+ * <p>
+ * The encoding starts with a header that contains the result format of the original response and
+ * the result variables. Every row is preceded by a row marker and stores a type tag followed by the
+ * term's components for every variable. Strings are written as their UTF-8 encoded length followed
+ * by the bytes, and all lengths use a variable length encoding. An end marker completes the
+ * encoding, so that truncated input can be detected.
+ *
+ * @author Albert Weichselbraun
+ *
+ */
+@Slf4j
+public class RowEncoder implements Closeable {
+
+    static final int MAGIC = 0x53525231; // "SRR1"
+    static final byte END = 0;
+    static final byte ROW = 1;
+
+    static final byte UNBOUND = 0;
+    static final byte URI = 1;
+    static final byte BLANK_NODE = 2;
+    static final byte STRING = 3;
+    static final byte LANGUAGE_LITERAL = 4;
+    static final byte TYPED_LITERAL = 5;
+
+    private final OutputStream out;
+    private final int columns;
+    /** the number of bytes written so far. */
+    @Getter
+    private long size;
+
+    /**
+     * Creates an encoder and writes the header.
+     *
+     * @param out the {@link OutputStream} to write to, which should be buffered
+     * @param format the format of the original response
+     * @param resultVars the result variables
+     * @throws IOException if the header cannot be written
+     */
+    public RowEncoder(OutputStream out, ResultFormat format, String[] resultVars) throws IOException {
+        this.out = out;
+        columns = resultVars.length;
+        writeInt(MAGIC);
+        writeString(format.name());
+        writeVarInt(columns);
+        for (String var : resultVars) {
+            writeString(var);
+        }
+    }
+
+    /**
+     * Writes the given row.
+     *
+     * @param row the {@link ResultRow} whose schema corresponds to the result variables
+     * @throws IOException if the row cannot be written
+     */
+    public void write(ResultRow row) throws IOException {
+        writeByte(ROW);
+        for (int i = 0; i < columns; i++) {
+            writeNode(row.get(i));
+        }
+    }
+
+    /**
+     * Writes the end marker and flushes the output. Does not close the underlying stream.
+     *
+     * @throws IOException if the end marker cannot be written
+     */
+    public void finish() throws IOException {
+        writeByte(END);
+        out.flush();
+    }
+
+    private void writeNode(Node node) throws IOException {
+        if (node == null) {
+            writeByte(UNBOUND);
+        } else if (node.isURI()) {
+            writeByte(URI);
+            writeString(node.getURI());
+        } else if (node.isBlank()) {
+            writeByte(BLANK_NODE);
+            writeString(node.getBlankNodeLabel());
+        } else if (node.isLiteral()) {
+            String language = node.getLiteralLanguage();
+            if (language != null && !language.isEmpty()) {
+                writeByte(LANGUAGE_LITERAL);
+                writeString(node.getLiteralLexicalForm());
+                writeString(language);
+            } else if (node.getLiteralDatatype() == null
+                    || XSDDatatype.XSDstring.getURI().equals(node.getLiteralDatatypeURI())) {
+                writeByte(STRING);
+                writeString(node.getLiteralLexicalForm());
+            } else {
+                writeByte(TYPED_LITERAL);
+                writeString(node.getLiteralLexicalForm());
+                writeString(node.getLiteralDatatypeURI());
+            }
+        } else {
+            log.warn("Cannot encode unsupported node '{}'.", node);
+            writeByte(UNBOUND);
+        }
+    }
+
+    private void writeByte(int value) throws IOException {
+        out.write(value);
+        size++;
+    }
+
+    private void writeInt(int value) throws IOException {
+        for (int shift = 24; shift >= 0; shift -= 8) {
+            writeByte(value >>> shift);
+        }
+    }
+
+    private void writeVarInt(int value) throws IOException {
+        while ((value & ~0x7f) != 0) {
+            writeByte(value & 0x7f | 0x80);
+            value >>>= 7;
+        }
+        writeByte(value);
+    }
+
+    private void writeString(String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(bytes.length);
+        out.write(bytes);
+        size += bytes.length;
+    }
+
+    /**
+     * Closes the underlying {@link OutputStream} without writing the end marker.
+     */
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
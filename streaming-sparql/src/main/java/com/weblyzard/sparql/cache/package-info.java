@@ -0,0 +1,8 @@
+/**
+ * Caching and spilling of query results in a compact binary row encoding, and the revalidation of
+ * cached results with conditional requests.
+ *
+ * @author Albert Weichselbraun
+ *
+ */
+package com.weblyzard.sparql.cache;
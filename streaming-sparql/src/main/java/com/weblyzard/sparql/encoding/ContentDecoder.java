@@ -0,0 +1,38 @@
+package com.weblyzard.sparql.encoding;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Decodes response bodies of a single HTTP content encoding.
+ *
+ * <p>
+ * Implementations are discovered with the {@link java.util.ServiceLoader} by listing them in
+ * <code>META-INF/services/com.weblyzard.sparql.encoding.ContentDecoder</code>, which allows
+ * providing additional codecs (e.g. <code>br</code> or <code>zstd</code>) without adding their
+ * dependencies to the core library.
+ *
+ * @author Albert Weichselbraun
+ *
+ */
+public interface ContentDecoder {
+
+    /**
+     * Returns the content encoding handled by the decoder, as used in the Accept-Encoding and
+     * Content-Encoding headers.
+     */
+    public String getEncoding();
+
+    /**
+     * Returns the decoded content of the given {@link InputStream}.
+     *
+     * <p>
+     * Closing the returned stream must consume the trailing bytes of a completely decoded body and
+     * close the given stream.
+     *
+     * @param in the encoded response body
+     * @return an {@link InputStream} providing the decoded body
+     * @throws IOException if the encoded body cannot be read
+     */
+    public InputStream decode(InputStream in) throws IOException;
+}
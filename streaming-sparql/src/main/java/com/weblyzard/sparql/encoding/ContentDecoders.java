@@ -0,0 +1,126 @@
+package com.weblyzard.sparql.encoding;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.stream.Collectors;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * The {@link ContentDecoder}s available for decoding responses.
+ *
+ * <p>
+ * The default instance provides the decoders registered with the {@link ServiceLoader}, followed
+ * by the built-in {@link GzipDecoder} and {@link DeflateDecoder}. Registered decoders replace
+ * built-in decoders of the same encoding.
+ *
+ * @author Albert Weichselbraun
+ *
+ */
+@Slf4j
+public class ContentDecoders {
+
+    private static final String IDENTITY = "identity";
+
+    // decoders in the order of preference
+    private final Map<String, ContentDecoder> decoders = new LinkedHashMap<>();
+    private final String acceptEncoding;
+
+    /**
+     * Creates an instance that provides the given decoders.
+     *
+     * @param decoders the decoders in the order of preference. Later decoders do not replace
+     *        earlier ones of the same encoding.
+     */
+    public ContentDecoders(Collection<? extends ContentDecoder> decoders) {
+        for (ContentDecoder decoder : decoders) {
+            this.decoders.putIfAbsent(decoder.getEncoding().toLowerCase(Locale.ROOT), decoder);
+        }
+        acceptEncoding = this.decoders.isEmpty() ? IDENTITY : String.join(", ", this.decoders.keySet());
+    }
+
+    /**
+     * Returns the decoders registered with the {@link ServiceLoader} and the built-in decoders.
+     */
+    public static ContentDecoders getDefault() {
+        return DefaultHolder.DEFAULT;
+    }
+
+    /**
+     * Returns the value of the Accept-Encoding header, which lists the supported encodings.
+     */
+    public String getAcceptEncoding() {
+        return acceptEncoding;
+    }
+
+    /**
+     * Returns the decoder for the given content encoding.
+     *
+     * @param encoding the content encoding
+     * @return the {@link ContentDecoder} or an empty {@link Optional} if the encoding is not
+     *         supported.
+     */
+    public Optional<ContentDecoder> get(String encoding) {
+        return Optional.ofNullable(decoders.get(encoding.trim().toLowerCase(Locale.ROOT)));
+    }
+
+    /**
+     * Decodes the given response body.
+     *
+     * @param contentEncoding the value of the Content-Encoding header, which lists the encodings in
+     *        the order in which they have been applied, or <code>null</code> for unencoded bodies.
+     * @param in the response body
+     * @return the decoded response body
+     * @throws IOException if an encoding is not supported or the body cannot be decoded
+     */
+    public InputStream decode(String contentEncoding, InputStream in) throws IOException {
+        if (contentEncoding == null || contentEncoding.trim().isEmpty()) {
+            return in;
+        }
+        List<String> encodings = Arrays.stream(contentEncoding.split(",")).map(String::trim)
+                .filter(encoding -> !encoding.isEmpty() && !IDENTITY.equalsIgnoreCase(encoding))
+                .collect(Collectors.toList());
+        Collections.reverse(encodings);
+        InputStream result = in;
+        for (String encoding : encodings) {
+            Optional<ContentDecoder> decoder = get(encoding);
+            if (!decoder.isPresent()) {
+                throw new IOException(String.format("Server returned unsupported content encoding '%s'.", encoding));
+            }
+            result = decoder.get().decode(result);
+        }
+        return result;
+    }
+
+    /**
+     * Lazily discovers the registered decoders.
+     */
+    private static class DefaultHolder {
+        private static final ContentDecoders DEFAULT = new ContentDecoders(discoverDecoders());
+
+        private static List<ContentDecoder> discoverDecoders() {
+            List<ContentDecoder> result = new ArrayList<>();
+            try {
+                for (ContentDecoder decoder : ServiceLoader.load(ContentDecoder.class)) {
+                    log.debug("Registering decoder for content encoding '{}'.", decoder.getEncoding());
+                    result.add(decoder);
+                }
+            } catch (ServiceConfigurationError e) {
+                log.warn("Cannot load content decoders: {}", e.getMessage());
+            }
+            result.add(new GzipDecoder());
+            result.add(new DeflateDecoder());
+            return result;
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.weblyzard.sparql.encoding;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Decodes the <code>deflate</code> content encoding.
+ *
+ * <p>
+ * HTTP specifies deflate as zlib wrapped data, but some servers send raw deflate data instead. The
+ * decoder, therefore, inspects the first two bytes of the body for a zlib header.
+ *
+ * @author Albert Weichselbraun
+ *
+ */
+public class DeflateDecoder implements ContentDecoder {
+
+    /** the default size of the buffer which holds the compressed input. */
+    public static final int DEFAULT_BUFFER_SIZE = GzipDecoder.DEFAULT_BUFFER_SIZE;
+
+    private final int bufferSize;
+
+    /**
+     * Creates a decoder with a buffer of {@link #DEFAULT_BUFFER_SIZE} bytes.
+     */
+    public DeflateDecoder() {
+        this(DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Creates a decoder with the given buffer size.
+     *
+     * @param bufferSize the size of the buffer which holds the compressed input.
+     */
+    public DeflateDecoder(int bufferSize) {
+        this.bufferSize = bufferSize;
+    }
+
+    @Override
+    public String getEncoding() {
+        return "deflate";
+    }
+
+    @Override
+    public InputStream decode(InputStream in) throws IOException {
+        PushbackInputStream pushback = new PushbackInputStream(in, 2);
+        byte[] header = new byte[2];
+        int read = 0;
+        int count;
+        while (read < header.length && (count = pushback.read(header, read, header.length - read)) != -1) {
+            read += count;
+        }
+        pushback.unread(header, 0, read);
+        return new ClosingInflaterInputStream(pushback, new Inflater(!isZlibHeader(header, read)), bufferSize);
+    }
+
+    /**
+     * Checks for the compression method (deflate) and checksum of a zlib header (RFC 1950).
+     */
+    private static boolean isZlibHeader(byte[] header, int length) {
+        int cmf = header[0] & 0xff;
+        int flg = header[1] & 0xff;
+        return length == 2 && (cmf & 0x0f) == 8 && ((cmf << 8) + flg) % 31 == 0;
+    }
+
+    /**
+     * Releases the native resources of its {@link Inflater} once it is closed.
+     */
+    private static class ClosingInflaterInputStream extends InflaterInputStream {
+        private boolean closed;
+
+        ClosingInflaterInputStream(InputStream in, Inflater inflater, int bufferSize) {
+            super(in, inflater, bufferSize);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                super.close();
+            } finally {
+                inf.end();
+            }
+        }
+    }
+}
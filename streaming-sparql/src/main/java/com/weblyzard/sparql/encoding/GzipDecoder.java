@@ -0,0 +1,46 @@
+package com.weblyzard.sparql.encoding;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Decodes the <code>gzip</code> content encoding.
+ *
+ * @author Albert Weichselbraun
+ *
+ */
+public class GzipDecoder implements ContentDecoder {
+
+    /** the default size of the buffer which holds the compressed input. */
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    private final int bufferSize;
+
+    /**
+     * Creates a decoder with a buffer of {@link #DEFAULT_BUFFER_SIZE} bytes.
+     */
+    public GzipDecoder() {
+        this(DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Creates a decoder with the given buffer size.
+     *
+     * @param bufferSize the size of the buffer which holds the compressed input. The JDK's default
+     *        of 512 bytes requires a call to the underlying stream for every 512 bytes.
+     */
+    public GzipDecoder(int bufferSize) {
+        this.bufferSize = bufferSize;
+    }
+
+    @Override
+    public String getEncoding() {
+        return "gzip";
+    }
+
+    @Override
+    public InputStream decode(InputStream in) throws IOException {
+        return new GZIPInputStream(in, bufferSize);
+    }
+}
@@ -0,0 +1,8 @@
+/**
+ * Decoding of compressed responses. Additional codecs are registered as
+ * {@link java.util.ServiceLoader} providers of {@link com.weblyzard.sparql.encoding.ContentDecoder}.
+ *
+ * @author Albert Weichselbraun
+ *
+ */
+package com.weblyzard.sparql.encoding;
@@ -0,0 +1,218 @@
+package com.weblyzard.sparql.json;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import org.apache.jena.datatypes.TypeMapper;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.weblyzard.sparql.ResultParser;
+import com.weblyzard.sparql.ResultRow;
+import com.weblyzard.sparql.ResultSchema;
+import com.weblyzard.sparql.ResultSetOptions;
+import com.weblyzard.sparql.tsv.TermCache;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Parses SPARQL results in JSON format incrementally.
+ *
+ * <p>
+ * The parser reads the result variables from the <code>head</code> object and then emits one row
+ * per element of the <code>results.bindings</code> array as it arrives, so that its memory
+ * consumption does not depend on the size of the response. The parser, therefore, requires
+ * <code>head</code> to precede <code>results</code>, as produced by all common triple stores.
+ *
+ * <p>
+ * Variables excluded by the {@link ResultSetOptions#getProjection()} are skipped without creating
+ * {@link Node}s. A {@link TermCache}, if provided, is used for sharing language tags.
+ *
+ * @author Albert Weichselbraun
+ *
+ */
+@Slf4j
+public class JsonResultParser implements ResultParser, Closeable {
+
+    // closing the parser must not close (and thereby drain) the server's response
+    private static final JsonFactory JSON_FACTORY = new JsonFactory().disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+
+    private final JsonParser parser;
+    @Getter
+    private final String[] resultVars;
+    @Getter
+    private final ResultSchema schema;
+    private final TermCache termCache;
+    private final Set<String> projection;
+    // whether the parser is positioned within the bindings array
+    private boolean inBindings;
+
+    /**
+     * Creates a parser for the given {@link InputStream}.
+     *
+     * @param in the {@link InputStream} to consume; the encoding is detected automatically.
+     * @param options the {@link ResultSetOptions} to use
+     * @throws IOException if the result variables cannot be read
+     */
+    public JsonResultParser(InputStream in, ResultSetOptions options) throws IOException {
+        parser = JSON_FACTORY.createParser(in);
+        termCache = options.getTermCache();
+        projection = options.getProjection();
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            throw new IOException("Cannot retrieve SPARQL result header.");
+        }
+        String[] vars = null;
+        while (!inBindings && parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            if ("head".equals(field)) {
+                vars = parseHead();
+            } else if ("results".equals(field)) {
+                if (vars == null) {
+                    throw new IOException("SPARQL results must be preceded by the result header.");
+                }
+                inBindings = seekBindings();
+            } else {
+                // e.g. the boolean result of ASK queries
+                parser.skipChildren();
+            }
+        }
+        if (vars == null) {
+            throw new IOException("Cannot retrieve SPARQL result header.");
+        }
+        resultVars = vars;
+        schema = new ResultSchema(vars);
+    }
+
+    /**
+     * Reads the result variables from the head object.
+     */
+    private String[] parseHead() throws IOException {
+        List<String> vars = new ArrayList<>();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            if (parser.nextToken() == JsonToken.START_ARRAY && "vars".equals(field)) {
+                while (parser.nextToken() == JsonToken.VALUE_STRING) {
+                    vars.add(parser.getText());
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return vars.toArray(new String[0]);
+    }
+
+    /**
+     * Advances to the start of the bindings array within the results object.
+     *
+     * @return false if the results object does not contain any bindings.
+     */
+    private boolean seekBindings() throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            if (parser.nextToken() == JsonToken.START_ARRAY && "bindings".equals(field)) {
+                return true;
+            }
+            parser.skipChildren();
+        }
+        return false;
+    }
+
+    /**
+     * Parses the next binding.
+     *
+     * @return the tuple or <code>null</code> if no further tuples are available.
+     */
+    @Override
+    public ResultRow getTuple() {
+        if (!inBindings) {
+            return null;
+        }
+        try {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                inBindings = false;
+                return null;
+            }
+            Node[] tuple = new Node[resultVars.length];
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                int idx = schema.indexOf(parser.getCurrentName());
+                parser.nextToken();
+                if (idx < 0 || projection != null && !projection.contains(resultVars[idx])) {
+                    parser.skipChildren();
+                    continue;
+                }
+                tuple[idx] = parseTerm();
+            }
+            return new ResultRow(schema, tuple);
+        } catch (IOException e) {
+            // mirror TsvParser which considers IO errors as end of the stream
+            log.warn("Cannot read JSON response: {}", e.getMessage());
+            inBindings = false;
+            return null;
+        }
+    }
+
+    /**
+     * Translates the RDF term object at the current position into a {@link Node}.
+     *
+     * @return the {@link Node} or <code>null</code> for unsupported terms.
+     */
+    private Node parseTerm() throws IOException {
+        String type = null;
+        String value = null;
+        String language = null;
+        String datatype = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            switch (field) {
+                case "type":
+                    type = parser.getText();
+                    break;
+                case "value":
+                    value = parser.getText();
+                    break;
+                case "xml:lang":
+                    language = parser.getText();
+                    break;
+                case "datatype":
+                    datatype = parser.getText();
+                    break;
+                default:
+                    parser.skipChildren();
+            }
+        }
+        if (type == null || value == null) {
+            log.warn("Ignoring incomplete RDF term of type '{}'.", type);
+            return null;
+        }
+        switch (type) {
+            case "uri":
+                return NodeFactory.createURI(value);
+            case "bnode":
+                return NodeFactory.createBlankNode(value);
+            case "literal":
+            case "typed-literal":
+                if (language != null) {
+                    return NodeFactory.createLiteral(value,
+                            termCache == null ? language : termCache.internLanguage(language));
+                } else if (datatype != null) {
+                    return NodeFactory.createLiteral(value, TypeMapper.getInstance().getSafeTypeByName(datatype));
+                }
+                return NodeFactory.createLiteral(value);
+            default:
+                log.warn("Ignoring unsupported RDF term of type '{}'.", type);
+                return null;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        parser.close();
+    }
+}
@@ -0,0 +1,7 @@
+/**
+ * Incremental parsing of SPARQL results in JSON format (<code>application/sparql-results+json</code>).
+ *
+ * @author Albert Weichselbraun
+ *
+ */
+package com.weblyzard.sparql.json;
@@ -0,0 +1,97 @@
+package com.weblyzard.sparql.pagination;
+
+import java.util.concurrent.Executor;
+import org.apache.jena.query.Query;
+import org.apache.jena.query.QueryFactory;
+import com.weblyzard.sparql.ResultSetOptions;
+import com.weblyzard.sparql.StreamingQueryExecutor;
+import com.weblyzard.sparql.transport.Transport;
+import lombok.Builder;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Splits large SELECT queries into pages using LIMIT and OFFSET.
+ *
+ * <p>
+ * The returned {@link PaginatedResultSet} provides the rows of all pages and retrieves the
+ * following pages concurrently while the current page is consumed.
+ *
+ * <p>
+ * Example:
+ * <code>PaginatedQueryExecutor.builder().pageSize(50000).build().getResultSet(url, query)</code>
+ *
+ * @author Albert Weichselbraun
+ *
+ */
+@Slf4j
+public class PaginatedQueryExecutor {
+
+    /** the default number of rows per page. */
+    public static final int DEFAULT_PAGE_SIZE = 10000;
+    /** the default number of pages retrieved ahead of the current page. */
+    public static final int DEFAULT_PREFETCH_PAGES = 2;
+
+    private final Transport transport;
+    private final Executor executor;
+    private final int pageSize;
+    private final int prefetchPages;
+    private final int timeout;
+    private final ResultSetOptions options;
+
+    /**
+     * Creates a new executor.
+     *
+     * @param transport the {@link Transport} used for querying the repositories (default:
+     *        {@link StreamingQueryExecutor#getDefaultTransport()})
+     * @param executor the {@link Executor} which retrieves the pages (default:
+     *        {@link StreamingQueryExecutor#getDefaultExecutor()})
+     * @param pageSize the number of rows per page
+     * @param prefetchPages the number of pages retrieved ahead of the current page
+     * @param timeout the timeout of a single page's query in milliseconds
+     * @param options the {@link ResultSetOptions} used for processing the server's responses
+     */
+    @Builder
+    private PaginatedQueryExecutor(Transport transport, Executor executor, Integer pageSize, Integer prefetchPages,
+            int timeout, ResultSetOptions options) {
+        this.transport = transport == null ? StreamingQueryExecutor.getDefaultTransport() : transport;
+        this.executor = executor == null ? StreamingQueryExecutor.getDefaultExecutor() : executor;
+        this.pageSize = pageSize == null ? DEFAULT_PAGE_SIZE : pageSize;
+        this.prefetchPages = prefetchPages == null ? DEFAULT_PREFETCH_PAGES : prefetchPages;
+        this.timeout = timeout;
+        this.options = options == null ? ResultSetOptions.DEFAULT : options;
+        if (this.pageSize < 1 || this.prefetchPages < 0) {
+            throw new IllegalArgumentException("Invalid page size or number of prefetched pages.");
+        }
+    }
+
+    /**
+     * Performs the given query page by page.
+     *
+     * <p>
+     * The query's own LIMIT and OFFSET are honored. Pagination relies on a stable order of the
+     * results, which SPARQL only guarantees for queries with an ORDER BY clause.
+     *
+     * @param repositoryUrl the url of the repository to query
+     * @param query the SELECT query to perform
+     * @return a {@link PaginatedResultSet} providing the rows of all pages
+     * @throws org.apache.jena.query.QueryParseException if the query cannot be parsed
+     * @throws IllegalArgumentException if the query is not a SELECT query
+     */
+    public PaginatedResultSet getResultSet(String repositoryUrl, String query) {
+        Query parsedQuery = QueryFactory.create(query);
+        if (!parsedQuery.isSelectType()) {
+            throw new IllegalArgumentException("Only SELECT queries can be paginated.");
+        }
+        if (!parsedQuery.hasOrderBy()) {
+            log.warn("Paginating a query without ORDER BY clause might yield inconsistent results.");
+        }
+        long start = parsedQuery.hasOffset() ? parsedQuery.getOffset() : 0;
+        long end = parsedQuery.hasLimit() ? start + parsedQuery.getLimit() : Long.MAX_VALUE;
+        return new PaginatedResultSet((offset, limit) -> {
+            Query page = parsedQuery.cloneQuery();
+            page.setOffset(offset);
+            page.setLimit(limit);
+            return StreamingQueryExecutor.getResultSet(transport, repositoryUrl, page.serialize(), timeout, options);
+        }, start, end, pageSize, prefetchPages, executor);
+    }
+}
@@ -0,0 +1,255 @@
+package com.weblyzard.sparql.pagination;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import org.apache.jena.graph.Node;
+import com.weblyzard.sparql.ResultRow;
+import com.weblyzard.sparql.ResultSchema;
+import com.weblyzard.sparql.StreamingResultSet;
+
+/**
+ * Provides the rows of a paginated query as a single result set.
+ *
+ * <p>
+ * Pages are retrieved on an {@link Executor}. While the current page is consumed, up to
+ * prefetchPages following pages are retrieved concurrently and buffered, so that at most
+ * <code>(prefetchPages + 1) * pageSize</code> rows are held in memory. The result ends with the
+ * first page that contains less than the requested number of rows. Closing the result set aborts
+ * the retrieval of pending pages.
+ *
+ * @author Albert Weichselbraun
+ *
+ */
+public class PaginatedResultSet implements Iterator<Map<String, Node>>, Closeable {
+
+    private final PageQuery pageQuery;
+    private final long end;
+    private final int pageSize;
+    private final Executor executor;
+    // pages in retrieval order
+    private final Deque<Page> pages = new ArrayDeque<>();
+    // provides the result's variables
+    private Page firstPage;
+    private long nextOffset;
+    private boolean lastPageReached;
+    private Iterator<ResultRow> currentPage;
+    private int pageCount;
+
+    /**
+     * Retrieves a single page.
+     */
+    @FunctionalInterface
+    interface PageQuery {
+        public StreamingResultSet open(long offset, long limit) throws IOException;
+    }
+
+    /**
+     * A page which is being retrieved.
+     */
+    private static class Page {
+        private final long limit;
+        private CompletableFuture<List<ResultRow>> rows;
+        // the page's response, which is available once the page has been opened
+        private volatile StreamingResultSet resultSet;
+        private volatile boolean cancelled;
+        // published by the completion of rows
+        private String[] resultVars;
+        private ResultSchema schema;
+
+        Page(long limit) {
+            this.limit = limit;
+        }
+
+        /**
+         * Cancels the page and aborts its response, if it has already been opened.
+         */
+        void cancel() {
+            cancelled = true;
+            rows.cancel(false);
+            StreamingResultSet current = resultSet;
+            if (current != null) {
+                current.cancel();
+            }
+        }
+    }
+
+    /**
+     * Starts retrieving the first pages.
+     *
+     * @param pageQuery retrieves the page with the given offset and limit
+     * @param start the offset of the first row
+     * @param end the offset following the last row
+     * @param pageSize the number of rows per page
+     * @param prefetchPages the number of pages retrieved ahead of the current page
+     * @param executor the {@link Executor} used for retrieving the pages
+     */
+    PaginatedResultSet(PageQuery pageQuery, long start, long end, int pageSize, int prefetchPages,
+            Executor executor) {
+        this.pageQuery = pageQuery;
+        this.end = end;
+        this.pageSize = pageSize;
+        this.executor = executor;
+        nextOffset = start;
+        for (int i = 0; i <= prefetchPages; i++) {
+            submitNextPage();
+        }
+    }
+
+    /**
+     * Starts retrieving the page at nextOffset, unless the end of the result has been reached. The
+     * first page is always retrieved, since it provides the result's variables.
+     */
+    private void submitNextPage() {
+        if (lastPageReached || nextOffset >= end && firstPage != null) {
+            return;
+        }
+        long offset = nextOffset;
+        Page page = new Page(Math.min(pageSize, end - offset));
+        nextOffset += page.limit;
+        page.rows = CompletableFuture.supplyAsync(() -> retrievePage(page, offset), executor);
+        if (firstPage == null) {
+            firstPage = page;
+        }
+        pages.add(page);
+    }
+
+    private List<ResultRow> retrievePage(Page page, long offset) {
+        List<ResultRow> rows = new ArrayList<>((int) page.limit);
+        try (StreamingResultSet resultSet = pageQuery.open(offset, page.limit)) {
+            page.resultSet = resultSet;
+            // the page might have been cancelled while it was opened
+            if (page.cancelled) {
+                resultSet.cancel();
+            }
+            page.resultVars = resultSet.getResultVars();
+            page.schema = resultSet.getSchema();
+            while (resultSet.hasNext()) {
+                rows.add(resultSet.nextRow());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return rows;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>
+     * Waits until the next page has been retrieved, if necessary.
+     *
+     * @throws UncheckedIOException if a page cannot be retrieved
+     */
+    @Override
+    public boolean hasNext() {
+        while (currentPage == null || !currentPage.hasNext()) {
+            Page page = pages.poll();
+            if (page == null) {
+                return false;
+            }
+            List<ResultRow> rows = join(page);
+            pageCount++;
+            if (rows.size() < page.limit) {
+                cancelPages();
+            } else {
+                submitNextPage();
+            }
+            currentPage = rows.iterator();
+        }
+        return true;
+    }
+
+    private List<ResultRow> join(Page page) {
+        try {
+            return page.rows.join();
+        } catch (CompletionException e) {
+            cancelPages();
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public Map<String, Node> next() {
+        return nextRow();
+    }
+
+    /**
+     * Returns the next row.
+     *
+     * @return the next {@link ResultRow}
+     * @throws UncheckedIOException if a page cannot be retrieved
+     */
+    public ResultRow nextRow() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return currentPage.next();
+    }
+
+    /**
+     * Returns an array of the bindings used in the result.
+     *
+     * <p>
+     * Waits until the first page has been retrieved, if necessary.
+     *
+     * @throws UncheckedIOException if the first page cannot be retrieved
+     */
+    public String[] getResultVars() {
+        join(firstPage);
+        return firstPage.resultVars;
+    }
+
+    /**
+     * Returns the {@link ResultSchema} of the first page.
+     *
+     * <p>
+     * Waits until the first page has been retrieved, if necessary.
+     *
+     * @throws UncheckedIOException if the first page cannot be retrieved
+     */
+    public ResultSchema getSchema() {
+        join(firstPage);
+        return firstPage.schema;
+    }
+
+    /**
+     * Returns the number of pages which have been consumed so far.
+     */
+    public int getPageCount() {
+        return pageCount;
+    }
+
+    /**
+     * Cancels the retrieval of pending pages.
+     */
+    private void cancelPages() {
+        lastPageReached = true;
+        for (Page page : pages) {
+            page.cancel();
+        }
+        pages.clear();
+    }
+
+    /**
+     * Discards the remaining pages and aborts the responses of pages which are being retrieved.
+     */
+    @Override
+    public void close() {
+        cancelPages();
+        currentPage = null;
+    }
+}
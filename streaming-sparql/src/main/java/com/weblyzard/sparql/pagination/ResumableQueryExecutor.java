@@ -0,0 +1,134 @@
+package com.weblyzard.sparql.pagination;
+
+import java.io.IOException;
+import java.time.Duration;
+import org.apache.jena.query.Query;
+import org.apache.jena.query.QueryException;
+import org.apache.jena.query.QueryFactory;
+import com.weblyzard.sparql.ResultSetOptions;
+import com.weblyzard.sparql.StreamingQueryExecutor;
+import com.weblyzard.sparql.StreamingResultSet;
+import com.weblyzard.sparql.transport.Transport;
+import lombok.Builder;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Performs long running queries whose results are resumed after connection drops.
+ *
+ * <p>
+ * If the server's response is truncated, SELECT queries are reissued with an OFFSET that starts
+ * after the last delivered row. Other queries and queries which cannot be parsed (e.g. due to
+ * vendor specific extensions) are reissued unchanged and the already delivered rows are skipped.
+ *
+ * <p>
+ * Example:
+ * <code>ResumableQueryExecutor.builder().maxRetries(10).build().getResultSet(url, query)</code>
+ *
+ * @author Albert Weichselbraun
+ *
+ */
+@Slf4j
+public class ResumableQueryExecutor {
+
+    /** the default maximum number of consecutive retries. */
+    public static final int DEFAULT_MAX_RETRIES = 5;
+    /** the default time to wait before the first retry. */
+    public static final Duration DEFAULT_BACKOFF = Duration.ofSeconds(1);
+    /** the default maximum time to wait before a retry. */
+    public static final Duration DEFAULT_MAX_BACKOFF = Duration.ofMinutes(1);
+
+    private final Transport transport;
+    private final int timeout;
+    private final ResultSetOptions options;
+    private final int maxRetries;
+    private final long backoffMillis;
+    private final long maxBackoffMillis;
+
+    /**
+     * Creates a new executor.
+     *
+     * @param transport the {@link Transport} used for querying the repositories (default:
+     *        {@link StreamingQueryExecutor#getDefaultTransport()})
+     * @param timeout query timeout in milliseconds
+     * @param options the {@link ResultSetOptions} used for processing the server's responses
+     * @param maxRetries the maximum number of consecutive retries without receiving further rows
+     *        (default: {@link #DEFAULT_MAX_RETRIES})
+     * @param backoff the time to wait before the first retry, which is doubled with every
+     *        consecutive retry (default: {@link #DEFAULT_BACKOFF})
+     * @param maxBackoff the maximum time to wait before a retry (default:
+     *        {@link #DEFAULT_MAX_BACKOFF})
+     */
+    @Builder
+    private ResumableQueryExecutor(Transport transport, int timeout, ResultSetOptions options, Integer maxRetries,
+            Duration backoff, Duration maxBackoff) {
+        this.transport = transport == null ? StreamingQueryExecutor.getDefaultTransport() : transport;
+        this.timeout = timeout;
+        this.options = options == null ? ResultSetOptions.DEFAULT : options;
+        this.maxRetries = maxRetries == null ? DEFAULT_MAX_RETRIES : maxRetries;
+        this.backoffMillis = (backoff == null ? DEFAULT_BACKOFF : backoff).toMillis();
+        this.maxBackoffMillis = (maxBackoff == null ? DEFAULT_MAX_BACKOFF : maxBackoff).toMillis();
+        if (this.maxRetries < 0 || backoffMillis < 0) {
+            throw new IllegalArgumentException("Invalid number of retries or backoff.");
+        }
+    }
+
+    /**
+     * Performs the given query.
+     *
+     * <p>
+     * Resuming relies on a stable order of the results, which SPARQL only guarantees for queries
+     * with an ORDER BY clause.
+     *
+     * @param repositoryUrl the url of the repository to query
+     * @param query the query to perform
+     * @return a {@link ResumableResultSet} providing the rows of the query
+     * @throws IOException if the initial query fails
+     */
+    public ResumableResultSet getResultSet(String repositoryUrl, String query) throws IOException {
+        ResumableResultSet.ResumeQuery resumeQuery = getResumeQuery(repositoryUrl, query);
+        return new ResumableResultSet(resumeQuery.open(0), resumeQuery, maxRetries, backoffMillis,
+                maxBackoffMillis);
+    }
+
+    private ResumableResultSet.ResumeQuery getResumeQuery(String repositoryUrl, String query) {
+        Query parsedQuery;
+        try {
+            parsedQuery = QueryFactory.create(query);
+        } catch (QueryException e) {
+            log.debug("Cannot parse query, resuming by skipping delivered rows: {}", e.getMessage());
+            return delivered -> skip(execute(repositoryUrl, query), delivered);
+        }
+        if (!parsedQuery.isSelectType()) {
+            return delivered -> skip(execute(repositoryUrl, query), delivered);
+        }
+        if (!parsedQuery.hasOrderBy()) {
+            log.debug("Resuming a query without ORDER BY clause might yield inconsistent results.");
+        }
+        long start = parsedQuery.hasOffset() ? parsedQuery.getOffset() : 0;
+        return delivered -> {
+            if (delivered == 0) {
+                return execute(repositoryUrl, query);
+            }
+            Query resumed = parsedQuery.cloneQuery();
+            resumed.setOffset(start + delivered);
+            if (parsedQuery.hasLimit()) {
+                resumed.setLimit(Math.max(0, parsedQuery.getLimit() - delivered));
+            }
+            return execute(repositoryUrl, resumed.serialize());
+        };
+    }
+
+    private StreamingResultSet execute(String repositoryUrl, String query) throws IOException {
+        return StreamingQueryExecutor.getResultSet(transport, repositoryUrl, query, timeout, options);
+    }
+
+    /**
+     * Skips the given number of rows, which have already been delivered.
+     */
+    private static StreamingResultSet skip(StreamingResultSet resultSet, long rows) {
+        for (long i = 0; i < rows && resultSet.hasNext(); i++) {
+            resultSet.nextRow();
+        }
+        return resultSet;
+    }
+}
@@ -0,0 +1,182 @@
+package com.weblyzard.sparql.pagination;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import org.apache.jena.graph.Node;
+import com.weblyzard.sparql.ResultRow;
+import com.weblyzard.sparql.ResultSchema;
+import com.weblyzard.sparql.StreamingResultSet;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Provides the rows of a query and transparently resumes the query if the server's response has
+ * been truncated.
+ *
+ * <p>
+ * If a response ends prematurely (see {@link StreamingResultSet#isTruncated()}), the query is
+ * reissued for the rows following the last delivered row, after waiting for an exponentially
+ * growing backoff. The result fails with an {@link UncheckedIOException} once the maximum number
+ * of consecutive retries has been exceeded.
+ *
+ * @author Albert Weichselbraun
+ *
+ */
+@Slf4j
+public class ResumableResultSet implements Iterator<Map<String, Node>>, Closeable {
+
+    private final ResumeQuery resumeQuery;
+    private final int maxRetries;
+    private final long backoffMillis;
+    private final long maxBackoffMillis;
+    private final String[] resultVars;
+    private final ResultSchema schema;
+    private StreamingResultSet current;
+    // the number of consecutive retries without delivering rows
+    private int retries;
+
+    /** the number of rows delivered so far. */
+    @Getter
+    private long rowNumber;
+    /** the number of times the query has been resumed. */
+    @Getter
+    private int resumeCount;
+
+    /**
+     * Reissues the query.
+     */
+    @FunctionalInterface
+    interface ResumeQuery {
+        /**
+         * Returns a result set starting with the row following the given number of rows.
+         */
+        public StreamingResultSet open(long delivered) throws IOException;
+    }
+
+    /**
+     * Creates a new result set.
+     *
+     * @param resultSet the result set of the initial query
+     * @param resumeQuery reissues the query for the remaining rows
+     * @param maxRetries the maximum number of consecutive retries
+     * @param backoffMillis the time to wait before the first retry
+     * @param maxBackoffMillis the maximum time to wait before a retry
+     */
+    ResumableResultSet(StreamingResultSet resultSet, ResumeQuery resumeQuery, int maxRetries, long backoffMillis,
+            long maxBackoffMillis) {
+        this.current = resultSet;
+        this.resumeQuery = resumeQuery;
+        this.maxRetries = maxRetries;
+        this.backoffMillis = backoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+        resultVars = resultSet.getResultVars();
+        schema = resultSet.getSchema();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>
+     * Resumes the query if the current response has been truncated. Cancelled responses (e.g.
+     * since they exceeded their deadline) are not resumed.
+     *
+     * @throws UncheckedIOException if the query cannot be resumed or has been cancelled
+     */
+    @Override
+    public boolean hasNext() {
+        while (!current.hasNext()) {
+            if (!current.isTruncated()) {
+                return false;
+            }
+            resume();
+        }
+        return true;
+    }
+
+    @Override
+    public Map<String, Node> next() {
+        return nextRow();
+    }
+
+    /**
+     * Returns the next row.
+     *
+     * @return the next {@link ResultRow}
+     * @throws UncheckedIOException if the query cannot be resumed or has been cancelled
+     */
+    public ResultRow nextRow() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        ResultRow row = current.nextRow();
+        rowNumber++;
+        retries = 0;
+        return row;
+    }
+
+    /**
+     * Reissues the query until a response has been obtained or the retries are exhausted.
+     */
+    private void resume() {
+        closeQuietly(current);
+        IOException failure = null;
+        while (retries < maxRetries) {
+            long backoff = Math.min(maxBackoffMillis, backoffMillis << Math.min(retries, 30));
+            retries++;
+            log.warn("Resuming query after {} rows in {} ms (retry {} of {}).", rowNumber, backoff, retries,
+                    maxRetries);
+            try {
+                Thread.sleep(backoff);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new UncheckedIOException(new InterruptedIOException("Interrupted while resuming the query."));
+            }
+            try {
+                current = resumeQuery.open(rowNumber);
+                resumeCount++;
+                return;
+            } catch (IOException e) {
+                log.warn("Cannot resume query: {}", e.getMessage());
+                failure = e;
+            }
+        }
+        IOException e = new IOException(
+                String.format("Result has been truncated after %d rows and cannot be resumed.", rowNumber));
+        if (failure != null) {
+            e.addSuppressed(failure);
+        }
+        throw new UncheckedIOException(e);
+    }
+
+    /**
+     * Returns an array of the bindings used in the result.
+     */
+    public String[] getResultVars() {
+        return resultVars;
+    }
+
+    /**
+     * Returns the {@link ResultSchema} of the initial response.
+     */
+    public ResultSchema getSchema() {
+        return schema;
+    }
+
+    @Override
+    public void close() throws IOException {
+        current.close();
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            log.debug("Cannot close truncated response: {}", e.getMessage());
+        }
+    }
+}
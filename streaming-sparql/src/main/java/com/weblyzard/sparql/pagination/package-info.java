@@ -0,0 +1,7 @@
+/**
+ * Transparent pagination and resumption of large queries.
+ *
+ * @author Albert Weichselbraun
+ *
+ */
+package com.weblyzard.sparql.pagination;
@@ -0,0 +1,245 @@
+package com.weblyzard.sparql.pipeline;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import com.weblyzard.sparql.ResultParser;
+import com.weblyzard.sparql.ResultRow;
+import com.weblyzard.sparql.ResultSchema;
+import com.weblyzard.sparql.StreamingQueryExecutor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * A {@link ResultParser} that reads, decompresses and parses the server's response on a background
+ * thread.
+ *
+ * <p>
+ * Parsed rows are handed over to the consumer through a bounded {@link SpscRingBuffer}. The
+ * background thread pauses if the buffer is full, so that slow consumers do not cause unbounded
+ * memory consumption. Waiting threads spin briefly and are then parked until the other thread
+ * signals progress. Exceptions thrown by the underlying parser are rethrown to the consumer once
+ * all preceding rows have been consumed. Closing the pipeline also closes the underlying parser, if
+ * it is {@link Closeable}, once the background thread has stopped.
+ *
+ * @author Albert Weichselbraun
+ *
+ */
+@Slf4j
+public class PipelinedResultParser implements ResultParser, Closeable {
+
+    /** the default number of rows buffered by the pipeline. */
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    // number of busy-waiting attempts before parking the waiting thread
+    private static final int MAX_SPINS = 64;
+    // bounds the delay of wake-ups which race with the announcement of a parked thread
+    private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final ResultParser parser;
+    private final SpscRingBuffer<ResultRow> buffer;
+    // the threads which wait for rows or free space, if any
+    private final AtomicReference<Thread> waitingConsumer = new AtomicReference<>();
+    private final AtomicReference<Thread> waitingProducer = new AtomicReference<>();
+    final CompletableFuture<Void> producer;
+    private volatile boolean closed;
+    // set by the producer once it has added all rows to the buffer
+    private volatile boolean done;
+    private volatile Throwable failure;
+    private boolean finished;
+
+    /**
+     * Starts decoding the given {@link ResultParser}'s input on a thread of the
+     * {@link StreamingQueryExecutor#getDefaultExecutor()}.
+     *
+     * @param parser the {@link ResultParser} to run on the background thread
+     * @param capacity the maximum number of buffered rows
+     */
+    public PipelinedResultParser(ResultParser parser, int capacity) {
+        this(parser, capacity, StreamingQueryExecutor.getDefaultExecutor());
+    }
+
+    /**
+     * Starts decoding the given {@link ResultParser}'s input on a background thread.
+     *
+     * @param parser the {@link ResultParser} to run on the background thread
+     * @param capacity the maximum number of buffered rows
+     * @param executor the {@link Executor} which runs the background thread. The thread is
+     *        occupied until the response has been parsed or the pipeline has been closed.
+     */
+    public PipelinedResultParser(ResultParser parser, int capacity, Executor executor) {
+        this.parser = parser;
+        buffer = new SpscRingBuffer<>(capacity);
+        producer = CompletableFuture.runAsync(this::produce, executor);
+    }
+
+    @Override
+    public String[] getResultVars() {
+        return parser.getResultVars();
+    }
+
+    @Override
+    public ResultSchema getSchema() {
+        return parser.getSchema();
+    }
+
+    /**
+     * Returns the next tuple from the pipeline and waits for the background thread, if necessary.
+     *
+     * @return the tuple or <code>null</code> if no further tuples are available or the pipeline
+     *         has been closed.
+     * @throws IllegalStateException if the current thread is interrupted while waiting, which
+     *         closes the pipeline.
+     */
+    @Override
+    public ResultRow getTuple() {
+        if (finished) {
+            return null;
+        }
+        ResultRow row;
+        int idleCount = 0;
+        while ((row = buffer.poll()) == null) {
+            if (done) {
+                // the producer might have added rows before finishing
+                if ((row = buffer.poll()) != null) {
+                    break;
+                }
+                finished = true;
+                rethrowFailure();
+                return null;
+            }
+            if (closed) {
+                finished = true;
+                return null;
+            }
+            if (Thread.interrupted()) {
+                close();
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for parsed rows.");
+            }
+            idleCount = idle(idleCount, waitingConsumer);
+        }
+        if (idleCount > MAX_SPINS) {
+            waitingConsumer.compareAndSet(Thread.currentThread(), null);
+        }
+        signal(waitingProducer);
+        return row;
+    }
+
+    /**
+     * Stops the background thread once it has completed the current row and closes the underlying
+     * parser afterwards.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        signal(waitingProducer);
+        signal(waitingConsumer);
+        if (parser instanceof Closeable) {
+            // the parser must not be closed while the background thread uses it
+            producer.whenComplete((result, t) -> closeParser());
+        }
+    }
+
+    private void closeParser() {
+        try {
+            ((Closeable) parser).close();
+        } catch (IOException e) {
+            log.debug("Cannot close the pipelined parser: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Moves the parser's rows into the buffer (background thread).
+     */
+    private void produce() {
+        try {
+            ResultRow row;
+            while (!closed && (row = parser.getTuple()) != null) {
+                if (!put(row)) {
+                    return;
+                }
+            }
+        } catch (Throwable t) {
+            failure = t;
+        } finally {
+            done = true;
+            signal(waitingConsumer);
+        }
+    }
+
+    /**
+     * Adds the given row to the buffer, waiting for space if necessary.
+     *
+     * @return false if the pipeline has been closed or the background thread has been interrupted
+     *         while waiting.
+     */
+    private boolean put(ResultRow row) {
+        int idleCount = 0;
+        while (!buffer.offer(row)) {
+            if (closed) {
+                return false;
+            }
+            if (Thread.currentThread().isInterrupted()) {
+                failure = new InterruptedIOException("The pipeline's background thread has been interrupted.");
+                return false;
+            }
+            idleCount = idle(idleCount, waitingProducer);
+        }
+        if (idleCount > MAX_SPINS) {
+            waitingProducer.compareAndSet(Thread.currentThread(), null);
+        }
+        signal(waitingConsumer);
+        return true;
+    }
+
+    private void rethrowFailure() {
+        Throwable t = failure;
+        if (t instanceof RuntimeException) {
+            throw (RuntimeException) t;
+        } else if (t instanceof Error) {
+            throw (Error) t;
+        } else if (t != null) {
+            throw new IllegalStateException("Parsing the SPARQL response failed.", t);
+        }
+    }
+
+    /**
+     * Waits for the other thread, first by spinning and then by parking the current thread until
+     * it is signalled. The current thread is announced as waiting before it is parked, so that the
+     * caller checks its condition once more before parking.
+     *
+     * @param idleCount the number of preceding calls
+     * @param waiting the announcement of the waiting thread
+     * @return the updated idle count
+     */
+    private int idle(int idleCount, AtomicReference<Thread> waiting) {
+        if (idleCount < MAX_SPINS) {
+            Thread.yield();
+        } else if (waiting.get() == null) {
+            waiting.set(Thread.currentThread());
+        } else {
+            LockSupport.parkNanos(this, MAX_PARK_NANOS);
+        }
+        return idleCount + 1;
+    }
+
+    /**
+     * Wakes up the thread waiting on the given announcement, if any.
+     */
+    private static void signal(AtomicReference<Thread> waiting) {
+        if (waiting.get() != null) {
+            Thread thread = waiting.getAndSet(null);
+            if (thread != null) {
+                LockSupport.unpark(thread);
+            }
+        }
+    }
+}
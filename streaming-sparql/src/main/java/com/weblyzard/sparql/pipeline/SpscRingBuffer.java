@@ -0,0 +1,85 @@
+package com.weblyzard.sparql.pipeline;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded, lock-free ring buffer for exactly one producer and one consumer thread.
+ *
+ * <p>
+ * The producer publishes elements by advancing the tail index with an ordered write, which makes
+ * the preceding write of the element visible to the consumer. Both sides cache the other side's
+ * index, so that the shared counters are only read if the buffer appears full or empty.
+ *
+ * @author Albert Weichselbraun
+ *
+ * @param <E> the type of the buffered elements
+ */
+final class SpscRingBuffer<E> {
+
+    private final Object[] buffer;
+    private final int mask;
+    // the index of the next element to consume
+    private final AtomicLong head = new AtomicLong();
+    // the index of the next element to produce
+    private final AtomicLong tail = new AtomicLong();
+    // producer's copy of head
+    private long headCache;
+    // consumer's copy of tail
+    private long tailCache;
+
+    /**
+     * Creates a ring buffer for the given number of elements.
+     *
+     * @param capacity the buffer's capacity (rounded up to the next power of two)
+     */
+    SpscRingBuffer(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("The buffer capacity must be positive.");
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        buffer = new Object[size];
+        mask = size - 1;
+    }
+
+    /**
+     * Adds an element to the buffer (producer thread only).
+     *
+     * @return false if the buffer is full.
+     */
+    boolean offer(E element) {
+        long currentTail = tail.get();
+        if (currentTail - headCache >= buffer.length) {
+            headCache = head.get();
+            if (currentTail - headCache >= buffer.length) {
+                return false;
+            }
+        }
+        buffer[(int) currentTail & mask] = element;
+        tail.lazySet(currentTail + 1);
+        return true;
+    }
+
+    /**
+     * Removes the next element from the buffer (consumer thread only).
+     *
+     * @return the element or <code>null</code> if the buffer is empty.
+     */
+    @SuppressWarnings("unchecked")
+    E poll() {
+        long currentHead = head.get();
+        if (currentHead >= tailCache) {
+            tailCache = tail.get();
+            if (currentHead >= tailCache) {
+                return null;
+            }
+        }
+        int slot = (int) currentHead & mask;
+        E element = (E) buffer[slot];
+        buffer[slot] = null;
+        head.lazySet(currentHead + 1);
+        return element;
+    }
+}
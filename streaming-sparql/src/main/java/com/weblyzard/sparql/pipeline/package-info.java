@@ -0,0 +1,8 @@
+/**
+ * Pipelined processing of SPARQL responses, i.e. decoding the server's response on a background
+ * thread while the caller consumes the results.
+ *
+ * @author Albert Weichselbraun
+ *
+ */
+package com.weblyzard.sparql.pipeline;
@@ -0,0 +1,20 @@
+package com.weblyzard.sparql.reactive;
+
+/**
+ * A producer of items which are sent to {@link Subscriber}s according to their demand.
+ *
+ * @author Albert Weichselbraun
+ *
+ * @param <T> the type of the published items
+ */
+@FunctionalInterface
+public interface Publisher<T> {
+
+    /**
+     * Adds the given {@link Subscriber}, which is notified through
+     * {@link Subscriber#onSubscribe(Subscription)}.
+     *
+     * @param subscriber the {@link Subscriber} to add
+     */
+    public void subscribe(Subscriber<? super T> subscriber);
+}
@@ -0,0 +1,215 @@
+package com.weblyzard.sparql.reactive;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import com.weblyzard.sparql.ResultRow;
+import com.weblyzard.sparql.ResultSchema;
+import com.weblyzard.sparql.StreamingResultSet;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Publishes the rows of a SPARQL query according to the subscriber's demand.
+ *
+ * <p>
+ * The query is sent once a {@link Subscriber} subscribes and the publisher supports only a single
+ * subscriber. Rows are read on the given {@link Executor} only while the subscriber has outstanding
+ * demand. Without demand no thread is occupied and the response is not read any further, so that
+ * TCP flow control throttles the server instead of buffering the response.
+ *
+ * <p>
+ * The tasks submitted to the executor perform blocking reads. Every task emits at most
+ * {@link #MAX_BATCH_SIZE} rows before it yields its thread to other queries.
+ *
+ * @author Albert Weichselbraun
+ *
+ */
+@Slf4j
+public class ResultPublisher implements Publisher<ResultRow> {
+
+    /** the maximum number of rows emitted by a single task. */
+    public static final int MAX_BATCH_SIZE = 256;
+
+    private final Callable<StreamingResultSet> query;
+    private final Executor executor;
+    private final CompletableFuture<ResultSchema> schema = new CompletableFuture<>();
+    private final AtomicBoolean subscribed = new AtomicBoolean();
+
+    /**
+     * Creates a publisher for the given query.
+     *
+     * @param query opens the {@link StreamingResultSet} to publish (called on the executor)
+     * @param executor the {@link Executor} used for sending the query and reading its rows
+     */
+    public ResultPublisher(Callable<StreamingResultSet> query, Executor executor) {
+        this.query = query;
+        this.executor = executor;
+    }
+
+    /**
+     * Returns a future of the result's {@link ResultSchema}, which completes once the server's
+     * response header has been received.
+     */
+    public CompletableFuture<ResultSchema> getSchema() {
+        return schema;
+    }
+
+    @Override
+    public void subscribe(Subscriber<? super ResultRow> subscriber) {
+        if (!subscribed.compareAndSet(false, true)) {
+            subscriber.onSubscribe(new Subscription() {
+                @Override
+                public void request(long n) {
+                }
+
+                @Override
+                public void cancel() {
+                }
+            });
+            subscriber.onError(new IllegalStateException("The publisher supports only a single subscriber."));
+            return;
+        }
+        RowSubscription subscription = new RowSubscription(subscriber);
+        subscriber.onSubscribe(subscription);
+        subscription.schedule();
+    }
+
+    /**
+     * Emits the rows of the result set. All signals are sent by the drain loop, which never runs
+     * concurrently.
+     */
+    private class RowSubscription implements Subscription, Runnable {
+        private final Subscriber<? super ResultRow> subscriber;
+        private final AtomicLong demand = new AtomicLong();
+        // number of pending drain requests
+        private final AtomicInteger pending = new AtomicInteger();
+        private volatile boolean cancelled;
+        private volatile Throwable invalidRequest;
+        // read by cancel(), which aborts pending reads
+        private volatile StreamingResultSet resultSet;
+        private boolean done;
+
+        RowSubscription(Subscriber<? super ResultRow> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                invalidRequest = new IllegalArgumentException("Subscribers must request a positive number of rows.");
+            } else {
+                demand.getAndAccumulate(n, (current, add) -> current + add < 0 ? Long.MAX_VALUE : current + add);
+            }
+            schedule();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            // abort a read which blocks the drain loop; it terminates once the read fails
+            StreamingResultSet current = resultSet;
+            if (current != null) {
+                current.cancel();
+            }
+            schedule();
+        }
+
+        /**
+         * Submits the drain loop to the executor, unless it is already running.
+         */
+        void schedule() {
+            if (pending.getAndIncrement() == 0) {
+                executor.execute(this);
+            }
+        }
+
+        @Override
+        public void run() {
+            int missed = 1;
+            do {
+                if (drain()) {
+                    // yield the thread; the drain loop remains active
+                    executor.execute(this);
+                    return;
+                }
+                missed = pending.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        /**
+         * Emits rows for the outstanding demand.
+         *
+         * @return true if the batch limit has been reached with demand remaining.
+         */
+        private boolean drain() {
+            if (done) {
+                return false;
+            }
+            if (cancelled) {
+                terminate();
+                return false;
+            }
+            if (invalidRequest != null) {
+                terminate();
+                subscriber.onError(invalidRequest);
+                return false;
+            }
+            try {
+                if (resultSet == null) {
+                    resultSet = query.call();
+                    schema.complete(resultSet.getSchema());
+                }
+                long requested = demand.get();
+                int emitted = 0;
+                while (true) {
+                    if (cancelled) {
+                        terminate();
+                        return false;
+                    }
+                    // completion does not require demand
+                    if (!resultSet.hasNext()) {
+                        terminate();
+                        subscriber.onComplete();
+                        return false;
+                    }
+                    if (emitted == requested || emitted == MAX_BATCH_SIZE) {
+                        break;
+                    }
+                    subscriber.onNext(resultSet.nextRow());
+                    emitted++;
+                }
+                if (requested != Long.MAX_VALUE) {
+                    requested = demand.addAndGet(-emitted);
+                }
+                return emitted == MAX_BATCH_SIZE && requested > 0;
+            } catch (Exception e) {
+                schema.completeExceptionally(e);
+                terminate();
+                // a cancelled subscription does not receive any further signals
+                if (!cancelled) {
+                    subscriber.onError(e);
+                }
+                return false;
+            }
+        }
+
+        /**
+         * Closes the result set. No further rows are emitted.
+         */
+        private void terminate() {
+            done = true;
+            schema.cancel(false);
+            if (resultSet != null) {
+                try {
+                    resultSet.close();
+                } catch (IOException e) {
+                    log.debug("Cannot close the result set: {}", e.getMessage());
+                }
+            }
+        }
+    }
+}
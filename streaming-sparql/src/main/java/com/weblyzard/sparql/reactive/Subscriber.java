@@ -0,0 +1,41 @@
+package com.weblyzard.sparql.reactive;
+
+/**
+ * Receives the items of a {@link Publisher}.
+ *
+ * <p>
+ * Items are only sent after they have been requested through {@link Subscription#request(long)}.
+ * Signals are never sent concurrently.
+ *
+ * @author Albert Weichselbraun
+ *
+ * @param <T> the type of the received items
+ */
+public interface Subscriber<T> {
+
+    /**
+     * Called before any other signal.
+     *
+     * @param subscription the {@link Subscription} used for requesting items and cancelling
+     */
+    public void onSubscribe(Subscription subscription);
+
+    /**
+     * Called for every requested item.
+     *
+     * @param item the next item
+     */
+    public void onNext(T item);
+
+    /**
+     * Called if the publisher fails. No further signals follow.
+     *
+     * @param throwable the cause of the failure
+     */
+    public void onError(Throwable throwable);
+
+    /**
+     * Called after the last item has been sent. No further signals follow.
+     */
+    public void onComplete();
+}
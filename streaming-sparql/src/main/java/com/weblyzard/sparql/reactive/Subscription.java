@@ -0,0 +1,26 @@
+package com.weblyzard.sparql.reactive;
+
+/**
+ * Links a {@link Publisher} with one of its {@link Subscriber}s.
+ *
+ * @author Albert Weichselbraun
+ *
+ */
+public interface Subscription {
+
+    /**
+     * Requests additional items. Demand accumulates, a demand of {@link Long#MAX_VALUE} is
+     * considered unbounded.
+     *
+     * @param n the number of additional items; values &lt;= 0 cause an
+     *        {@link IllegalArgumentException} to be signaled through
+     *        {@link Subscriber#onError(Throwable)}.
+     */
+    public void request(long n);
+
+    /**
+     * Stops sending items and releases the subscription's resources. Further signals may still
+     * arrive for a short time.
+     */
+    public void cancel();
+}
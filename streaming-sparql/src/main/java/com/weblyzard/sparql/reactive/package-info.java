@@ -0,0 +1,13 @@
+/**
+ * Asynchronous, demand-driven access to SPARQL results.
+ *
+ * <p>
+ * The {@link com.weblyzard.sparql.reactive.Publisher}, {@link com.weblyzard.sparql.reactive.Subscriber}
+ * and {@link com.weblyzard.sparql.reactive.Subscription} interfaces mirror the signatures of the
+ * Reactive Streams specification (and <code>java.util.concurrent.Flow</code>), so that they can be
+ * bridged to reactive libraries with trivial adapters.
+ *
+ * @author Albert Weichselbraun
+ *
+ */
+package com.weblyzard.sparql.reactive;
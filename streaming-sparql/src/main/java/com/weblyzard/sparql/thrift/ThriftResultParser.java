@@ -0,0 +1,173 @@
+package com.weblyzard.sparql.thrift;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Set;
+import org.apache.jena.datatypes.TypeMapper;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.riot.thrift.TRDF;
+import org.apache.jena.riot.thrift.ThriftConvert;
+import org.apache.jena.riot.thrift.wire.RDF_DataTuple;
+import org.apache.jena.riot.thrift.wire.RDF_Literal;
+import org.apache.jena.riot.thrift.wire.RDF_Term;
+import org.apache.jena.riot.thrift.wire.RDF_VAR;
+import org.apache.jena.riot.thrift.wire.RDF_VarTuple;
+import org.apache.thrift.TException;
+import org.apache.thrift.protocol.TProtocol;
+import org.apache.thrift.transport.TIOStreamTransport;
+import org.apache.thrift.transport.TTransportException;
+import com.weblyzard.sparql.ResultParser;
+import com.weblyzard.sparql.ResultRow;
+import com.weblyzard.sparql.ResultSchema;
+import com.weblyzard.sparql.ResultSetOptions;
+import com.weblyzard.sparql.tsv.TermCache;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Parses SPARQL results in Jena's binary RDF Thrift encoding incrementally.
+ *
+ * <p>
+ * The response starts with the result variables, followed by one tuple of terms per row. Terms are
+ * transmitted as typed fields, so that neither unescaping nor the parsing of term syntax is
+ * required. Rows are decoded as they arrive, and the parser's memory consumption, therefore, does
+ * not depend on the size of the response.
+ *
+ * <p>
+ * Variables excluded by the {@link ResultSetOptions#getProjection()} are skipped without creating
+ * {@link Node}s. A {@link TermCache}, if provided, is used for sharing language tags.
+ *
+ * @author Albert Weichselbraun
+ *
+ */
+@Slf4j
+public class ThriftResultParser implements ResultParser, Closeable {
+
+    private final TProtocol protocol;
+    @Getter
+    private final String[] resultVars;
+    @Getter
+    private final ResultSchema schema;
+    private final TermCache termCache;
+    private final boolean[] projected;
+    // reused for reading the rows
+    private final RDF_DataTuple dataTuple = new RDF_DataTuple();
+    // the previous row, which provides the values of repeated terms
+    private Node[] previousTuple;
+    private boolean hasMoreTuples = true;
+
+    /**
+     * Creates a parser for the given {@link InputStream}.
+     *
+     * @param in the {@link InputStream} to consume, which is read in chunks of
+     *        {@link ResultSetOptions#getReadAheadSize()} bytes.
+     * @param options the {@link ResultSetOptions} to use
+     * @throws IOException if the result variables cannot be read
+     */
+    public ThriftResultParser(InputStream in, ResultSetOptions options) throws IOException {
+        // the protocol reads single bytes from the transport
+        protocol = TRDF.protocol(new TIOStreamTransport(new BufferedInputStream(in, options.getReadAheadSize())));
+        termCache = options.getTermCache();
+        RDF_VarTuple varTuple = new RDF_VarTuple();
+        try {
+            varTuple.read(protocol);
+        } catch (TException e) {
+            throw new IOException("Cannot retrieve SPARQL result header.", e);
+        }
+        List<RDF_VAR> vars = varTuple.getVars();
+        resultVars = new String[vars == null ? 0 : vars.size()];
+        projected = new boolean[resultVars.length];
+        Set<String> projection = options.getProjection();
+        for (int i = 0; i < resultVars.length; i++) {
+            resultVars[i] = vars.get(i).getName();
+            projected[i] = projection == null || projection.contains(resultVars[i]);
+        }
+        schema = new ResultSchema(resultVars);
+        previousTuple = new Node[resultVars.length];
+    }
+
+    /**
+     * Parses the next row.
+     *
+     * @return the tuple or <code>null</code> if no further tuples are available.
+     */
+    @Override
+    public ResultRow getTuple() {
+        if (!hasMoreTuples) {
+            return null;
+        }
+        try {
+            dataTuple.clear();
+            dataTuple.read(protocol);
+        } catch (TTransportException e) {
+            if (e.getType() != TTransportException.END_OF_FILE) {
+                // mirror TsvParser which considers IO errors as end of the stream
+                log.warn("Cannot read Thrift response: {}", e.getMessage());
+            }
+            hasMoreTuples = false;
+            return null;
+        } catch (TException e) {
+            log.warn("Cannot read Thrift response: {}", e.getMessage());
+            hasMoreTuples = false;
+            return null;
+        }
+
+        List<RDF_Term> row = dataTuple.getRow();
+        if (row == null || row.size() != resultVars.length) {
+            log.warn("Ignoring the remaining response, since a row contains {} rather than {} terms.",
+                    row == null ? 0 : row.size(), resultVars.length);
+            hasMoreTuples = false;
+            return null;
+        }
+        Node[] tuple = new Node[resultVars.length];
+        for (int i = 0; i < tuple.length; i++) {
+            if (projected[i]) {
+                RDF_Term term = row.get(i);
+                tuple[i] = term.isSetRepeat() ? previousTuple[i] : convert(term);
+            }
+        }
+        previousTuple = tuple;
+        return new ResultRow(schema, tuple);
+    }
+
+    /**
+     * Translates the given term into a {@link Node}.
+     *
+     * @return the {@link Node} or <code>null</code> for unbound variables and unsupported terms.
+     */
+    private Node convert(RDF_Term term) {
+        if (term.isSetIri()) {
+            return NodeFactory.createURI(term.getIri().getIri());
+        } else if (term.isSetBnode()) {
+            return NodeFactory.createBlankNode(term.getBnode().getLabel());
+        } else if (term.isSetLiteral()) {
+            RDF_Literal literal = term.getLiteral();
+            if (literal.isSetLangtag() && !literal.getLangtag().isEmpty()) {
+                return NodeFactory.createLiteral(literal.getLex(),
+                        termCache == null ? literal.getLangtag() : termCache.internLanguage(literal.getLangtag()));
+            } else if (literal.isSetDatatype()) {
+                return NodeFactory.createLiteral(literal.getLex(),
+                        TypeMapper.getInstance().getSafeTypeByName(literal.getDatatype()));
+            } else if (!literal.isSetDtPrefix()) {
+                return NodeFactory.createLiteral(literal.getLex());
+            }
+        } else if (term.isSetUndefined()) {
+            return null;
+        } else if (term.isSetValInteger() || term.isSetValDouble() || term.isSetValDecimal()) {
+            return ThriftConvert.convert(term);
+        }
+        // prefixed names require prefix declarations, which are not part of SPARQL results
+        log.warn("Ignoring unsupported RDF term '{}'.", term);
+        return null;
+    }
+
+    @Override
+    public void close() {
+        // does not close the underlying input stream
+        hasMoreTuples = false;
+    }
+}
@@ -0,0 +1,8 @@
+/**
+ * Incremental parsing of SPARQL results in Jena's binary RDF Thrift encoding
+ * (<code>application/sparql-results+thrift</code>).
+ *
+ * @author Albert Weichselbraun
+ *
+ */
+package com.weblyzard.sparql.thrift;
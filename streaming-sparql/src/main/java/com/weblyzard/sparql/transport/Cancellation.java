@@ -0,0 +1,145 @@
+package com.weblyzard.sparql.transport;
+
+import java.time.Duration;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Aborts a {@link SparqlRequest} and the transfer of its response from any thread.
+ *
+ * <p>
+ * Transports register an action which aborts the request's connection immediately, i.e. without
+ * draining the remaining response. An optional deadline cancels the request once it expires,
+ * unless the request has been completed before.
+ *
+ * @author Albert Weichselbraun
+ */
+@Slf4j
+public class Cancellation {
+
+    private final long timeoutMillis;
+    private final ScheduledFuture<?> deadline;
+    private Runnable abortAction;
+    private boolean completed;
+    private volatile boolean cancelled;
+    private volatile boolean deadlineExceeded;
+
+    /**
+     * Creates a {@link Cancellation} without deadline.
+     */
+    public Cancellation() {
+        timeoutMillis = 0;
+        deadline = null;
+    }
+
+    /**
+     * Creates a {@link Cancellation} which cancels the request once the given timeout has elapsed.
+     *
+     * @param timeout the maximum time until the request has to be completed
+     */
+    public Cancellation(Duration timeout) {
+        timeoutMillis = timeout.toMillis();
+        deadline = SchedulerHolder.SCHEDULER.schedule(this::expire, timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void expire() {
+        if (cancel(true)) {
+            log.warn("Request exceeded its deadline of {} ms and has been cancelled.", timeoutMillis);
+        }
+    }
+
+    /**
+     * Registers the action which aborts the request. The action is performed immediately if the
+     * request has already been cancelled.
+     *
+     * @param action aborts the request's connection; must be thread-safe
+     */
+    public void onCancel(Runnable action) {
+        synchronized (this) {
+            if (!cancelled) {
+                abortAction = action;
+                return;
+            }
+        }
+        action.run();
+    }
+
+    /**
+     * Cancels the request and aborts its connection. Has no effect on completed requests.
+     */
+    public void cancel() {
+        cancel(false);
+    }
+
+    /**
+     * Cancels the request.
+     *
+     * @return <code>true</code> if the request has been cancelled by this call
+     */
+    private boolean cancel(boolean expired) {
+        Runnable action;
+        synchronized (this) {
+            if (completed || cancelled) {
+                return false;
+            }
+            deadlineExceeded = expired;
+            cancelled = true;
+            action = abortAction;
+            abortAction = null;
+        }
+        if (deadline != null && !expired) {
+            deadline.cancel(false);
+        }
+        if (action != null) {
+            action.run();
+        }
+        return true;
+    }
+
+    /**
+     * Marks the request as completed, which stops its deadline.
+     */
+    public void complete() {
+        synchronized (this) {
+            completed = true;
+            abortAction = null;
+        }
+        if (deadline != null) {
+            deadline.cancel(false);
+        }
+    }
+
+    /**
+     * Returns whether the request has been cancelled.
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Returns whether the request has been cancelled since its deadline expired.
+     */
+    public boolean isDeadlineExceeded() {
+        return deadlineExceeded;
+    }
+
+    /**
+     * Lazily creates the scheduler which enforces the deadlines.
+     */
+    private static class SchedulerHolder {
+        private static final ScheduledThreadPoolExecutor SCHEDULER = createScheduler();
+
+        private static ScheduledThreadPoolExecutor createScheduler() {
+            ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+                Thread thread = new Thread(runnable, "streaming-sparql-deadline");
+                thread.setDaemon(true);
+                return thread;
+            });
+            // completed requests do not retain their deadlines
+            scheduler.setRemoveOnCancelPolicy(true);
+            return scheduler;
+        }
+    }
+}
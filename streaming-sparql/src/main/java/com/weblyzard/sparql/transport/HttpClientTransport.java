@@ -0,0 +1,164 @@
+package com.weblyzard.sparql.transport;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHost;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import lombok.Builder;
+import lombok.Singular;
+
+/**
+ * A {@link Transport} based on Apache HttpClient, which keeps pools of persistent connections to
+ * the queried endpoints.
+ *
+ * <p>
+ * Example:
+ * <code>HttpClientTransport.builder().maxConnectionsPerEndpoint(16).connectTimeout(1000).build()</code>
+ *
+ * @author Albert Weichselbraun
+ */
+public class HttpClientTransport implements Transport {
+
+    /** the default maximum number of pooled connections. */
+    public static final int DEFAULT_MAX_CONNECTIONS = 64;
+    /**
+     * the default maximum number of pooled connections per endpoint, which corresponds to the
+     * <code>http.maxConnections</code> system property used by {@link UrlConnectionTransport}.
+     */
+    public static final int DEFAULT_MAX_CONNECTIONS_PER_ENDPOINT = Integer.getInteger("http.maxConnections", 5);
+    /**
+     * the default time in milliseconds a request waits for a pooled connection, if no connect
+     * timeout has been specified.
+     */
+    public static final int DEFAULT_CONNECTION_REQUEST_TIMEOUT = 10_000;
+
+    private final CloseableHttpClient client;
+
+    /**
+     * Creates a new transport.
+     *
+     * @param maxConnections the maximum number of pooled connections
+     * @param maxConnectionsPerEndpoint the maximum number of connections per endpoint
+     * @param endpointConnectionLimits overrides maxConnectionsPerEndpoint for the given endpoint
+     *        URLs
+     * @param connectTimeout the connect timeout in milliseconds (0 for no timeout)
+     * @param connectionRequestTimeout the maximum time in milliseconds a request waits for a
+     *        connection of an exhausted pool before it fails with an {@link IOException} (default:
+     *        the connect timeout or {@link #DEFAULT_CONNECTION_REQUEST_TIMEOUT}, if no connect
+     *        timeout has been specified; 0 for no timeout)
+     * @param readTimeout the maximum time in milliseconds between two data packets (0 for no
+     *        timeout)
+     * @param idleTimeout closes pooled connections which have been idle for the given number of
+     *        milliseconds (0 keeps idle connections)
+     */
+    @Builder
+    private HttpClientTransport(Integer maxConnections, Integer maxConnectionsPerEndpoint,
+            @Singular Map<String, Integer> endpointConnectionLimits, int connectTimeout,
+            Integer connectionRequestTimeout, int readTimeout, long idleTimeout) {
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(maxConnections == null ? DEFAULT_MAX_CONNECTIONS : maxConnections);
+        connectionManager.setDefaultMaxPerRoute(
+                maxConnectionsPerEndpoint == null ? DEFAULT_MAX_CONNECTIONS_PER_ENDPOINT : maxConnectionsPerEndpoint);
+        endpointConnectionLimits.forEach((url, limit) -> connectionManager.setMaxPerRoute(getRoute(url), limit));
+
+        HttpClientBuilder builder = HttpClients.custom().setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom().setConnectTimeout(connectTimeout)
+                        .setConnectionRequestTimeout(connectionRequestTimeout != null ? connectionRequestTimeout
+                                : connectTimeout > 0 ? connectTimeout : DEFAULT_CONNECTION_REQUEST_TIMEOUT)
+                        .setSocketTimeout(readTimeout).build())
+                // the content encoding is handled by the StreamingResultSet
+                .disableContentCompression();
+        if (idleTimeout > 0) {
+            builder.evictIdleConnections(idleTimeout, TimeUnit.MILLISECONDS);
+        }
+        client = builder.build();
+    }
+
+    @Override
+    public SparqlResponse execute(SparqlRequest request) throws IOException {
+        HttpRequestBase httpRequest;
+        if (request.isPostRequired()) {
+            HttpPost post = new HttpPost(request.getEndpointUrl());
+            post.setEntity(new StringEntity(request.getQuery(),
+                    ContentType.create(SparqlRequest.POST_CONTENT_TYPE, StandardCharsets.UTF_8)));
+            httpRequest = post;
+        } else {
+            httpRequest = new HttpGet(request.getRequestUrl());
+        }
+        request.getHeaders().forEach(httpRequest::setHeader);
+        if (request.getCancellation() != null) {
+            // aborting shuts down the connection, even while the response is being received
+            request.getCancellation().onCancel(httpRequest::abort);
+        }
+        return new HttpClientResponse(client.execute(httpRequest));
+    }
+
+    @Override
+    public void close() throws IOException {
+        client.close();
+    }
+
+    /**
+     * Returns the {@link HttpRoute} used for connections to the given endpoint.
+     */
+    private static HttpRoute getRoute(String endpointUrl) {
+        URI uri = URI.create(endpointUrl);
+        boolean secure = "https".equalsIgnoreCase(uri.getScheme());
+        int port = uri.getPort() > 0 ? uri.getPort() : secure ? 443 : 80;
+        return new HttpRoute(new HttpHost(uri.getHost(), port, uri.getScheme()), null, secure);
+    }
+
+    /**
+     * The {@link SparqlResponse} obtained from the HttpClient.
+     */
+    private static class HttpClientResponse implements SparqlResponse {
+        private final CloseableHttpResponse response;
+
+        HttpClientResponse(CloseableHttpResponse response) {
+            this.response = response;
+        }
+
+        @Override
+        public int getStatusCode() {
+            return response.getStatusLine().getStatusCode();
+        }
+
+        @Override
+        public String getHeader(String name) {
+            Header header = response.getFirstHeader(name);
+            return header == null ? null : header.getValue();
+        }
+
+        @Override
+        public InputStream getBody() throws IOException {
+            HttpEntity entity = response.getEntity();
+            if (entity == null) {
+                throw new IOException("Server returned an empty response.");
+            }
+            return entity.getContent();
+        }
+
+        @Override
+        public void close() throws IOException {
+            // releases completely consumed connections and disconnects otherwise
+            response.close();
+        }
+    }
+}
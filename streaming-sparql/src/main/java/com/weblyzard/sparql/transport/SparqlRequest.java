@@ -0,0 +1,61 @@
+package com.weblyzard.sparql.transport;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Map;
+import org.apache.http.client.utils.URLEncodedUtils;
+import org.apache.http.message.BasicNameValuePair;
+import lombok.Builder;
+import lombok.Singular;
+import lombok.Value;
+
+/**
+ * A SPARQL query sent to a repository.
+ *
+ * @author Albert Weichselbraun
+ */
+@Value
+@Builder
+public class SparqlRequest {
+
+    /** the content type used for POST queries. */
+    public static final String POST_CONTENT_TYPE = "application/sparql-query";
+
+    // queries exceeding this length are sent as POST requests
+    private static final int MAX_GET_QUERY_LEN = 2 * 1024 - 1;
+
+    /** the URL of the SPARQL endpoint. */
+    private final String endpointUrl;
+
+    /** the SPARQL query. */
+    private final String query;
+
+    /** the HTTP headers sent with the request. */
+    @Singular
+    private final Map<String, String> headers;
+
+    /** an optional {@link Cancellation} which aborts the request and the transfer of its response. */
+    private final Cancellation cancellation;
+
+    /**
+     * Returns the URL encoded query parameter (e.g. <code>query=SELECT...</code>).
+     */
+    public String getEncodedQuery() {
+        return URLEncodedUtils.format(Collections.singletonList(new BasicNameValuePair("query", query)),
+                StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns whether the query is too long for a GET request and, therefore, needs to be posted.
+     */
+    public boolean isPostRequired() {
+        return endpointUrl.length() + getEncodedQuery().length() >= MAX_GET_QUERY_LEN;
+    }
+
+    /**
+     * Returns the URL used for GET requests.
+     */
+    public String getRequestUrl() {
+        return endpointUrl + "?" + getEncodedQuery();
+    }
+}
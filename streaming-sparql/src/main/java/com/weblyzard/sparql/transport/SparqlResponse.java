@@ -0,0 +1,62 @@
+package com.weblyzard.sparql.transport;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * The server's response to a {@link SparqlRequest}.
+ *
+ * <p>
+ * Closing the response releases the underlying connection. Connections of completely consumed
+ * responses are reused, while closing a partially consumed response disconnects from the server.
+ *
+ * @author Albert Weichselbraun
+ */
+public interface SparqlResponse extends Closeable {
+
+    /**
+     * Returns the HTTP status code.
+     */
+    public int getStatusCode();
+
+    /**
+     * Returns the value of the given response header or <code>null</code> if the header is not
+     * present.
+     */
+    public String getHeader(String name);
+
+    /**
+     * Returns the response's content type.
+     */
+    public default String getContentType() {
+        return getHeader("Content-Type");
+    }
+
+    /**
+     * Returns the response's content encoding (e.g. <code>gzip</code>).
+     */
+    public default String getContentEncoding() {
+        return getHeader("Content-Encoding");
+    }
+
+    /**
+     * Returns the length of the response's body or -1 if unknown.
+     */
+    public default long getContentLength() {
+        String contentLength = getHeader("Content-Length");
+        try {
+            return contentLength == null ? -1 : Long.parseLong(contentLength.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Returns the response's body as sent by the server (i.e. without decoding the content
+     * encoding).
+     *
+     * @throws IOException if the body cannot be retrieved
+     */
+    public InputStream getBody() throws IOException;
+}
@@ -0,0 +1,25 @@
+package com.weblyzard.sparql.transport;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Sends {@link SparqlRequest}s to SPARQL repositories.
+ *
+ * <p>
+ * Transports are thread-safe and should be reused across queries, so that they can keep
+ * connections to the repository alive.
+ *
+ * @author Albert Weichselbraun
+ */
+public interface Transport extends Closeable {
+
+    /**
+     * Sends the given request to the repository.
+     *
+     * @param request the {@link SparqlRequest} to send
+     * @return the server's response
+     * @throws IOException in case of IO errors
+     */
+    public SparqlResponse execute(SparqlRequest request) throws IOException;
+}
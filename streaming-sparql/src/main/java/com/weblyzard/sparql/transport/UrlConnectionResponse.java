@@ -0,0 +1,69 @@
+package com.weblyzard.sparql.transport;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+
+/**
+ * A {@link SparqlResponse} obtained from a {@link HttpURLConnection}.
+ *
+ * @author Albert Weichselbraun
+ */
+public class UrlConnectionResponse implements SparqlResponse {
+
+    private final HttpURLConnection conn;
+    private InputStream body;
+
+    /**
+     * Creates a response for the given connection.
+     *
+     * @param conn the {@link HttpURLConnection} to the SPARQL repository.
+     */
+    public UrlConnectionResponse(HttpURLConnection conn) {
+        this.conn = conn;
+    }
+
+    @Override
+    public int getStatusCode() {
+        try {
+            return conn.getResponseCode();
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    @Override
+    public String getHeader(String name) {
+        return conn.getHeaderField(name);
+    }
+
+    @Override
+    public String getContentType() {
+        return conn.getContentType();
+    }
+
+    @Override
+    public String getContentEncoding() {
+        return conn.getContentEncoding();
+    }
+
+    @Override
+    public long getContentLength() {
+        return conn.getContentLengthLong();
+    }
+
+    @Override
+    public InputStream getBody() throws IOException {
+        if (body == null) {
+            body = conn.getInputStream();
+        }
+        return body;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (body != null) {
+            body.close();
+        }
+    }
+}
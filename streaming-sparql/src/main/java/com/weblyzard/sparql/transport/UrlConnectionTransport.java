@@ -0,0 +1,84 @@
+package com.weblyzard.sparql.transport;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A {@link Transport} based on Java's {@link HttpURLConnection}.
+ *
+ * <p>
+ * Connection reuse is controlled by the JVM wide <code>http.keepAlive</code> and
+ * <code>http.maxConnections</code> system properties. Use the {@link HttpClientTransport} for
+ * per-endpoint connection pools.
+ *
+ * @author Albert Weichselbraun
+ */
+public class UrlConnectionTransport implements Transport {
+
+    private final int connectTimeout;
+    private final int readTimeout;
+
+    public UrlConnectionTransport() {
+        this(0, 0);
+    }
+
+    /**
+     * Creates a transport with the given timeouts.
+     *
+     * @param connectTimeout the connect timeout in milliseconds (0 for no timeout)
+     * @param readTimeout the read timeout in milliseconds (0 for no timeout)
+     */
+    public UrlConnectionTransport(int connectTimeout, int readTimeout) {
+        this.connectTimeout = connectTimeout;
+        this.readTimeout = readTimeout;
+    }
+
+    @Override
+    public SparqlResponse execute(SparqlRequest request) throws IOException {
+        HttpURLConnection conn;
+        if (request.isPostRequired()) {
+            conn = (HttpURLConnection) new URL(request.getEndpointUrl()).openConnection();
+            setCommonProperties(conn, request);
+            conn.setRequestProperty("Content-Type", SparqlRequest.POST_CONTENT_TYPE);
+            conn.setRequestMethod("POST");
+            conn.setDoOutput(true);
+            conn.setDoInput(true);
+            // send form
+            try (OutputStream out = conn.getOutputStream()) {
+                out.write(request.getQuery().getBytes(StandardCharsets.UTF_8));
+            }
+        } else {
+            conn = (HttpURLConnection) new URL(request.getRequestUrl()).openConnection();
+            setCommonProperties(conn, request);
+        }
+        if (request.getCancellation() != null) {
+            // disconnecting waits for pending reads of the response body, so that cancellation only aborts
+            // the request until the response has been received; reading stops after the read timeout
+            conn.getResponseCode();
+            request.getCancellation().onCancel(() -> { });
+        }
+        return new UrlConnectionResponse(conn);
+    }
+
+    private void setCommonProperties(HttpURLConnection conn, SparqlRequest request) throws IOException {
+        conn.setConnectTimeout(connectTimeout);
+        conn.setReadTimeout(readTimeout);
+        request.getHeaders().forEach(conn::setRequestProperty);
+        Cancellation cancellation = request.getCancellation();
+        if (cancellation != null) {
+            cancellation.onCancel(conn::disconnect);
+            if (cancellation.isCancelled()) {
+                throw new InterruptedIOException("Request has been cancelled.");
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        // connections are managed by the JVM
+    }
+}
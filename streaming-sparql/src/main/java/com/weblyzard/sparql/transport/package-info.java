@@ -0,0 +1,8 @@
+/**
+ * Pluggable transports which send SPARQL queries to the repository and provide access to the
+ * server's response.
+ *
+ * @author Albert Weichselbraun
+ *
+ */
+package com.weblyzard.sparql.transport;
@@ -0,0 +1,343 @@
+package com.weblyzard.sparql.tsv;
+
+import java.io.IOException;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import org.apache.jena.graph.Node;
+import com.weblyzard.sparql.ResultParser;
+import com.weblyzard.sparql.ResultRow;
+import com.weblyzard.sparql.ResultSchema;
+import com.weblyzard.sparql.ResultSetOptions;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Base class of parsers which scan TSV files within a reusable read-ahead buffer rather than
+ * individual lines.
+ *
+ * <p>
+ * Tab, quote and newline boundaries are located directly within the buffer and quotes are
+ * translated in place, so that every field is copied only once, i.e. when it is decoded. The
+ * buffer grows if a single field exceeds its size. Since all TSV delimiters are ASCII characters,
+ * the scanner works on characters as well as on UTF-8 encoded bytes; subclasses provide the buffer
+ * and decode the fields.
+ *
+ * <ol>
+ * <li>Double quotes: <code>""</code> are translated to <code>\"</code>.</li>
+ * <li>Backslash escapes (e.g. <code>\"</code>) are preserved.</li>
+ * <li>Newlines within literals are replaced with space.</li>
+ * </ol>
+ *
+ * @author Albert Weichselbraun
+ *
+ */
+@Slf4j
+abstract class BufferedTsvParser implements ResultParser {
+
+    @Getter
+    private String[] tsvHeader;
+    @Getter
+    private ResultSchema schema;
+    private final TermCache termCache;
+    private final boolean lazyNodes;
+    private final Set<String> projection;
+    // columns excluded by the projection or null, if all columns are required
+    private boolean[] skippedColumns;
+    // the current position and the end of the buffer's content
+    private int pos;
+    private int limit;
+    private boolean eof;
+    // length of the field scanned by the last scan operation (after unescaping)
+    private int fieldLength;
+
+    BufferedTsvParser(ResultSetOptions options) {
+        termCache = options.getTermCache();
+        lazyNodes = options.isLazyNodes();
+        projection = options.getProjection();
+    }
+
+    /**
+     * Reads the TSV header from the buffer.
+     *
+     * @throws IOException if the TSV header cannot be read
+     */
+    protected void readHeader() throws IOException {
+        if (!available()) {
+            throw new IOException("Cannot retrieve SPARQL result header.");
+        }
+        int length = 0;
+        while (available(length + 1) && get(pos + length) != '\n' && get(pos + length) != '\r') {
+            length++;
+        }
+        String headerLine = decode(pos, length);
+        pos += length;
+        skipLineEnd();
+        String[] header = TsvParser.parseTsvHeader(headerLine);
+        setHeader(header, new ResultSchema(header));
+    }
+
+    /**
+     * Sets the header of a buffer which only contains complete rows.
+     *
+     * @param tsvHeader the variables of the TSV response
+     * @param schema the schema of the TSV response
+     * @param length the length of the buffer's content
+     */
+    protected void setRows(String[] tsvHeader, ResultSchema schema, int length) {
+        limit = length;
+        eof = true;
+        setHeader(tsvHeader, schema);
+    }
+
+    private void setHeader(String[] tsvHeader, ResultSchema schema) {
+        this.tsvHeader = tsvHeader;
+        this.schema = schema;
+        skippedColumns = TsvParser.getSkippedColumns(tsvHeader, projection);
+    }
+
+    /**
+     * @return the character (or byte) at the given index of the buffer.
+     */
+    protected abstract int get(int index);
+
+    /**
+     * Sets the character (or byte) at the given index of the buffer.
+     */
+    protected abstract void set(int index, int value);
+
+    /**
+     * @return the {@link String} encoded at the given range of the buffer.
+     */
+    protected abstract String decode(int offset, int length);
+
+    /**
+     * @return the size of the buffer.
+     */
+    protected abstract int capacity();
+
+    /**
+     * Moves the given range to the start of the buffer.
+     */
+    protected abstract void compact(int offset, int length);
+
+    /**
+     * Replaces the buffer with a larger one that retains its content.
+     */
+    protected abstract void grow(int capacity);
+
+    /**
+     * Reads from the input into the given range of the buffer.
+     *
+     * @return the number of elements read or -1 if the end of the input has been reached.
+     */
+    protected abstract int read(int offset, int length) throws IOException;
+
+    @Override
+    public String[] getResultVars() {
+        return tsvHeader;
+    }
+
+    /**
+     * Parses the next tuple.
+     *
+     * @return the tuple or <code>null</code> if no further tuples are available.
+     */
+    @Override
+    public ResultRow getTuple() {
+        try {
+            if (!available()) {
+                return null;
+            }
+            Node[] tuple = lazyNodes ? null : new Node[tsvHeader.length];
+            String[] cells = lazyNodes ? new String[tsvHeader.length] : null;
+            int column = 0;
+            while (available()) {
+                int ch = get(pos);
+                if (ch == '\n' || ch == '\r') {
+                    skipLineEnd();
+                    break;
+                } else if (ch == '\t') {
+                    // empty value
+                    pos++;
+                    column++;
+                    continue;
+                } else if (column >= tsvHeader.length) {
+                    log.warn("Server returned more tuples than expected ({}). Ignoring superfluous tuples.",
+                            tsvHeader.length);
+                    skipRow();
+                    break;
+                } else if (skippedColumns != null && skippedColumns[column]) {
+                    // scanning might compact the buffer and, therefore, change pos
+                    int consumed = ch == '"' ? scanLiteral() : scanToDelimiter(0, 0, false);
+                    pos += consumed;
+                    column++;
+                    if (available() && get(pos) == '\t') {
+                        pos++;
+                    }
+                    continue;
+                }
+
+                int consumed = ch == '"' ? scanLiteral() : scanToDelimiter(0, 0, false);
+                String value = decode(pos, fieldLength);
+                pos += consumed;
+                if (lazyNodes) {
+                    cells[column++] = value;
+                } else {
+                    tuple[column++] = TsvParser.parseNode(value, termCache).orElse(null);
+                }
+                if (available() && get(pos) == '\t') {
+                    pos++;
+                }
+            }
+            return lazyNodes ? new LazyResultRow(schema, cells, termCache) : new ResultRow(schema, tuple);
+        } catch (IOException e) {
+            // mirror TsvParser which considers IO errors as end of the stream
+            log.warn("Cannot read TSV response: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Scans a literal starting at the current position.
+     *
+     * <p>
+     * Quotes and newlines are translated in place; the field is not consumed.
+     *
+     * @return the number of elements the literal occupies in the buffer.
+     * @throws NoSuchElementException if the literal is not terminated.
+     */
+    private int scanLiteral() throws IOException {
+        // skip the opening quote
+        int read = 1;
+        int write = 1;
+        while (true) {
+            if (!available(read + 1)) {
+                throw new NoSuchElementException();
+            }
+            int ch = get(pos + read);
+            if (ch == '"') {
+                if (available(read + 2) && get(pos + read + 1) == '"') {
+                    set(pos + write++, '\\');
+                    set(pos + write++, '"');
+                    read += 2;
+                    continue;
+                }
+                set(pos + write++, ch);
+                read++;
+                break;
+            } else if (ch == '\\') {
+                if (!available(read + 2)) {
+                    throw new NoSuchElementException();
+                }
+                set(pos + write++, ch);
+                set(pos + write++, get(pos + read + 1));
+                read += 2;
+            } else if (ch == '\n' || ch == '\r') {
+                // replace CRLF and LF with a single space
+                if (ch == '\r' && available(read + 2) && get(pos + read + 1) == '\n') {
+                    read++;
+                }
+                set(pos + write++, ' ');
+                read++;
+            } else {
+                set(pos + write++, ch);
+                read++;
+            }
+        }
+        // language tag or data type
+        return scanToDelimiter(read, write, true);
+    }
+
+    /**
+     * Scans up to the next tab or newline.
+     *
+     * @param read the offset from which to start scanning
+     * @param write the offset to which the scanned elements are written
+     * @param shift whether the elements need to be moved from read to write
+     * @return the number of elements consumed
+     */
+    private int scanToDelimiter(int read, int write, boolean shift) throws IOException {
+        while (available(read + 1)) {
+            int ch = get(pos + read);
+            if (ch == '\t' || ch == '\n' || ch == '\r') {
+                break;
+            }
+            if (shift) {
+                set(pos + write, ch);
+            }
+            read++;
+            write++;
+        }
+        fieldLength = write;
+        return read;
+    }
+
+    /**
+     * Skips the remainder of the current row.
+     */
+    private void skipRow() throws IOException {
+        while (available()) {
+            int ch = get(pos);
+            if (ch == '\n' || ch == '\r') {
+                skipLineEnd();
+                return;
+            }
+            // scanning might compact the buffer and, therefore, change pos
+            int consumed = ch == '"' ? scanLiteral() : Math.max(1, scanToDelimiter(0, 0, false));
+            pos += consumed;
+        }
+    }
+
+    /**
+     * Consumes a LF, CR or CRLF line ending.
+     */
+    private void skipLineEnd() throws IOException {
+        if (available() && get(pos) == '\r') {
+            pos++;
+        }
+        if (available() && get(pos) == '\n') {
+            pos++;
+        }
+    }
+
+    private boolean available() throws IOException {
+        return available(1);
+    }
+
+    /**
+     * Ensures that at least the given number of elements is available in the buffer, starting at
+     * the current position.
+     *
+     * @return false if the end of the stream has been reached before.
+     */
+    private boolean available(int count) throws IOException {
+        while (limit - pos < count) {
+            if (eof) {
+                return false;
+            }
+            fill();
+        }
+        return true;
+    }
+
+    /**
+     * Reads the next chunk of the input into the buffer. Unconsumed elements are moved to the start
+     * of the buffer, which is enlarged if they occupy more than half of it.
+     */
+    private void fill() throws IOException {
+        if (pos > 0) {
+            compact(pos, limit - pos);
+            limit -= pos;
+            pos = 0;
+        }
+        if (limit > capacity() / 2) {
+            grow(capacity() * 2);
+        }
+        int read = read(limit, capacity() - limit);
+        if (read == -1) {
+            eof = true;
+        } else {
+            limit += read;
+        }
+    }
+}
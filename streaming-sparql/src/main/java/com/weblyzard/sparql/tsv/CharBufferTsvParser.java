@@ -0,0 +1,108 @@
+package com.weblyzard.sparql.tsv;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+import com.weblyzard.sparql.ResultSchema;
+import com.weblyzard.sparql.ResultSetOptions;
+
+/**
+ * Parses TSV files by scanning a reusable read-ahead buffer of characters rather than individual
+ * lines (see {@link BufferedTsvParser}). Every field is copied only once, i.e. when it is
+ * materialized as {@link String}.
+ *
+ * @author Albert Weichselbraun
+ *
+ */
+public class CharBufferTsvParser extends BufferedTsvParser {
+
+    /** the default size of the read-ahead buffer in characters. */
+    public static final int DEFAULT_READ_AHEAD_SIZE = 64 * 1024;
+
+    private final Reader in;
+    private char[] buf;
+
+    public CharBufferTsvParser(Reader in) throws IOException {
+        this(in, DEFAULT_READ_AHEAD_SIZE);
+    }
+
+    /**
+     * Creates a parser that reads the given {@link Reader} in chunks of readAheadSize characters.
+     *
+     * @param in the {@link Reader} to consume
+     * @param readAheadSize the initial size of the read-ahead buffer
+     * @throws IOException if the TSV header cannot be read
+     */
+    public CharBufferTsvParser(Reader in, int readAheadSize) throws IOException {
+        this(in, ResultSetOptions.builder().readAheadSize(readAheadSize).build());
+    }
+
+    /**
+     * Creates a parser for the given {@link Reader}.
+     *
+     * @param in the {@link Reader} to consume
+     * @param options the {@link ResultSetOptions} to use
+     * @throws IOException if the TSV header cannot be read
+     */
+    public CharBufferTsvParser(Reader in, ResultSetOptions options) throws IOException {
+        super(options);
+        int readAheadSize = options.getReadAheadSize();
+        if (readAheadSize < 2) {
+            throw new IllegalArgumentException("Read-ahead size must be at least 2 characters.");
+        }
+        this.in = in;
+        buf = new char[readAheadSize];
+        readHeader();
+    }
+
+    /**
+     * Creates a parser for a chunk of complete rows (without header) of a larger TSV response. The
+     * chunk is used as buffer and, therefore, modified while parsing.
+     *
+     * @param rows the rows to parse
+     * @param tsvHeader the variables of the TSV response
+     * @param schema the schema of the TSV response
+     * @param options the {@link ResultSetOptions} to use
+     */
+    CharBufferTsvParser(char[] rows, String[] tsvHeader, ResultSchema schema, ResultSetOptions options) {
+        super(options);
+        in = null;
+        buf = rows;
+        setRows(tsvHeader, schema, rows.length);
+    }
+
+    @Override
+    protected int get(int index) {
+        return buf[index];
+    }
+
+    @Override
+    protected void set(int index, int value) {
+        buf[index] = (char) value;
+    }
+
+    @Override
+    protected String decode(int offset, int length) {
+        return new String(buf, offset, length);
+    }
+
+    @Override
+    protected int capacity() {
+        return buf.length;
+    }
+
+    @Override
+    protected void compact(int offset, int length) {
+        System.arraycopy(buf, offset, buf, 0, length);
+    }
+
+    @Override
+    protected void grow(int capacity) {
+        buf = Arrays.copyOf(buf, capacity);
+    }
+
+    @Override
+    protected int read(int offset, int length) throws IOException {
+        return in.read(buf, offset, length);
+    }
+}
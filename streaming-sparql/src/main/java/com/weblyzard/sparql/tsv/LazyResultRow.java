@@ -0,0 +1,61 @@
+package com.weblyzard.sparql.tsv;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import com.weblyzard.sparql.ResultRow;
+import com.weblyzard.sparql.ResultSchema;
+
+/**
+ * A {@link ResultRow} that keeps the raw TSV representation of its cells and only translates them
+ * into {@link Node}s on first access.
+ *
+ * <p>
+ * Parsed nodes are memoized, as are cells which cannot be parsed, so that they are reported only
+ * once. Concurrent readers might parse the same cell twice, which is harmless since the resulting
+ * nodes are equal.
+ *
+ * @author Albert Weichselbraun
+ *
+ */
+final class LazyResultRow extends ResultRow {
+
+    // marks cells which cannot be parsed (compared by identity)
+    private static final Node UNPARSEABLE = NodeFactory.createBlankNode("unparseable");
+
+    private final String[] cells;
+    private final Node[] nodes;
+    private final TermCache termCache;
+
+    /**
+     * Creates a row for the given raw cells.
+     *
+     * @param schema the schema of the result
+     * @param cells the TSV representation of the cells; unbound columns are <code>null</code>.
+     * @param termCache an optional {@link TermCache} used for parsing the cells
+     */
+    LazyResultRow(ResultSchema schema, String[] cells, TermCache termCache) {
+        this(schema, cells, termCache, new Node[cells.length]);
+    }
+
+    private LazyResultRow(ResultSchema schema, String[] cells, TermCache termCache, Node[] nodes) {
+        super(schema, nodes);
+        this.cells = cells;
+        this.nodes = nodes;
+        this.termCache = termCache;
+    }
+
+    @Override
+    public ResultRow copyOriginal() {
+        return new LazyResultRow(getSchema(), cells, termCache, nodes);
+    }
+
+    @Override
+    protected Node getValue(int idx) {
+        Node node = nodes[idx];
+        if (node == null && cells[idx] != null) {
+            node = TsvParser.parseNode(cells[idx], termCache).orElse(UNPARSEABLE);
+            nodes[idx] = node;
+        }
+        return node == UNPARSEABLE ? null : node;
+    }
+}
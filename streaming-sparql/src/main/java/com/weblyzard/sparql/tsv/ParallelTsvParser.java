@@ -0,0 +1,404 @@
+package com.weblyzard.sparql.tsv;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import com.weblyzard.sparql.ResultParser;
+import com.weblyzard.sparql.ResultRow;
+import com.weblyzard.sparql.ResultSchema;
+import com.weblyzard.sparql.ResultSetOptions;
+import com.weblyzard.sparql.StreamingQueryExecutor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Parses large TSV responses on multiple threads.
+ *
+ * <p>
+ * A background thread splits the response into chunks of complete rows. Chunk boundaries are only
+ * placed at line breaks outside of quoted literals, so that multi-line literals are never split.
+ * The chunks are parsed by {@link CharBufferTsvParser}s on up to
+ * {@link ResultSetOptions#getParallelism()} threads of the {@link ResultSetOptions#getExecutor()}.
+ * Rows are returned in their original order, unless
+ * {@link ResultSetOptions#isParallelUnordered()} is set, which returns the chunks in the order
+ * they have been parsed.
+ *
+ * <p>
+ * At most twice {@link ResultSetOptions#getParallelism()} chunks are processed or waiting for the
+ * consumer at any time. The response is not read before the rows or the header are accessed for
+ * the first time.
+ *
+ * @author Albert Weichselbraun
+ *
+ */
+@Slf4j
+public class ParallelTsvParser implements ResultParser, Closeable {
+
+    /** the default size of a chunk in characters. */
+    public static final int DEFAULT_CHUNK_SIZE = 256 * 1024;
+
+    private final ResultSetOptions options;
+    private final Reader in;
+    private final Executor executor;
+    // limits the number of chunks which are parsed or waiting for the consumer
+    private final Semaphore permits;
+    // limits the number of chunks which are parsed concurrently
+    private final Semaphore parsers;
+    // parsed chunks (CompletableFuture) followed by the total number of chunks (Integer)
+    private final BlockingQueue<Object> chunks = new LinkedBlockingQueue<>();
+    // the splitter, once the header has been read
+    CompletableFuture<Void> splitter;
+    private volatile boolean closed;
+    // the executor's thread which runs the splitter, while it is running
+    private Thread splitterThread;
+
+    private String[] tsvHeader;
+    private ResultSchema schema;
+
+    // splitter state
+    private char[] buf;
+    private int limit;
+    private boolean eof;
+
+    // consumer state
+    private Iterator<ResultRow> currentRows = Collections.emptyIterator();
+    private int consumedChunks;
+    private int totalChunks = -1;
+
+    public ParallelTsvParser(Reader in, ResultSetOptions options) {
+        this(in, options, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Creates a parser that splits the given {@link Reader}'s content into chunks of approximately
+     * chunkSize characters.
+     *
+     * @param in the {@link Reader} to consume
+     * @param options the {@link ResultSetOptions} to use
+     * @param chunkSize the minimum size of a chunk
+     */
+    public ParallelTsvParser(Reader in, ResultSetOptions options, int chunkSize) {
+        if (chunkSize < 2) {
+            throw new IllegalArgumentException("Chunk size must be at least 2 characters.");
+        }
+        this.in = in;
+        this.options = options;
+        executor = options.getExecutor() == null ? StreamingQueryExecutor.getDefaultExecutor() : options.getExecutor();
+        permits = new Semaphore(2 * Math.max(1, options.getParallelism()));
+        parsers = new Semaphore(Math.max(1, options.getParallelism()));
+        buf = new char[chunkSize];
+    }
+
+    /**
+     * Reads the header and starts splitting the response on the first access.
+     *
+     * @throws UncheckedIOException if the TSV header cannot be read
+     */
+    private void start() {
+        if (splitter != null) {
+            return;
+        }
+        try {
+            tsvHeader = TsvParser.parseTsvHeader(readHeader());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        schema = new ResultSchema(tsvHeader);
+        splitter = CompletableFuture.runAsync(this::split, executor);
+    }
+
+    /**
+     * Returns the variables of the TSV header.
+     *
+     * @throws UncheckedIOException if the TSV header cannot be read
+     */
+    public String[] getTsvHeader() {
+        start();
+        return tsvHeader;
+    }
+
+    @Override
+    public String[] getResultVars() {
+        return getTsvHeader();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws UncheckedIOException if the TSV header cannot be read
+     */
+    @Override
+    public ResultSchema getSchema() {
+        start();
+        return schema;
+    }
+
+    /**
+     * Parses the next tuple.
+     *
+     * @return the tuple or <code>null</code> if no further tuples are available.
+     * @throws UncheckedIOException if the TSV header cannot be read
+     * @throws IllegalStateException if the current thread is interrupted while waiting for rows
+     */
+    @Override
+    public ResultRow getTuple() {
+        start();
+        while (!currentRows.hasNext()) {
+            if (consumedChunks == totalChunks) {
+                return null;
+            }
+            Object next;
+            try {
+                next = chunks.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                close();
+                throw new IllegalStateException("Interrupted while waiting for parsed rows.", e);
+            }
+            if (next instanceof Integer) {
+                totalChunks = (Integer) next;
+                continue;
+            }
+            consumedChunks++;
+            permits.release();
+            currentRows = join(next).iterator();
+        }
+        return currentRows.next();
+    }
+
+    /**
+     * Stops splitting the response.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+            if (splitterThread != null) {
+                splitterThread.interrupt();
+            }
+        }
+    }
+
+    /**
+     * Splits the response into chunks and schedules them for parsing (background thread). The
+     * total number of chunks is always added to the queue, so that the consumer does not wait for
+     * further chunks.
+     */
+    private void split() {
+        synchronized (this) {
+            splitterThread = Thread.currentThread();
+        }
+        int chunkCount = 0;
+        try {
+            char[] chunk;
+            while (!closed && (chunk = nextChunk()) != null) {
+                permits.acquire();
+                parsers.acquire();
+                final char[] rows = chunk;
+                CompletableFuture<List<ResultRow>> result =
+                        CompletableFuture.supplyAsync(() -> parseChunk(rows), executor);
+                result.whenComplete((r, e) -> parsers.release());
+                if (options.isParallelUnordered()) {
+                    result.whenComplete((r, e) -> chunks.add(result));
+                } else {
+                    chunks.add(result);
+                }
+                chunkCount++;
+            }
+        } catch (IOException e) {
+            // mirror TsvParser which considers IO errors as end of the stream
+            log.warn("Cannot read TSV response: {}", e.getMessage());
+        } catch (InterruptedException e) {
+            // the parser has been closed
+            log.debug("Stopped splitting the TSV response after {} chunks.", chunkCount);
+        } catch (RuntimeException e) {
+            // forward the exception to the consumer
+            CompletableFuture<List<ResultRow>> failure = new CompletableFuture<>();
+            failure.completeExceptionally(e);
+            chunks.add(failure);
+            chunkCount++;
+        } finally {
+            synchronized (this) {
+                splitterThread = null;
+                // the thread is returned to the executor
+                Thread.interrupted();
+            }
+            chunks.add(chunkCount);
+        }
+    }
+
+    private List<ResultRow> parseChunk(char[] rows) {
+        CharBufferTsvParser parser = new CharBufferTsvParser(rows, tsvHeader, schema, options);
+        List<ResultRow> result = new ArrayList<>();
+        ResultRow row;
+        while ((row = parser.getTuple()) != null) {
+            result.add(row);
+        }
+        return result;
+    }
+
+    /**
+     * Waits for the given chunk and rethrows exceptions raised during parsing.
+     */
+    @SuppressWarnings("unchecked")
+    private static List<ResultRow> join(Object chunk) {
+        try {
+            return ((CompletableFuture<List<ResultRow>>) chunk).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            } else if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Reads the header line and moves the remaining characters to the start of the buffer. Reads
+     * only as many characters as required for the header.
+     */
+    private String readHeader() throws IOException {
+        int length = 0;
+        while (true) {
+            while (length < limit && buf[length] != '\n' && buf[length] != '\r') {
+                length++;
+            }
+            // a CR might be followed by a LF
+            if (length < limit && (buf[length] == '\n' || length + 1 < limit) || eof) {
+                break;
+            }
+            if (limit == buf.length) {
+                buf = Arrays.copyOf(buf, buf.length * 2);
+            }
+            read();
+        }
+        if (limit == 0) {
+            throw new IOException("Cannot retrieve SPARQL result header.");
+        }
+        String headerLine = new String(buf, 0, length);
+        if (length < limit && buf[length] == '\r') {
+            length++;
+        }
+        if (length < limit && buf[length] == '\n') {
+            length++;
+        }
+        System.arraycopy(buf, length, buf, 0, limit - length);
+        limit -= length;
+        return headerLine;
+    }
+
+    /**
+     * Returns the next chunk of complete rows.
+     *
+     * @return the chunk or <code>null</code> if the end of the stream has been reached.
+     */
+    private char[] nextChunk() throws IOException {
+        fill();
+        if (limit == 0) {
+            return null;
+        }
+        int boundary = eof ? limit : findRowBoundary(buf, limit);
+        while (boundary == 0) {
+            // the buffer does not contain a complete row
+            buf = Arrays.copyOf(buf, buf.length * 2);
+            fill();
+            boundary = eof ? limit : findRowBoundary(buf, limit);
+        }
+        char[] chunk = Arrays.copyOf(buf, boundary);
+        discard(boundary);
+        return chunk;
+    }
+
+    /**
+     * Removes the given number of characters from the start of the buffer and refills it.
+     */
+    private void discard(int count) throws IOException {
+        System.arraycopy(buf, count, buf, 0, limit - count);
+        limit -= count;
+        fill();
+    }
+
+    /**
+     * Reads the next characters into the buffer, without waiting for further characters.
+     */
+    private void read() throws IOException {
+        int read = in.read(buf, limit, buf.length - limit);
+        if (read == -1) {
+            eof = true;
+        } else {
+            limit += read;
+        }
+    }
+
+    /**
+     * Fills the buffer, unless the end of the stream has been reached.
+     */
+    private void fill() throws IOException {
+        while (!eof && limit < buf.length) {
+            read();
+        }
+    }
+
+    /**
+     * Locates the end of the last complete row within the given characters, considering quoted
+     * literals which might contain line breaks.
+     *
+     * @param buf the characters, starting at the beginning of a row
+     * @param length the number of characters to consider
+     * @return the index after the last complete row's line break or 0 if no row is complete.
+     */
+    static int findRowBoundary(char[] buf, int length) {
+        int boundary = 0;
+        boolean fieldStart = true;
+        boolean literal = false;
+        for (int i = 0; i < length; i++) {
+            char ch = buf[i];
+            if (literal) {
+                if (ch == '\\') {
+                    // skip the escaped character
+                    i++;
+                } else if (ch == '"') {
+                    if (i + 1 == length) {
+                        // cannot decide whether this is a quoted quote ("")
+                        break;
+                    }
+                    if (buf[i + 1] == '"') {
+                        i++;
+                    } else {
+                        literal = false;
+                    }
+                }
+            } else if (ch == '"' && fieldStart) {
+                literal = true;
+                fieldStart = false;
+            } else if (ch == '\n') {
+                boundary = i + 1;
+                fieldStart = true;
+            } else if (ch == '\r') {
+                if (i + 1 == length) {
+                    // the line break might continue with LF
+                    break;
+                }
+                if (buf[i + 1] != '\n') {
+                    boundary = i + 1;
+                }
+                fieldStart = true;
+            } else {
+                fieldStart = ch == '\t';
+            }
+        }
+        return boundary;
+    }
+}
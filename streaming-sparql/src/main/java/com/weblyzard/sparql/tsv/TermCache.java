@@ -0,0 +1,117 @@
+package com.weblyzard.sparql.tsv;
+
+import org.apache.jena.graph.Node;
+
+/**
+ * A size-bounded cache that maps the raw TSV representation of frequent RDF terms (predicates,
+ * classes, datatype IRIs, language tags, ...) to a shared {@link Node} instance.
+ *
+ * <p>
+ * The cache is direct-mapped, i.e. every term is stored in the slot determined by its hash code
+ * and replaces any previous term in that slot. Terms are only admitted on their second occurrence,
+ * which keeps one-off terms (e.g. subject IRIs) from evicting frequent ones and avoids allocating
+ * entries that are never reused. Slots hold immutable entries, which makes the cache thread-safe
+ * without locking, so that a single instance can be shared across parsers and
+ * {@link com.weblyzard.sparql.StreamingResultSet}s. Terms longer than {@link #MAX_TERM_LENGTH}
+ * (e.g. abstracts) are rarely repeated and, therefore, never cached.
+ *
+ * @author Albert Weichselbraun
+ *
+ */
+public class TermCache {
+
+    /** the default number of cached terms. */
+    public static final int DEFAULT_CAPACITY = 4096;
+    /** the maximum length of cached terms. */
+    public static final int MAX_TERM_LENGTH = 256;
+
+    private final Entry<Node>[] nodes;
+    private final Entry<String>[] languages;
+    // hash codes of recently seen terms which have not been admitted yet
+    private final int[] candidates;
+    private final int mask;
+
+    public TermCache() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a cache for the given number of terms.
+     *
+     * @param capacity the number of cached terms (rounded up to the next power of two)
+     */
+    @SuppressWarnings("unchecked")
+    public TermCache(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("The cache capacity must be positive.");
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        nodes = new Entry[size];
+        candidates = new int[size];
+        languages = new Entry[Math.max(1, size >>> 4)];
+        mask = size - 1;
+    }
+
+    /**
+     * Returns the cached {@link Node} for the given term.
+     *
+     * @param term the TSV representation of the RDF term
+     * @return the cached {@link Node} or <code>null</code>, if the term is not cached.
+     */
+    public Node get(String term) {
+        Entry<Node> entry = nodes[slot(term.hashCode(), mask)];
+        return entry != null && entry.key.equals(term) ? entry.value : null;
+    }
+
+    /**
+     * Caches the {@link Node} for the given term, provided that the term has been seen before.
+     *
+     * @param term the TSV representation of the RDF term
+     * @param node the corresponding {@link Node}
+     */
+    public void put(String term, Node node) {
+        if (term.length() > MAX_TERM_LENGTH) {
+            return;
+        }
+        int hash = term.hashCode();
+        int slot = slot(hash, mask);
+        if (candidates[slot] == hash) {
+            nodes[slot] = new Entry<>(term, node);
+        } else {
+            candidates[slot] = hash;
+        }
+    }
+
+    /**
+     * Returns a shared instance of the given language tag.
+     */
+    public String internLanguage(String language) {
+        int slot = slot(language.hashCode(), languages.length - 1);
+        Entry<String> entry = languages[slot];
+        if (entry != null && entry.key.equals(language)) {
+            return entry.value;
+        }
+        languages[slot] = new Entry<>(language, language);
+        return language;
+    }
+
+    private static int slot(int hash, int mask) {
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+
+    /**
+     * An immutable cache entry; the final fields guarantee safe publication across threads.
+     */
+    private static final class Entry<T> {
+        private final String key;
+        private final T value;
+
+        private Entry(String key, T value) {
+            this.key = key;
+            this.value = value;
+        }
+    }
+}
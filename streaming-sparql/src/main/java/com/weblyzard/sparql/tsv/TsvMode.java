@@ -0,0 +1,19 @@
+package com.weblyzard.sparql.tsv;
+
+/**
+ * The strategy used for splitting a TSV response into RDF terms. All modes yield the same rows;
+ * e.g. newlines within literals are replaced with a single space.
+ *
+ * @author Albert Weichselbraun
+ */
+public enum TsvMode {
+    /** read the response line by line ({@link TsvParser}). */
+    LINE,
+    /** scan a reusable read-ahead buffer in place ({@link CharBufferTsvParser}). */
+    CHAR_BUFFER,
+    /**
+     * scan the raw UTF-8 bytes and only decode field contents ({@link Utf8TsvParser}). Responses
+     * in other charsets and parallel parsing use {@link #CHAR_BUFFER} instead.
+     */
+    UTF8_BYTES
+}
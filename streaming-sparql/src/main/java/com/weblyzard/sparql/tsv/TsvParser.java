@@ -3,13 +3,17 @@ package com.weblyzard.sparql.tsv;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.util.EnumMap;
-import java.util.HashMap;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Optional;
+import java.util.Set;
 import org.apache.jena.graph.Node;
 import org.apache.jena.riot.RiotException;
 import org.apache.jena.sparql.util.NodeFactoryExtra;
+import com.weblyzard.sparql.ResultParser;
+import com.weblyzard.sparql.ResultRow;
+import com.weblyzard.sparql.ResultSchema;
+import com.weblyzard.sparql.ResultSetOptions;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 
@@ -18,26 +22,33 @@ import lombok.extern.slf4j.Slf4j;
  *
  * <ol>
  * <li>Double quotes: <code>""</code> are translated to <code>\"</code>.</li>
- * <li>Newlines are replaced with space.</li>
+ * <li>Newlines within literals (LF, CR or CRLF) are replaced with a single space.</li>
  * </ol>
  *
  * @author Albert Weichselbraun
  *
  */
 @Slf4j
-public class TsvParser {
+public class TsvParser implements ResultParser {
 
     private enum State {
-        START, RESOURCE, LITERAL
+        START, RESOURCE, LITERAL, SKIP
     }
 
     @Getter
     private String[] tsvHeader;
+    @Getter
+    private ResultSchema schema;
     private BufferedReader in;
+    private final TermCache termCache;
+    private final boolean lazyNodes;
+    // columns excluded by the projection or null, if all columns are required
+    private final boolean[] skippedColumns;
     private String currentLine;
     private int idx = 0;
     protected int currentTupleIdx = 0;
-    protected Map<String, Node> currentTuple;
+    protected Node[] currentTuple;
+    protected String[] currentCells;
     protected CharConsumer currentConsumer;
     private static Map<State, CharConsumer> consumers = new EnumMap<>(State.class);
 
@@ -55,11 +66,11 @@ public class TsvParser {
                     break;
                 // start of literal
                 case '"':
-                    t.currentConsumer = consumers.get(State.LITERAL);
+                    t.currentConsumer = consumers.get(t.isSkipped() ? State.SKIP : State.LITERAL);
                     break;
                 // start of resource
                 default:
-                    t.currentConsumer = consumers.get(State.RESOURCE);
+                    t.currentConsumer = consumers.get(t.isSkipped() ? State.SKIP : State.RESOURCE);
             }
             return true;
         });
@@ -68,8 +79,7 @@ public class TsvParser {
         consumers.put(State.RESOURCE, t -> {
             String r = t.popTo('\t');
             t.popIfAvailable();
-            parseNode(r).ifPresent(
-                node -> t.currentTuple.put(t.tsvHeader[t.currentTupleIdx], node));
+            t.setCell(r);
             t.currentTupleIdx++;
             t.currentConsumer = consumers.get(State.START);
             return true;
@@ -96,8 +106,27 @@ public class TsvParser {
             }
             s.append(t.popTo('\t'));
             t.popIfAvailable();
-            parseNode(s.toString()).ifPresent(
-                node -> t.currentTuple.put(t.tsvHeader[t.currentTupleIdx], node));
+            t.setCell(s.toString());
+            t.currentTupleIdx++;
+            t.currentConsumer = consumers.get(State.START);
+            return true;
+        });
+
+        // Skip a value without materializing it
+        consumers.put(State.SKIP, t -> {
+            if (t.getIfAvailable() == '"') {
+                t.pop();
+                while (true) {
+                    if (t.pop() == '"') {
+                        if (t.getIfAvailable() != '"') {
+                            break;
+                        }
+                        t.pop();
+                    }
+                }
+            }
+            t.skipTo('\t');
+            t.popIfAvailable();
             t.currentTupleIdx++;
             t.currentConsumer = consumers.get(State.START);
             return true;
@@ -105,8 +134,22 @@ public class TsvParser {
     }
 
     public TsvParser(BufferedReader in) throws IOException {
+        this(in, ResultSetOptions.DEFAULT);
+    }
+
+    /**
+     * Creates a parser for the given {@link BufferedReader}.
+     *
+     * @param in the {@link BufferedReader} to consume
+     * @param options the {@link ResultSetOptions} to use
+     * @throws IOException if the TSV header cannot be read
+     */
+    public TsvParser(BufferedReader in, ResultSetOptions options) throws IOException {
         this.in = in;
+        termCache = options.getTermCache();
+        lazyNodes = options.isLazyNodes();
         setTsvHeader();
+        skippedColumns = getSkippedColumns(tsvHeader, options.getProjection());
     }
 
     /**
@@ -114,7 +157,8 @@ public class TsvParser {
      *
      * @return an array of the tuples or <code>null</code> if no further lines are available.
      */
-    public Map<String, Node> getTuple() {
+    @Override
+    public ResultRow getTuple() {
         currentLine = readNextLine();
         // end of document -> no further tuples are available
         if (currentLine == null) {
@@ -124,7 +168,11 @@ public class TsvParser {
         // prepare finit state machine
         idx = 0;
         currentTupleIdx = 0;
-        currentTuple = new HashMap<>(tsvHeader.length);
+        if (lazyNodes) {
+            currentCells = new String[tsvHeader.length];
+        } else {
+            currentTuple = new Node[tsvHeader.length];
+        }
         currentConsumer = consumers.get(State.START);
 
         try {
@@ -134,18 +182,63 @@ public class TsvParser {
             log.warn("Server returned more tuples than expected ({}). Ignoring superfluous tuples. TSV line content: {}",
                             tsvHeader.length, currentLine);
         }
-        return currentTuple;
+        return lazyNodes ? new LazyResultRow(schema, currentCells, termCache) : new ResultRow(schema, currentTuple);
+    }
+
+    /**
+     * Sets the value of the current cell.
+     *
+     * @param value the TSV representation of the cell's RDF term
+     * @throws ArrayIndexOutOfBoundsException if the row contains more cells than variables
+     */
+    private void setCell(String value) {
+        if (lazyNodes) {
+            currentCells[currentTupleIdx] = value;
+        } else {
+            currentTuple[currentTupleIdx] = parseNode(value, termCache).orElse(null);
+        }
+    }
+
+    @Override
+    public String[] getResultVars() {
+        return tsvHeader;
     }
 
     /**
      * Translates a String into a {@link Node}.
+     *
+     * <p>
+     * Common terms are handled by the {@link TsvTermParser}; Jena's tokenizer is only used for
+     * exotic input.
      * 
      * @param nodeString String representation of the RDF node as obtained from the TSV input
      * @return the corresponding RDF {@link Node}
      */
-    private static Optional<Node> parseNode(String nodeString) {
+    static Optional<Node> parseNode(String nodeString) {
+        return parseNode(nodeString, null);
+    }
+
+    /**
+     * Translates a String into a {@link Node}.
+     *
+     * @param nodeString String representation of the RDF node as obtained from the TSV input
+     * @param cache an optional {@link TermCache} which provides shared instances of frequent terms
+     * @return the corresponding RDF {@link Node}
+     */
+    static Optional<Node> parseNode(String nodeString, TermCache cache) {
+        Node node;
+        if (cache != null && (node = cache.get(nodeString)) != null) {
+            return Optional.of(node);
+        }
+        node = TsvTermParser.parse(nodeString, cache);
         try {
-            return Optional.of(NodeFactoryExtra.parseNode(nodeString));
+            if (node == null) {
+                node = NodeFactoryExtra.parseNode(nodeString);
+            }
+            if (cache != null) {
+                cache.put(nodeString, node);
+            }
+            return Optional.of(node);
         } catch (RiotException e) {
             log.error("Parsing of value '{}' failed: {}", nodeString, e.getMessage());
             return Optional.empty();
@@ -160,7 +253,44 @@ public class TsvParser {
         if (headerLine == null) {
             throw new IOException("Cannot retrieve SPARQL result header.");
         }
+        tsvHeader = parseTsvHeader(headerLine);
+        schema = new ResultSchema(tsvHeader);
+    }
+
+    /**
+     * Determines the columns that are not required by the given projection.
+     *
+     * @param tsvHeader the variables used in the TSV response
+     * @param projection the required variables or <code>null</code> for all variables
+     * @return a flag for every column that indicates whether it is skipped or <code>null</code> if
+     *         all columns are required.
+     */
+    static boolean[] getSkippedColumns(String[] tsvHeader, Set<String> projection) {
+        if (projection == null) {
+            return null;
+        }
+        boolean[] skippedColumns = new boolean[tsvHeader.length];
+        for (int i = 0; i < tsvHeader.length; i++) {
+            skippedColumns[i] = !projection.contains(tsvHeader[i]);
+        }
+        return skippedColumns;
+    }
+
+    /**
+     * Returns whether the current column is excluded by the projection.
+     */
+    private boolean isSkipped() {
+        return skippedColumns != null && currentTupleIdx < skippedColumns.length
+                && skippedColumns[currentTupleIdx];
+    }
 
+    /**
+     * Translates the TSV header line into the list of result variables.
+     *
+     * @param headerLine the first line of the TSV response
+     * @return the variable names used in the TSV response
+     */
+    static String[] parseTsvHeader(String headerLine) {
         String[] result = headerLine.split(Character.toString('\t'));
         // standarize output variables (remove "?" or quotes, if necessary)
         for (int i = 0; i < result.length; i++) {
@@ -172,7 +302,7 @@ public class TsvParser {
                 result[i] = result[i].substring(1, result[i].length() - 1);
             }
         }
-        tsvHeader = result;
+        return result;
     }
 
     /**
@@ -195,8 +325,9 @@ public class TsvParser {
             if (currentLine == null) {
                 throw new NoSuchElementException();
             }
-            currentLine += " ";
             idx = 0;
+            // the line break is replaced with space
+            return ' ';
         }
         return currentLine.charAt(idx++);
     }
@@ -209,6 +340,11 @@ public class TsvParser {
         return idx < currentLine.length() ? currentLine.charAt(idx) : 0;
     }
 
+    private void skipTo(char needle) {
+        int endIdx = currentLine.indexOf(needle, idx);
+        idx = endIdx == -1 ? currentLine.length() : endIdx;
+    }
+
     private String popTo(char needle) {
         int endIdx = currentLine.indexOf(needle, idx);
         if (endIdx == -1) {
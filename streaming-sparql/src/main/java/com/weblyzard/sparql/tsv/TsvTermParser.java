@@ -0,0 +1,317 @@
+package com.weblyzard.sparql.tsv;
+
+import org.apache.jena.datatypes.RDFDatatype;
+import org.apache.jena.datatypes.TypeMapper;
+import org.apache.jena.datatypes.xsd.XSDDatatype;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+
+/**
+ * Hand-written parser for the RDF terms used in SPARQL TSV results.
+ *
+ * <p>
+ * Supports the common cases, i.e.
+ *
+ * <ul>
+ * <li>IRIs: <code>&lt;http://example.org&gt;</code></li>
+ * <li>literals: <code>"lex"</code>, <code>"lex"@lang</code> and
+ * <code>"lex"^^&lt;datatype&gt;</code></li>
+ * <li>blank nodes: <code>_:b0</code></li>
+ * <li>bare numbers and booleans: <code>12</code>, <code>-1.5</code>, <code>1e3</code>,
+ * <code>true</code></li>
+ * </ul>
+ *
+ * and constructs the corresponding {@link Node} directly. Any other input (e.g. prefixed names,
+ * long or single quoted literals or escapes within IRIs) is left to Jena's tokenizer by returning
+ * <code>null</code>.
+ *
+ * @author Albert Weichselbraun
+ *
+ */
+public final class TsvTermParser {
+
+    private TsvTermParser() {}
+
+    /**
+     * Translates the TSV representation of an RDF term into a {@link Node}.
+     *
+     * @param term the TSV representation of the RDF term
+     * @return the corresponding {@link Node} or <code>null</code> if the term requires Jena's full
+     *         parser.
+     */
+    public static Node parse(String term) {
+        return parse(term, null);
+    }
+
+    /**
+     * Translates the TSV representation of an RDF term into a {@link Node}.
+     *
+     * @param term the TSV representation of the RDF term
+     * @param cache an optional {@link TermCache} used for sharing language tags
+     * @return the corresponding {@link Node} or <code>null</code> if the term requires Jena's full
+     *         parser.
+     */
+    public static Node parse(String term, TermCache cache) {
+        int end = term.length();
+        // ignore trailing whitespace
+        while (end > 0 && term.charAt(end - 1) == ' ') {
+            end--;
+        }
+        if (end == 0) {
+            return null;
+        }
+        switch (term.charAt(0)) {
+            case '<':
+                return parseIri(term, 0, end);
+            case '"':
+                return parseLiteral(term, end, cache);
+            case '_':
+                return parseBlankNode(term, end);
+            case 't':
+            case 'f':
+                return parseBoolean(term, end);
+            default:
+                return parseNumber(term, end);
+        }
+    }
+
+    /**
+     * Parses an IRI that starts at position start and ends at position end (exclusive).
+     */
+    private static Node parseIri(String term, int start, int end) {
+        String iri = getIri(term, start, end);
+        return iri == null ? null : NodeFactory.createURI(iri);
+    }
+
+    /**
+     * Returns the IRI enclosed in angle brackets or <code>null</code>, if the IRI contains
+     * characters that require Jena's parser.
+     */
+    private static String getIri(String term, int start, int end) {
+        if (end - start < 2 || term.charAt(end - 1) != '>') {
+            return null;
+        }
+        for (int i = start + 1; i < end - 1; i++) {
+            char ch = term.charAt(i);
+            if (ch <= ' ' || ch == '<' || ch == '>' || ch == '"' || ch == '{' || ch == '}' || ch == '|'
+                    || ch == '^' || ch == '`' || ch == '\\') {
+                return null;
+            }
+        }
+        return term.substring(start + 1, end - 1);
+    }
+
+    private static Node parseLiteral(String term, int end, TermCache cache) {
+        // locate the closing quote and unescape the lexical form, if necessary
+        StringBuilder unescaped = null;
+        int segmentStart = 1;
+        int idx = 1;
+        while (true) {
+            if (idx >= end) {
+                return null;
+            }
+            char ch = term.charAt(idx);
+            if (ch == '"') {
+                break;
+            } else if (ch == '\\') {
+                if (unescaped == null) {
+                    unescaped = new StringBuilder(end);
+                }
+                unescaped.append(term, segmentStart, idx);
+                idx = unescape(term, idx, end, unescaped);
+                if (idx < 0) {
+                    return null;
+                }
+                segmentStart = idx;
+            } else if (ch == '\n' || ch == '\r') {
+                return null;
+            } else {
+                idx++;
+            }
+        }
+        // long quotes (""") are not supported
+        if (idx == 1 && end > 2 && term.charAt(2) == '"') {
+            return null;
+        }
+        String lex = unescaped == null ? term.substring(1, idx)
+                : unescaped.append(term, segmentStart, idx).toString();
+
+        // suffix
+        int suffix = idx + 1;
+        if (suffix == end) {
+            return NodeFactory.createLiteral(lex);
+        } else if (term.charAt(suffix) == '@') {
+            if (!isLanguageTag(term, suffix + 1, end)) {
+                return null;
+            }
+            String language = term.substring(suffix + 1, end);
+            return NodeFactory.createLiteral(lex, cache == null ? language : cache.internLanguage(language));
+        } else if (term.startsWith("^^<", suffix)) {
+            String datatype = getIri(term, suffix + 2, end);
+            return datatype == null ? null
+                    : createLiteral(lex, TypeMapper.getInstance().getSafeTypeByName(datatype));
+        }
+        return null;
+    }
+
+    /**
+     * Appends the escape sequence starting at idx to the given {@link StringBuilder}.
+     *
+     * @return the index after the escape sequence or -1 for unsupported escape sequences.
+     */
+    private static int unescape(String term, int idx, int end, StringBuilder s) {
+        if (idx + 1 >= end) {
+            return -1;
+        }
+        char ch = term.charAt(idx + 1);
+        switch (ch) {
+            case 't':
+                s.append('\t');
+                break;
+            case 'n':
+                s.append('\n');
+                break;
+            case 'r':
+                s.append('\r');
+                break;
+            case 'b':
+                s.append('\b');
+                break;
+            case 'f':
+                s.append('\f');
+                break;
+            case '"':
+            case '\'':
+            case '\\':
+                s.append(ch);
+                break;
+            case 'u':
+                return unescapeCodepoint(term, idx + 2, 4, end, s);
+            case 'U':
+                return unescapeCodepoint(term, idx + 2, 8, end, s);
+            default:
+                return -1;
+        }
+        return idx + 2;
+    }
+
+    private static int unescapeCodepoint(String term, int idx, int digits, int end, StringBuilder s) {
+        if (idx + digits > end) {
+            return -1;
+        }
+        int codepoint = 0;
+        for (int i = idx; i < idx + digits; i++) {
+            int digit = Character.digit(term.charAt(i), 16);
+            if (digit < 0) {
+                return -1;
+            }
+            codepoint = codepoint * 16 + digit;
+        }
+        if (!Character.isValidCodePoint(codepoint)) {
+            return -1;
+        }
+        s.appendCodePoint(codepoint);
+        return idx + digits;
+    }
+
+    /**
+     * Checks for language tags such as <code>en</code> or <code>de-CH</code>.
+     */
+    private static boolean isLanguageTag(String term, int start, int end) {
+        if (start == end) {
+            return false;
+        }
+        boolean subtagStart = true;
+        boolean primary = true;
+        for (int i = start; i < end; i++) {
+            char ch = term.charAt(i);
+            if (ch == '-') {
+                if (subtagStart) {
+                    return false;
+                }
+                subtagStart = true;
+                primary = false;
+                continue;
+            }
+            boolean valid = (ch >= 'a' && ch <= 'z') || (ch >= 'A' && ch <= 'Z')
+                    || (!primary && ch >= '0' && ch <= '9');
+            if (!valid) {
+                return false;
+            }
+            subtagStart = false;
+        }
+        return !subtagStart;
+    }
+
+    private static Node parseBoolean(String term, int end) {
+        String value = term.substring(0, end);
+        return "true".equals(value) || "false".equals(value) ? createLiteral(value, XSDDatatype.XSDboolean) : null;
+    }
+
+    private static Node parseBlankNode(String term, int end) {
+        if (end < 3 || term.charAt(1) != ':' || term.charAt(end - 1) == '.') {
+            return null;
+        }
+        for (int i = 2; i < end; i++) {
+            char ch = term.charAt(i);
+            boolean valid = (ch >= 'a' && ch <= 'z') || (ch >= 'A' && ch <= 'Z') || (ch >= '0' && ch <= '9')
+                    || ch == '_' || (i > 2 && (ch == '-' || ch == '.'));
+            if (!valid) {
+                return null;
+            }
+        }
+        return NodeFactory.createBlankNode(term.substring(2, end));
+    }
+
+    /**
+     * Parses Turtle numbers, i.e. integers (<code>12</code>), decimals (<code>1.5</code>) and
+     * doubles (<code>1e3</code>).
+     */
+    private static Node parseNumber(String term, int end) {
+        int idx = 0;
+        char ch = term.charAt(0);
+        if (ch == '+' || ch == '-') {
+            idx++;
+        }
+        int integerDigits = countDigits(term, idx, end);
+        idx += integerDigits;
+        int fractionDigits = -1;
+        if (idx < end && term.charAt(idx) == '.') {
+            fractionDigits = countDigits(term, idx + 1, end);
+            idx += fractionDigits + 1;
+        }
+        if (integerDigits == 0 && fractionDigits <= 0) {
+            return null;
+        }
+        XSDDatatype datatype = fractionDigits < 0 ? XSDDatatype.XSDinteger : XSDDatatype.XSDdecimal;
+        if (idx < end && (term.charAt(idx) == 'e' || term.charAt(idx) == 'E')) {
+            idx++;
+            if (idx < end && (term.charAt(idx) == '+' || term.charAt(idx) == '-')) {
+                idx++;
+            }
+            int exponentDigits = countDigits(term, idx, end);
+            if (exponentDigits == 0) {
+                return null;
+            }
+            idx += exponentDigits;
+            datatype = XSDDatatype.XSDdouble;
+        } else if (fractionDigits == 0) {
+            // "1." is not a valid decimal
+            return null;
+        }
+        return idx == end ? createLiteral(term.substring(0, end), datatype) : null;
+    }
+
+    private static int countDigits(String term, int start, int end) {
+        int idx = start;
+        while (idx < end && term.charAt(idx) >= '0' && term.charAt(idx) <= '9') {
+            idx++;
+        }
+        return idx - start;
+    }
+
+    private static Node createLiteral(String lex, RDFDatatype datatype) {
+        return datatype == XSDDatatype.XSDstring ? NodeFactory.createLiteral(lex)
+                : NodeFactory.createLiteral(lex, datatype);
+    }
+}
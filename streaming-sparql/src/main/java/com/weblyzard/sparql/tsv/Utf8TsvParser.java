@@ -0,0 +1,96 @@
+package com.weblyzard.sparql.tsv;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import com.weblyzard.sparql.ResultSetOptions;
+
+/**
+ * Parses UTF-8 encoded TSV files directly from the underlying {@link InputStream}.
+ *
+ * <p>
+ * All TSV delimiters are ASCII characters which never occur within UTF-8 multi-byte sequences.
+ * The parser, therefore, locates tabs, quotes and newlines on the raw bytes of a reusable
+ * read-ahead buffer (compare {@link CharBufferTsvParser}) and only decodes the content of the
+ * fields, rather than decoding the whole response to UTF-16 upfront.
+ *
+ * @author Albert Weichselbraun
+ *
+ */
+public class Utf8TsvParser extends BufferedTsvParser {
+
+    /** the default size of the read-ahead buffer in bytes. */
+    public static final int DEFAULT_READ_AHEAD_SIZE = 64 * 1024;
+
+    private final InputStream in;
+    private byte[] buf;
+
+    public Utf8TsvParser(InputStream in) throws IOException {
+        this(in, DEFAULT_READ_AHEAD_SIZE);
+    }
+
+    /**
+     * Creates a parser that reads the given {@link InputStream} in chunks of readAheadSize bytes.
+     *
+     * @param in the UTF-8 encoded {@link InputStream} to consume
+     * @param readAheadSize the initial size of the read-ahead buffer
+     * @throws IOException if the TSV header cannot be read
+     */
+    public Utf8TsvParser(InputStream in, int readAheadSize) throws IOException {
+        this(in, ResultSetOptions.builder().readAheadSize(readAheadSize).build());
+    }
+
+    /**
+     * Creates a parser for the given {@link InputStream}.
+     *
+     * @param in the {@link InputStream} to consume
+     * @param options the {@link ResultSetOptions} to use
+     * @throws IOException if the TSV header cannot be read
+     */
+    public Utf8TsvParser(InputStream in, ResultSetOptions options) throws IOException {
+        super(options);
+        int readAheadSize = options.getReadAheadSize();
+        if (readAheadSize < 2) {
+            throw new IllegalArgumentException("Read-ahead size must be at least 2 bytes.");
+        }
+        this.in = in;
+        buf = new byte[readAheadSize];
+        readHeader();
+    }
+
+    @Override
+    protected int get(int index) {
+        return buf[index];
+    }
+
+    @Override
+    protected void set(int index, int value) {
+        buf[index] = (byte) value;
+    }
+
+    @Override
+    protected String decode(int offset, int length) {
+        return new String(buf, offset, length, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    protected int capacity() {
+        return buf.length;
+    }
+
+    @Override
+    protected void compact(int offset, int length) {
+        System.arraycopy(buf, offset, buf, 0, length);
+    }
+
+    @Override
+    protected void grow(int capacity) {
+        buf = Arrays.copyOf(buf, capacity);
+    }
+
+    @Override
+    protected int read(int offset, int length) throws IOException {
+        return in.read(buf, offset, length);
+    }
+}
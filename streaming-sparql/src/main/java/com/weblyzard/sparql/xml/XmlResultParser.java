@@ -0,0 +1,234 @@
+package com.weblyzard.sparql.xml;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import javax.xml.XMLConstants;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import org.apache.jena.datatypes.TypeMapper;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import com.weblyzard.sparql.ResultParser;
+import com.weblyzard.sparql.ResultRow;
+import com.weblyzard.sparql.ResultSchema;
+import com.weblyzard.sparql.ResultSetOptions;
+import com.weblyzard.sparql.tsv.TermCache;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Parses SPARQL results in XML format incrementally with a StAX pull parser.
+ *
+ * <p>
+ * The parser reads the result variables from the <code>head</code> element and then emits one row
+ * per <code>result</code> element as it arrives, rather than building a DOM of the whole response.
+ * Its memory consumption, therefore, does not depend on the size of the response.
+ *
+ * <p>
+ * Variables excluded by the {@link ResultSetOptions#getProjection()} are skipped without creating
+ * {@link Node}s. A {@link TermCache}, if provided, is used for sharing language tags.
+ *
+ * @author Albert Weichselbraun
+ *
+ */
+@Slf4j
+public class XmlResultParser implements ResultParser, Closeable {
+
+    private static final XMLInputFactory XML_INPUT_FACTORY = createInputFactory();
+
+    private final XMLStreamReader reader;
+    @Getter
+    private final String[] resultVars;
+    @Getter
+    private final ResultSchema schema;
+    private final TermCache termCache;
+    private final Set<String> projection;
+    // whether the reader is positioned within the results element
+    private boolean inResults;
+
+    /**
+     * Creates a parser for the given {@link InputStream}.
+     *
+     * @param in the {@link InputStream} to consume; the encoding is determined by the XML
+     *        declaration.
+     * @param options the {@link ResultSetOptions} to use
+     * @throws IOException if the result variables cannot be read
+     */
+    public XmlResultParser(InputStream in, ResultSetOptions options) throws IOException {
+        termCache = options.getTermCache();
+        projection = options.getProjection();
+        try {
+            reader = XML_INPUT_FACTORY.createXMLStreamReader(in);
+            // enter the document element
+            if (reader.nextTag() != XMLStreamConstants.START_ELEMENT || !nextElement("head")) {
+                throw new IOException("Cannot retrieve SPARQL result header.");
+            }
+            resultVars = parseHead();
+            // the results are absent for boolean results
+            inResults = nextElement("results");
+        } catch (XMLStreamException e) {
+            throw new IOException("Cannot parse SPARQL result header.", e);
+        }
+        schema = new ResultSchema(resultVars);
+    }
+
+    /**
+     * Creates a factory which neither loads DTDs nor resolves external entities.
+     */
+    private static XMLInputFactory createInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        return factory;
+    }
+
+    /**
+     * Advances to the start of the next element with the given name, which must occur before the
+     * end of the current element.
+     *
+     * @return false if the current element ends before.
+     */
+    private boolean nextElement(String name) throws XMLStreamException {
+        int depth = 0;
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                if (depth == 0 && name.equals(reader.getLocalName())) {
+                    return true;
+                }
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT && depth-- == 0) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Reads the result variables from the head element.
+     */
+    private String[] parseHead() throws XMLStreamException {
+        List<String> vars = new ArrayList<>();
+        while (nextElement("variable")) {
+            vars.add(reader.getAttributeValue(null, "name"));
+            skipElement();
+        }
+        return vars.toArray(new String[0]);
+    }
+
+    /**
+     * Skips the remainder of the current element.
+     */
+    private void skipElement() throws XMLStreamException {
+        int depth = 0;
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT && depth-- == 0) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Parses the next result.
+     *
+     * @return the tuple or <code>null</code> if no further tuples are available.
+     */
+    @Override
+    public ResultRow getTuple() {
+        if (!inResults) {
+            return null;
+        }
+        try {
+            if (!nextElement("result")) {
+                inResults = false;
+                return null;
+            }
+            Node[] tuple = new Node[resultVars.length];
+            while (nextElement("binding")) {
+                int idx = schema.indexOf(reader.getAttributeValue(null, "name"));
+                if (idx < 0 || projection != null && !projection.contains(resultVars[idx])) {
+                    skipElement();
+                    continue;
+                }
+                if (nextChildElement()) {
+                    tuple[idx] = parseTerm();
+                    skipElement();
+                }
+            }
+            return new ResultRow(schema, tuple);
+        } catch (XMLStreamException e) {
+            // mirror TsvParser which considers IO errors as end of the stream
+            log.warn("Cannot read XML response: {}", e.getMessage());
+            inResults = false;
+            return null;
+        }
+    }
+
+    /**
+     * Advances to the first child of the current element.
+     *
+     * @return false if the current element does not have any children.
+     */
+    private boolean nextChildElement() throws XMLStreamException {
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                return true;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Translates the RDF term element at the current position into a {@link Node}. Consumes the
+     * term's end element.
+     *
+     * @return the {@link Node} or <code>null</code> for unsupported terms.
+     */
+    private Node parseTerm() throws XMLStreamException {
+        String type = reader.getLocalName();
+        switch (type) {
+            case "uri":
+                return NodeFactory.createURI(reader.getElementText());
+            case "bnode":
+                return NodeFactory.createBlankNode(reader.getElementText());
+            case "literal":
+                String language = reader.getAttributeValue(XMLConstants.XML_NS_URI, "lang");
+                String datatype = reader.getAttributeValue(null, "datatype");
+                String value = reader.getElementText();
+                if (language != null) {
+                    return NodeFactory.createLiteral(value,
+                            termCache == null ? language : termCache.internLanguage(language));
+                } else if (datatype != null) {
+                    return NodeFactory.createLiteral(value, TypeMapper.getInstance().getSafeTypeByName(datatype));
+                }
+                return NodeFactory.createLiteral(value);
+            default:
+                log.warn("Ignoring unsupported RDF term of type '{}'.", type);
+                skipElement();
+                return null;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            // does not close the underlying input stream
+            reader.close();
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        }
+    }
+}
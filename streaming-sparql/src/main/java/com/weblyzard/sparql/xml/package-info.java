@@ -0,0 +1,7 @@
+/**
+ * Incremental parsing of SPARQL results in XML format (<code>application/sparql-results+xml</code>).
+ *
+ * @author Albert Weichselbraun
+ *
+ */
+package com.weblyzard.sparql.xml;
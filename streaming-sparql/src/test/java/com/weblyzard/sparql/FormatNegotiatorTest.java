@@ -0,0 +1,95 @@
+package com.weblyzard.sparql;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import org.apache.jena.graph.NodeFactory;
+import org.junit.Test;
+import com.weblyzard.sparql.transport.HttpClientTransport;
+import com.weblyzard.sparql.transport.Transport;
+
+/**
+ * Tests the {@link FormatNegotiator}.
+ *
+ * @author Albert Weichselbraun
+ *
+ */
+public class FormatNegotiatorTest {
+
+    private static final String URL = "http://localhost/sparql";
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private static final String JSON_RESPONSE = "{ \"head\": { \"vars\": [\"s\"] }, \"results\": { \"bindings\": ["
+            + "{ \"s\": { \"type\": \"uri\", \"value\": \"http://test.org/1\" } },"
+            + "{ \"s\": { \"type\": \"uri\", \"value\": \"http://test.org/2\" } } ] } }";
+
+    @Test
+    public void testDefaultAcceptHeader() {
+        FormatNegotiator negotiator = FormatNegotiator.builder().build();
+        assertEquals(FormatNegotiator.DEFAULT_FORMATS, negotiator.getRanking(URL));
+        assertEquals("application/sparql-results+thrift, text/tab-separated-values;q=0.9, "
+                + "application/sparql-results+json;q=0.8, application/sparql-results+xml;q=0.7",
+                negotiator.getAcceptHeader(URL));
+    }
+
+    @Test
+    public void testRanking() {
+        FormatNegotiator negotiator = FormatNegotiator.builder().minRows(10).build();
+        // the endpoint ignores the Thrift format
+        negotiator.recordResponse(URL, ResultFormat.TSV);
+        assertEquals(Arrays.asList(ResultFormat.TSV, ResultFormat.JSON, ResultFormat.XML, ResultFormat.THRIFT),
+                negotiator.getRanking(URL));
+
+        // untried formats are ranked first
+        negotiator.recordThroughput(URL, ResultFormat.TSV, 100_000, SECOND);
+        assertEquals(Arrays.asList(ResultFormat.JSON, ResultFormat.XML, ResultFormat.TSV, ResultFormat.THRIFT),
+                negotiator.getRanking(URL));
+        negotiator.recordThroughput(URL, ResultFormat.JSON, 200_000, SECOND);
+        negotiator.recordThroughput(URL, ResultFormat.XML, 50_000, SECOND);
+        assertEquals(Arrays.asList(ResultFormat.JSON, ResultFormat.TSV, ResultFormat.XML, ResultFormat.THRIFT),
+                negotiator.getRanking(URL));
+        assertEquals(200_000, negotiator.getThroughput(URL, ResultFormat.JSON).getAsDouble(), 0.1);
+
+        // results below the minimum number of rows are not measured
+        negotiator.recordThroughput(URL, ResultFormat.JSON, 9, SECOND);
+        assertEquals(200_000, negotiator.getThroughput(URL, ResultFormat.JSON).getAsDouble(), 0.1);
+
+        // measurements are smoothed
+        negotiator.recordThroughput(URL, ResultFormat.JSON, 10, SECOND);
+        assertTrue(negotiator.getThroughput(URL, ResultFormat.JSON).getAsDouble() > 100_000);
+        negotiator.recordThroughput(URL, ResultFormat.JSON, 10, SECOND);
+        negotiator.recordThroughput(URL, ResultFormat.JSON, 10, SECOND);
+        assertEquals(ResultFormat.TSV, negotiator.getRanking(URL).get(0));
+
+        // other endpoints are not affected
+        assertEquals(FormatNegotiator.DEFAULT_FORMATS, negotiator.getRanking("http://localhost/other"));
+        assertFalse(negotiator.getThroughput("http://localhost/other", ResultFormat.JSON).isPresent());
+    }
+
+    @Test
+    public void testQuery() throws IOException {
+        FormatNegotiator negotiator = FormatNegotiator.builder().minRows(1).build();
+        ResultSetOptions options = ResultSetOptions.builder().negotiator(negotiator).build();
+        try (SparqlTestServer server = new SparqlTestServer(query -> JSON_RESPONSE, "application/sparql-results+json");
+                Transport transport = HttpClientTransport.builder().build()) {
+            for (int i = 0; i < 2; i++) {
+                try (StreamingResultSet resultSet = StreamingQueryExecutor.getResultSet(transport, server.getUrl(),
+                        "SELECT ?s WHERE { ?s ?p ?o }", 1000, options)) {
+                    assertEquals(ResultFormat.JSON, resultSet.getFormat());
+                    assertEquals(NodeFactory.createURI("http://test.org/1"), resultSet.next().get("s"));
+                    assertEquals(NodeFactory.createURI("http://test.org/2"), resultSet.next().get("s"));
+                    assertFalse(resultSet.hasNext());
+                }
+            }
+            // the second query tries the remaining format, which is ignored by the server
+            assertTrue(server.getRequestHeaders().get(1).getFirst("Accept")
+                    .startsWith("application/sparql-results+xml, application/sparql-results+json;q=0.9"));
+            assertEquals(Arrays.asList(ResultFormat.JSON, ResultFormat.THRIFT, ResultFormat.TSV, ResultFormat.XML),
+                    negotiator.getRanking(server.getUrl()));
+            assertTrue(negotiator.getThroughput(server.getUrl(), ResultFormat.JSON).isPresent());
+        }
+    }
+}
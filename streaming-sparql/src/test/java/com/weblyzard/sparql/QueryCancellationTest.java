@@ -0,0 +1,196 @@
+package com.weblyzard.sparql;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import com.weblyzard.sparql.cache.QueryResultCache;
+import com.weblyzard.sparql.cache.RevalidationCache;
+import com.weblyzard.sparql.transport.HttpClientTransport;
+import com.weblyzard.sparql.transport.Transport;
+import com.weblyzard.sparql.transport.UrlConnectionTransport;
+
+/**
+ * Tests query deadlines, the cancellation of queries and the reuse of connections of partially
+ * consumed results.
+ *
+ * @author Albert Weichselbraun
+ *
+ */
+public class QueryCancellationTest {
+
+    private static final String QUERY = "SELECT ?s WHERE { ?s ?p ?o }";
+    private static final String SMALL_QUERY = QUERY + " LIMIT 1000";
+    private static final String SLOW_QUERY = "SELECT ?slow WHERE { ?s ?p ?o }";
+
+    private final CountDownLatch released = new CountDownLatch(1);
+    private SparqlTestServer server;
+    private ScheduledExecutorService scheduler;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new SparqlTestServer(this::evaluate);
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    @After
+    public void tearDown() {
+        released.countDown();
+        server.close();
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Returns 100000 rows (1000 for small queries), or blocks until the test has finished for slow
+     * queries.
+     */
+    private String evaluate(String query) {
+        if (query.equals(SLOW_QUERY)) {
+            try {
+                released.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        StringBuilder tsv = new StringBuilder("?s\n");
+        int rows = query.equals(SMALL_QUERY) ? 1000 : 100000;
+        for (int i = 0; i < rows; i++) {
+            tsv.append("<http://test.org/").append(i).append(">\n");
+        }
+        return tsv.toString();
+    }
+
+    private static int consume(StreamingResultSet resultSet) {
+        int rows = 0;
+        while (resultSet.hasNext()) {
+            resultSet.next();
+            rows++;
+        }
+        return rows;
+    }
+
+    /**
+     * Consumes the given result set, which is expected to fail since it has been cancelled.
+     */
+    private static InterruptedIOException consumeCancelled(StreamingResultSet resultSet) {
+        try {
+            consume(resultSet);
+            fail("Expected UncheckedIOException");
+        } catch (UncheckedIOException e) {
+            assertTrue(resultSet.isCancelled());
+            assertFalse(resultSet.isTruncated());
+            return (InterruptedIOException) e.getCause();
+        }
+        return null;
+    }
+
+    @Test
+    public void testCancel() throws IOException {
+        server.stallResponses(2000);
+        // the UrlConnectionTransport cannot abort pending reads, which end with the read timeout
+        for (Transport transport : new Transport[] {new UrlConnectionTransport(0, 1000),
+                HttpClientTransport.builder().build()}) {
+            try (Transport t = transport;
+                    StreamingResultSet resultSet = StreamingQueryExecutor.getResultSet(t, server.getUrl(), QUERY, 0,
+                            ResultSetOptions.DEFAULT)) {
+                assertTrue(resultSet.hasNext());
+                scheduler.schedule(resultSet::cancel, 200, TimeUnit.MILLISECONDS);
+                // blocks on the stalled response until the connection has been aborted
+                assertTrue(consumeCancelled(resultSet).getMessage().contains("cancelled"));
+            }
+        }
+    }
+
+    @Test
+    public void testDeadline() throws IOException {
+        server.stallResponses(2000);
+        ResultSetOptions options = ResultSetOptions.builder().deadline(Duration.ofMillis(200)).build();
+        try (StreamingResultSet resultSet = StreamingQueryExecutor
+                .getResultSet(StreamingQueryExecutor.getDefaultTransport(), server.getUrl(), QUERY, 0, options)) {
+            assertTrue(consumeCancelled(resultSet).getMessage().contains("deadline"));
+        }
+
+        // the deadline also covers waiting for the server's response
+        try {
+            StreamingQueryExecutor.getResultSet(StreamingQueryExecutor.getDefaultTransport(), server.getUrl(),
+                    SLOW_QUERY, 0, options);
+            fail("Expected InterruptedIOException");
+        } catch (InterruptedIOException e) {
+            assertTrue(e.getMessage().contains("deadline"));
+        }
+    }
+
+    @Test
+    public void testCompletedQueriesAreNotCancelled() throws IOException, InterruptedException {
+        ResultSetOptions options = ResultSetOptions.builder().deadline(Duration.ofSeconds(2)).build();
+        try (StreamingResultSet resultSet = StreamingQueryExecutor.getResultSet(
+                StreamingQueryExecutor.getDefaultTransport(), server.getUrl(), SMALL_QUERY, 0, options)) {
+            assertEquals(1000, consume(resultSet));
+            Thread.sleep(2200);
+            assertFalse(resultSet.isCancelled());
+            resultSet.cancel();
+            assertFalse(resultSet.isCancelled());
+            assertFalse(resultSet.hasNext());
+        }
+    }
+
+    @Test
+    public void testCancelledResultsAreNotCached() throws IOException {
+        server.stallResponses(2000);
+        server.setResponseHeader("ETag", "\"v1\"");
+        QueryResultCache queryResultCache = QueryResultCache.builder().build();
+        RevalidationCache revalidationCache = RevalidationCache.builder().build();
+        try (StreamingResultSet resultSet = queryResultCache.getResultSet(server.getUrl(), QUERY)) {
+            // cancelling the cache's result set aborts the connection of the server's response
+            scheduler.schedule(resultSet::cancel, 200, TimeUnit.MILLISECONDS);
+            consumeCancelled(resultSet);
+        }
+        assertEquals(0, queryResultCache.getSize());
+
+        ResultSetOptions options = ResultSetOptions.builder().revalidationCache(revalidationCache).build();
+        try (StreamingResultSet resultSet = StreamingQueryExecutor
+                .getResultSet(StreamingQueryExecutor.getDefaultTransport(), server.getUrl(), QUERY, 0, options)) {
+            scheduler.schedule(resultSet::cancel, 200, TimeUnit.MILLISECONDS);
+            consumeCancelled(resultSet);
+        }
+        assertEquals(0, revalidationCache.size());
+    }
+
+    @Test
+    public void testDrainPolicy() throws IOException {
+        try (Transport transport = HttpClientTransport.builder().maxConnectionsPerEndpoint(1).build()) {
+            // small remainders are drained, so that the connection is reused
+            closePartiallyConsumed(transport, SMALL_QUERY, ResultSetOptions.DEFAULT);
+            assertEquals(1, server.getClientPorts().size());
+
+            // the connections of large remainders are closed
+            closePartiallyConsumed(transport, QUERY, ResultSetOptions.DEFAULT);
+            assertEquals(3, server.getClientPorts().size());
+
+            // as are all connections, if draining has been disabled
+            closePartiallyConsumed(transport, SMALL_QUERY, ResultSetOptions.builder().drainThreshold(0).build());
+            assertEquals(6, server.getClientPorts().size());
+        }
+    }
+
+    private void closePartiallyConsumed(Transport transport, String query, ResultSetOptions options)
+            throws IOException {
+        for (int i = 0; i < 3; i++) {
+            try (StreamingResultSet resultSet =
+                    StreamingQueryExecutor.getResultSet(transport, server.getUrl(), query, 0, options)) {
+                resultSet.next();
+            }
+        }
+    }
+}
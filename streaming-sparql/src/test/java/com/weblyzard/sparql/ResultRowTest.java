@@ -0,0 +1,112 @@
+package com.weblyzard.sparql;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import org.apache.jena.graph.Node;
+import org.apache.jena.sparql.util.NodeFactoryExtra;
+import org.junit.Test;
+import com.weblyzard.sparql.tsv.TsvMode;
+
+/**
+ * Tests the array based {@link ResultRow}.
+ *
+ * @author Albert Weichselbraun
+ *
+ */
+public class ResultRowTest {
+
+    private static final String TSV_RESPONSE = "?s\t?p\t?o\n" + "<http://test.org/1>\t\t\"o1\"@en\n"
+            + "<http://test.org/2>\t<http://test.org/p>\t\"o2\"\n";
+
+    @Test
+    public void testRow() throws IOException {
+        for (TsvMode mode : TsvMode.values()) {
+            try (StreamingResultSet s = new StreamingResultSet(new StringReader(TSV_RESPONSE),
+                    ResultSetOptions.builder().tsvMode(mode).build())) {
+                ResultSchema schema = s.getSchema();
+                assertEquals(3, schema.size());
+                assertEquals(2, schema.indexOf("o"));
+                assertEquals(-1, schema.indexOf("x"));
+
+                ResultRow row = s.nextRow();
+                assertSame(schema, row.getSchema());
+                assertEquals(NodeFactoryExtra.parseNode("<http://test.org/1>"), row.get(0));
+                assertSame(row.get(0), row.get("s"));
+                assertNull(row.get(1));
+                assertFalse(row.containsKey("p"));
+                assertNull(row.get("x"));
+                assertEquals(2, row.size());
+
+                Map<String, Node> expected = new HashMap<>();
+                expected.put("s", NodeFactoryExtra.parseNode("<http://test.org/1>"));
+                expected.put("o", NodeFactoryExtra.parseNode("\"o1\"@en"));
+                assertEquals(expected, row);
+                assertEquals(row, expected);
+                assertEquals(expected.hashCode(), row.hashCode());
+
+                row = s.nextRow();
+                assertTrue(row.containsKey("p"));
+                assertEquals(3, row.entrySet().size());
+                assertFalse(s.hasNext());
+            }
+        }
+    }
+
+    @Test
+    public void testModification() throws IOException {
+        Node s1 = NodeFactoryExtra.parseNode("<http://test.org/1>");
+        Node s2 = NodeFactoryExtra.parseNode("<http://test.org/2>");
+        Node[] values = new Node[] {s1, null};
+        ResultSchema schema = new ResultSchema(new String[] {"s", "o"});
+        ResultRow row = new ResultRow(schema, values);
+        ResultRow other = new ResultRow(schema, values);
+
+        assertSame(s1, row.put("s", s2));
+        assertNull(row.put("x", s1));
+        assertSame(s2, row.get(0));
+        assertSame(s1, row.get("x"));
+        assertEquals(2, row.size());
+        // copy on write
+        assertSame(s1, values[0]);
+        assertSame(s1, other.get("s"));
+        assertEquals(1, other.size());
+
+        other.entrySet().removeIf(e -> e.getKey().equals("s"));
+        assertTrue(other.isEmpty());
+        assertSame(s1, values[0]);
+
+        // lazily parsed rows
+        try (StreamingResultSet s = new StreamingResultSet(new StringReader(TSV_RESPONSE),
+                ResultSetOptions.builder().lazyNodes(true).build())) {
+            Map<String, Node> lazyRow = s.next();
+            lazyRow.remove("s");
+            lazyRow.put("p", s2);
+            Map<String, Node> expected = new HashMap<>();
+            expected.put("p", s2);
+            expected.put("o", NodeFactoryExtra.parseNode("\"o1\"@en"));
+            assertEquals(expected, lazyRow);
+        }
+    }
+
+    @Test
+    public void testDuplicateVariables() {
+        Node s1 = NodeFactoryExtra.parseNode("<http://test.org/1>");
+        Node s2 = NodeFactoryExtra.parseNode("<http://test.org/2>");
+        ResultSchema schema = new ResultSchema(new String[] {"s", "o", "s"});
+        assertEquals(2, schema.indexOf("s"));
+
+        // the last column takes precedence
+        ResultRow row = new ResultRow(schema, new Node[] {s1, null, s2});
+        assertSame(s2, row.get("s"));
+        assertEquals(1, row.size());
+        assertEquals(Collections.singletonMap("s", s2), row);
+    }
+}
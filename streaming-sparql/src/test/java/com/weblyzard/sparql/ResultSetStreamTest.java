@@ -0,0 +1,85 @@
+package com.weblyzard.sparql;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.apache.jena.ext.com.google.common.collect.Lists;
+import org.apache.jena.graph.Node;
+import org.junit.Test;
+
+/**
+ * Tests the {@link java.util.stream.Stream} support of {@link StreamingResultSet}.
+ *
+ * @author Albert Weichselbraun
+ *
+ */
+public class ResultSetStreamTest {
+
+    private static final int ROWS = 1000;
+
+    @Test
+    public void testStreams() throws IOException {
+        List<Map<String, Node>> expected;
+        try (StreamingResultSet s = getResultSet(new StringReader(getTsv()))) {
+            expected = Lists.newArrayList(s);
+        }
+        try (Stream<Map<String, Node>> stream = getResultSet(new StringReader(getTsv())).stream()) {
+            assertEquals(expected, stream.collect(Collectors.toList()));
+        }
+        try (Stream<Map<String, Node>> stream = getResultSet(new StringReader(getTsv())).parallelStream()) {
+            assertEquals(expected, stream.collect(Collectors.toList()));
+        }
+        try (Stream<Map<String, Node>> stream = getResultSet(new StringReader(getTsv())).parallelStream(7)) {
+            assertEquals(ROWS * (ROWS - 1) / 2,
+                    stream.mapToInt(row -> Integer.parseInt(row.get("o").getLiteralLexicalForm())).sum());
+        }
+    }
+
+    @Test
+    public void testSplit() throws IOException {
+        try (StreamingResultSet s = getResultSet(new StringReader(getTsv()))) {
+            Spliterator<Map<String, Node>> spliterator = new ResultSetSpliterator(s, 300);
+            assertEquals(300, spliterator.trySplit().estimateSize());
+            assertEquals(300, spliterator.trySplit().estimateSize());
+            assertEquals(300, spliterator.trySplit().estimateSize());
+            assertEquals(100, spliterator.trySplit().estimateSize());
+            assertNull(spliterator.trySplit());
+        }
+    }
+
+    @Test
+    public void testClose() throws IOException {
+        AtomicBoolean closed = new AtomicBoolean();
+        StringReader in = new StringReader(getTsv()) {
+            @Override
+            public void close() {
+                closed.set(true);
+                super.close();
+            }
+        };
+        try (Stream<Map<String, Node>> stream = getResultSet(in).stream()) {
+            assertEquals(10, stream.limit(10).count());
+        }
+        assertTrue(closed.get());
+    }
+
+    private static StreamingResultSet getResultSet(StringReader in) throws IOException {
+        return new StreamingResultSet(in, ResultSetOptions.DEFAULT);
+    }
+
+    private static String getTsv() {
+        StringBuilder tsv = new StringBuilder("?s\t?o\n");
+        for (int i = 0; i < ROWS; i++) {
+            tsv.append("<http://test.org/").append(i).append(">\t").append(i).append('\n');
+        }
+        return tsv.toString();
+    }
+}
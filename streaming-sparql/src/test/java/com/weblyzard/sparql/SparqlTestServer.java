@@ -0,0 +1,197 @@
+package com.weblyzard.sparql;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.zip.GZIPOutputStream;
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import lombok.Getter;
+
+/**
+ * A minimal SPARQL endpoint used for testing the HTTP based components.
+ *
+ * @author Albert Weichselbraun
+ *
+ */
+public class SparqlTestServer implements Closeable {
+
+    private final HttpServer server;
+    private final Function<String, String> responder;
+    private final String contentType;
+    /** the queries received by the server. */
+    @Getter
+    private final List<String> queries = new CopyOnWriteArrayList<>();
+    /** the request headers received by the server. */
+    @Getter
+    private final List<Headers> requestHeaders = new CopyOnWriteArrayList<>();
+    /** the remote ports of the clients, i.e. one port per connection. */
+    @Getter
+    private final Set<Integer> clientPorts = ConcurrentHashMap.newKeySet();
+    // additional headers sent with every response
+    private final Map<String, String> responseHeaders = new ConcurrentHashMap<>();
+    // the number of subsequent responses which are truncated and their length
+    private final AtomicInteger truncatedResponses = new AtomicInteger();
+    private volatile int truncatedLength;
+    // the number of bytes sent before responses stall until the server is closed, if any
+    private volatile int stallLength = -1;
+    private final CountDownLatch closed = new CountDownLatch(1);
+
+    /**
+     * Starts a server that answers queries with the TSV returned by the given function.
+     *
+     * @param responder computes the TSV response for the given query or returns <code>null</code>
+     *        for a server error.
+     */
+    public SparqlTestServer(Function<String, String> responder) throws IOException {
+        this(responder, "text/tab-separated-values; charset=utf-8");
+    }
+
+    /**
+     * Starts a server that answers queries with the given content type.
+     *
+     * @param responder computes the response for the given query or returns <code>null</code> for
+     *        a server error.
+     * @param contentType the content type of the responses
+     */
+    public SparqlTestServer(Function<String, String> responder, String contentType) throws IOException {
+        this.responder = responder;
+        this.contentType = contentType;
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/sparql", this::handle);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+    }
+
+    /**
+     * Returns the URL of the SPARQL endpoint.
+     */
+    public String getUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/sparql";
+    }
+
+    /**
+     * Sends the given header with all subsequent responses. Requests whose If-None-Match header
+     * matches the ETag header are answered with <code>304 Not Modified</code>.
+     *
+     * @param name the header's name
+     * @param value the header's value
+     */
+    public void setResponseHeader(String name, String value) {
+        responseHeaders.put(name, value);
+    }
+
+    /**
+     * Cuts the (compressed) body of the next responses after the given number of bytes. Only
+     * compressed responses are recognized as truncated by the client.
+     *
+     * @param count the number of truncated responses
+     * @param length the number of bytes sent
+     */
+    public void truncateResponses(int count, int length) {
+        truncatedLength = length;
+        truncatedResponses.set(count);
+    }
+
+    /**
+     * Stops sending the (compressed) body of all subsequent responses after the given number of
+     * bytes until the server is closed.
+     *
+     * @param length the number of bytes sent
+     */
+    public void stallResponses(int length) {
+        stallLength = length;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        String query;
+        if ("POST".equals(exchange.getRequestMethod())) {
+            query = new String(readFully(exchange.getRequestBody()), StandardCharsets.UTF_8);
+        } else {
+            String parameter = exchange.getRequestURI().getRawQuery();
+            query = URLDecoder.decode(parameter.substring(parameter.indexOf('=') + 1), "UTF-8");
+        }
+        queries.add(query);
+        requestHeaders.add(exchange.getRequestHeaders());
+        clientPorts.add(exchange.getRemoteAddress().getPort());
+
+        responseHeaders.forEach(exchange.getResponseHeaders()::set);
+        String etag = responseHeaders.get("ETag");
+        if (etag != null && etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+            exchange.sendResponseHeaders(304, -1);
+            exchange.close();
+            return;
+        }
+        String tsv = responder.apply(query);
+        if (tsv == null) {
+            exchange.sendResponseHeaders(500, -1);
+            exchange.close();
+            return;
+        }
+        byte[] body = tsv.getBytes(StandardCharsets.UTF_8);
+        String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+        if (acceptEncoding != null && acceptEncoding.contains("gzip")) {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            try (GZIPOutputStream out = new GZIPOutputStream(compressed)) {
+                out.write(body);
+            }
+            body = compressed.toByteArray();
+            exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+        }
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        int length = truncatedResponses.getAndUpdate(count -> Math.max(0, count - 1)) > 0
+                ? Math.min(truncatedLength, body.length)
+                : body.length;
+        exchange.sendResponseHeaders(200, length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            int stalled = stallLength < 0 ? length : Math.min(stallLength, length);
+            out.write(body, 0, stalled);
+            if (stalled < length) {
+                out.flush();
+                awaitClose();
+                out.write(body, stalled, length - stalled);
+            }
+        }
+    }
+
+    private void awaitClose() throws IOException {
+        try {
+            closed.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buf = new byte[4096];
+        int read;
+        while ((read = in.read(buf)) != -1) {
+            out.write(buf, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    @Override
+    public void close() {
+        closed.countDown();
+        server.stop(0);
+    }
+}
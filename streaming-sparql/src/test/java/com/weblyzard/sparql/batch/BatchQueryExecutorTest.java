@@ -0,0 +1,161 @@
+package com.weblyzard.sparql.batch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import com.weblyzard.sparql.SparqlTestServer;
+import com.weblyzard.sparql.StreamingResultSet;
+import com.weblyzard.sparql.transport.HttpClientTransport;
+import com.weblyzard.sparql.transport.Transport;
+
+/**
+ * Tests the {@link BatchQueryExecutor}.
+ *
+ * @author Albert Weichselbraun
+ *
+ */
+public class BatchQueryExecutorTest {
+
+    private static final int QUERIES = 12;
+    private static final int MAX_QUERIES_PER_ENDPOINT = 3;
+
+    private final AtomicInteger activeRequests = new AtomicInteger();
+    private final AtomicInteger maxActiveRequests = new AtomicInteger();
+    private SparqlTestServer server;
+    private Transport transport;
+    private BatchQueryExecutor executor;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new SparqlTestServer(this::respond);
+        transport = HttpClientTransport.builder().maxConnectionsPerEndpoint(8).build();
+        executor = BatchQueryExecutor.builder().transport(transport).maxQueriesPerEndpoint(MAX_QUERIES_PER_ENDPOINT)
+                .bufferSize(4).build();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        transport.close();
+        server.close();
+    }
+
+    /**
+     * Returns as many rows as specified in the query.
+     */
+    private String respond(String query) {
+        int active = activeRequests.incrementAndGet();
+        maxActiveRequests.accumulateAndGet(active, Math::max);
+        try {
+            Thread.sleep(20);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        activeRequests.decrementAndGet();
+        if (query.equals("FAIL")) {
+            return null;
+        }
+        StringBuilder tsv = new StringBuilder("?s\n");
+        for (int i = 0; i < Integer.parseInt(query); i++) {
+            tsv.append("<http://test.org/").append(i).append(">\n");
+        }
+        return tsv.toString();
+    }
+
+    private List<BatchQuery> getQueries() {
+        List<BatchQuery> queries = new ArrayList<>();
+        for (int i = 0; i < QUERIES; i++) {
+            queries.add(new BatchQuery("q" + i, server.getUrl(), Integer.toString(i * 10)));
+        }
+        return queries;
+    }
+
+    @Test
+    public void testStream() {
+        try (Stream<TaggedRow> rows = executor.stream(getQueries())) {
+            Map<String, Long> counts =
+                    rows.collect(Collectors.groupingBy(TaggedRow::getQueryId, Collectors.counting()));
+            for (int i = 1; i < QUERIES; i++) {
+                assertEquals(i * 10, counts.get("q" + i).longValue());
+            }
+        }
+        assertTrue(maxActiveRequests.get() <= MAX_QUERIES_PER_ENDPOINT);
+    }
+
+    @Test
+    public void testResultSets() throws Exception {
+        Map<String, CompletableFuture<StreamingResultSet>> resultSets = executor.getResultSets(getQueries());
+        assertEquals(QUERIES, resultSets.size());
+        int i = 0;
+        for (CompletableFuture<StreamingResultSet> future : resultSets.values()) {
+            try (StreamingResultSet resultSet = future.get()) {
+                int rows = 0;
+                while (resultSet.hasNext()) {
+                    resultSet.next();
+                    rows++;
+                }
+                assertEquals(i++ * 10, rows);
+            }
+        }
+        assertTrue(maxActiveRequests.get() <= MAX_QUERIES_PER_ENDPOINT);
+    }
+
+    @Test
+    public void testFailures() throws Exception {
+        List<BatchQuery> queries = getQueries();
+        queries.add(new BatchQuery("failure", server.getUrl(), "FAIL"));
+        try (Stream<TaggedRow> rows = executor.stream(queries)) {
+            rows.count();
+            fail("Failing queries must be reported.");
+        } catch (UncheckedIOException e) {
+            assertTrue(e.getMessage().contains("500"));
+        }
+
+        try {
+            // unconsumed result sets occupy the endpoint, therefore, only the failing query is sent
+            executor.getResultSets(queries.subList(QUERIES, QUERIES + 1)).get("failure").get();
+            fail("Failing queries must be reported.");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+    }
+
+    @Test
+    public void testRejectedQueries() throws Exception {
+        // the executor only accepts the first query, the second one is queued and rejected later on
+        AtomicInteger accepted = new AtomicInteger();
+        Executor rejectingExecutor = task -> {
+            if (accepted.incrementAndGet() > 1) {
+                throw new RejectedExecutionException("Executor has been shut down.");
+            }
+            new Thread(task).start();
+        };
+        BatchQueryExecutor rejectingBatchExecutor = BatchQueryExecutor.builder().transport(transport)
+                .executor(rejectingExecutor).maxQueriesPerEndpoint(1).build();
+        Map<String, CompletableFuture<StreamingResultSet>> resultSets =
+                rejectingBatchExecutor.getResultSets(getQueries().subList(0, 2));
+        // closing the first result set releases the endpoint for the second query
+        resultSets.get("q0").get(10, TimeUnit.SECONDS).close();
+        try {
+            resultSets.get("q1").get(10, TimeUnit.SECONDS);
+            fail("Rejected queries must be reported.");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof RejectedExecutionException);
+        }
+    }
+}
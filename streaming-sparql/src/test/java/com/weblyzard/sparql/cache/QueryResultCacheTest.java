@@ -0,0 +1,180 @@
+package com.weblyzard.sparql.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+import org.apache.jena.graph.Node;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import com.weblyzard.sparql.ResultFormat;
+import com.weblyzard.sparql.ResultSetOptions;
+import com.weblyzard.sparql.SparqlTestServer;
+import com.weblyzard.sparql.StreamingResultSet;
+import com.weblyzard.sparql.tsv.TsvMode;
+
+/**
+ * Tests the {@link QueryResultCache} and the {@link RowEncoder}.
+ *
+ * @author Albert Weichselbraun
+ *
+ */
+public class QueryResultCacheTest {
+
+    private static final String TSV_RESPONSE = "?s\t?o\t?x\n"
+            + "<http://test.org/1>\t\"Grüße \\\"1\\\"\\t\"@de\t\n"
+            + "_:b0\t\"42\"^^<http://www.w3.org/2001/XMLSchema#integer>\t\"plain\"\n"
+            + "<http://test.org/3>\t\"multi\\nline\"\t<http://test.org/4>\n";
+    private static final String QUERY = "SELECT ?s ?o ?x WHERE { ?s ?o ?x }";
+    private static final ResultSetOptions OPTIONS = ResultSetOptions.builder().tsvMode(TsvMode.CHAR_BUFFER).build();
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static QueryResultCache.QueryResultCacheBuilder createCache(Path directory) {
+        return QueryResultCache.builder().options(OPTIONS).directory(directory);
+    }
+
+    private static List<Map<String, Node>> consume(StreamingResultSet resultSet) throws IOException {
+        List<Map<String, Node>> result = new ArrayList<>();
+        try (StreamingResultSet rs = resultSet) {
+            rs.forEachRemaining(result::add);
+        }
+        return result;
+    }
+
+    private static List<Map<String, Node>> parseTsv(String tsv) throws IOException {
+        return consume(new StreamingResultSet(new StringReader(tsv), OPTIONS));
+    }
+
+    @Test
+    public void testEncoding() throws IOException {
+        List<Map<String, Node>> expected = parseTsv(TSV_RESPONSE);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (StreamingResultSet resultSet = new StreamingResultSet(new StringReader(TSV_RESPONSE), OPTIONS);
+                RowEncoder encoder = new RowEncoder(out, ResultFormat.JSON, resultSet.getResultVars())) {
+            while (resultSet.hasNext()) {
+                encoder.write(resultSet.nextRow());
+            }
+            encoder.finish();
+            assertEquals(out.size(), encoder.getSize());
+        }
+
+        RowDecoder decoder = new RowDecoder(new ByteArrayInputStream(out.toByteArray()), null);
+        assertEquals(ResultFormat.JSON, decoder.getFormat());
+        assertEquals(3, decoder.getResultVars().length);
+        for (Map<String, Node> row : expected) {
+            assertEquals(row, decoder.getTuple());
+        }
+        assertNull(decoder.getTuple());
+
+        // truncated input
+        decoder = new RowDecoder(new ByteArrayInputStream(out.toByteArray(), 0, out.size() - 2), null);
+        assertEquals(expected.get(0), decoder.getTuple());
+        assertEquals(expected.get(1), decoder.getTuple());
+        assertNull(decoder.getTuple());
+    }
+
+    @Test
+    public void testCache() throws IOException {
+        List<Map<String, Node>> expected = parseTsv(TSV_RESPONSE);
+        try (SparqlTestServer server = new SparqlTestServer(query -> TSV_RESPONSE)) {
+            QueryResultCache cache = createCache(folder.getRoot().toPath()).build();
+            assertEquals(expected, consume(cache.getResultSet(server.getUrl(), QUERY)));
+            assertTrue(cache.getSize() > 0);
+
+            // normalized queries are answered from the cache
+            StreamingResultSet resultSet = cache.getResultSet(server.getUrl(), "SELECT ?s ?o ?x\nWHERE {?s ?o ?x}");
+            assertEquals(ResultFormat.TSV, resultSet.getFormat());
+            assertEquals(expected, consume(resultSet));
+            assertEquals(1, server.getQueries().size());
+
+            // other endpoints are not
+            consume(cache.getResultSet(server.getUrl() + "?x", QUERY));
+            assertEquals(2, server.getQueries().size());
+
+            cache.invalidate(server.getUrl(), QUERY);
+            assertEquals(expected, consume(cache.getResultSet(server.getUrl(), QUERY)));
+            assertEquals(3, server.getQueries().size());
+
+            // a new instance reuses the cached results
+            QueryResultCache other = createCache(folder.getRoot().toPath()).build();
+            assertEquals(cache.getSize(), other.getSize());
+            assertEquals(expected, consume(other.getResultSet(server.getUrl(), QUERY)));
+            assertEquals(3, server.getQueries().size());
+
+            cache.clear();
+            assertEquals(0, cache.getSize());
+        }
+    }
+
+    @Test
+    public void testPartialResult() throws IOException {
+        try (SparqlTestServer server = new SparqlTestServer(query -> TSV_RESPONSE)) {
+            QueryResultCache cache = createCache(folder.getRoot().toPath()).build();
+            try (StreamingResultSet resultSet = cache.getResultSet(server.getUrl(), QUERY)) {
+                resultSet.next();
+            }
+            assertEquals(0, cache.getSize());
+            consume(cache.getResultSet(server.getUrl(), QUERY));
+            assertEquals(2, server.getQueries().size());
+            try (Stream<Path> files = Files.list(folder.getRoot().toPath())) {
+                assertEquals(1, files.count());
+            }
+        }
+    }
+
+    @Test
+    public void testExpiration() throws IOException, InterruptedException {
+        try (SparqlTestServer server = new SparqlTestServer(query -> TSV_RESPONSE)) {
+            QueryResultCache cache = createCache(folder.newFolder().toPath()).ttl(Duration.ofMillis(50)).build();
+            consume(cache.getResultSet(server.getUrl(), QUERY));
+            consume(cache.getResultSet(server.getUrl(), QUERY));
+            assertEquals(1, server.getQueries().size());
+            Thread.sleep(100);
+            consume(cache.getResultSet(server.getUrl(), QUERY));
+            assertEquals(2, server.getQueries().size());
+        }
+    }
+
+    @Test
+    public void testEviction() throws IOException {
+        try (SparqlTestServer server = new SparqlTestServer(query -> TSV_RESPONSE)) {
+            QueryResultCache cache = createCache(folder.newFolder().toPath()).build();
+            consume(cache.getResultSet(server.getUrl(), QUERY));
+            long resultSize = cache.getSize();
+
+            cache = createCache(folder.newFolder().toPath()).maxSize(2 * resultSize + 1).build();
+            for (int i = 0; i < 3; i++) {
+                consume(cache.getResultSet(server.getUrl(), QUERY + " LIMIT " + (10 + i)));
+            }
+            assertEquals(4, server.getQueries().size());
+            assertEquals(2 * resultSize, cache.getSize());
+            // the least recently used result has been evicted
+            consume(cache.getResultSet(server.getUrl(), QUERY + " LIMIT 12"));
+            consume(cache.getResultSet(server.getUrl(), QUERY + " LIMIT 11"));
+            assertEquals(4, server.getQueries().size());
+            consume(cache.getResultSet(server.getUrl(), QUERY + " LIMIT 10"));
+            assertEquals(5, server.getQueries().size());
+
+            // results exceeding the maximum size are not cached
+            cache = createCache(folder.newFolder().toPath()).maxSize(resultSize / 2).build();
+            consume(cache.getResultSet(server.getUrl(), QUERY));
+            assertEquals(0, cache.getSize());
+            assertFalse(consume(cache.getResultSet(server.getUrl(), QUERY)).isEmpty());
+            assertEquals(7, server.getQueries().size());
+        }
+    }
+}
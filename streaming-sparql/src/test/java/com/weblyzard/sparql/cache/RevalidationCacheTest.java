@@ -0,0 +1,171 @@
+package com.weblyzard.sparql.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import org.apache.jena.graph.Node;
+import org.junit.Test;
+import com.weblyzard.sparql.FormatNegotiator;
+import com.weblyzard.sparql.ResultFormat;
+import com.weblyzard.sparql.ResultSetOptions;
+import com.weblyzard.sparql.SparqlTestServer;
+import com.weblyzard.sparql.StreamingQueryExecutor;
+import com.weblyzard.sparql.StreamingResultSet;
+import com.weblyzard.sparql.tsv.TsvMode;
+
+/**
+ * Tests the conditional revalidation of repeated queries by the {@link RevalidationCache}.
+ *
+ * @author Albert Weichselbraun
+ *
+ */
+public class RevalidationCacheTest {
+
+    private static final String TSV_RESPONSE = "?s\t?o\n" + "<http://test.org/1>\t\"Grüße\"@de\n"
+            + "_:b0\t\"42\"^^<http://www.w3.org/2001/XMLSchema#integer>\n" + "<http://test.org/3>\t\n";
+    private static final String QUERY = "SELECT ?s ?o WHERE { ?s ?p ?o }";
+
+    private static ResultSetOptions createOptions(RevalidationCache cache) {
+        return ResultSetOptions.builder().tsvMode(TsvMode.CHAR_BUFFER).revalidationCache(cache).build();
+    }
+
+    private static List<Map<String, Node>> consume(StreamingResultSet resultSet) throws IOException {
+        List<Map<String, Node>> result = new ArrayList<>();
+        try (StreamingResultSet rs = resultSet) {
+            rs.forEachRemaining(result::add);
+        }
+        return result;
+    }
+
+    private static List<Map<String, Node>> query(SparqlTestServer server, ResultSetOptions options)
+            throws IOException {
+        return consume(StreamingQueryExecutor.getResultSet(server.getUrl(), QUERY, -1, options));
+    }
+
+    @Test
+    public void testRevalidation() throws IOException {
+        List<Map<String, Node>> expected =
+                consume(new StreamingResultSet(new StringReader(TSV_RESPONSE), createOptions(null)));
+        try (SparqlTestServer server = new SparqlTestServer(query -> TSV_RESPONSE)) {
+            server.setResponseHeader("ETag", "\"v1\"");
+            server.setResponseHeader("Last-Modified", "Wed, 21 Oct 2015 07:28:00 GMT");
+            RevalidationCache cache = RevalidationCache.builder().build();
+            ResultSetOptions options = createOptions(cache);
+
+            List<Map<String, Node>> result = query(server, options);
+            assertEquals(expected, result);
+            assertNull(server.getRequestHeaders().get(0).getFirst("If-None-Match"));
+            assertEquals(1, cache.size());
+            // modifications of the returned rows do not affect the cache
+            result.forEach(Map::clear);
+
+            // the server confirms the cached result
+            StreamingResultSet resultSet = StreamingQueryExecutor.getResultSet(server.getUrl(), QUERY, -1, options);
+            assertEquals(ResultFormat.TSV, resultSet.getFormat());
+            result = consume(resultSet);
+            assertEquals(expected, result);
+            result.forEach(Map::clear);
+            assertEquals("\"v1\"", server.getRequestHeaders().get(1).getFirst("If-None-Match"));
+            assertEquals("Wed, 21 Oct 2015 07:28:00 GMT",
+                    server.getRequestHeaders().get(1).getFirst("If-Modified-Since"));
+
+            // a modified result is retrieved and cached again
+            server.setResponseHeader("ETag", "\"v2\"");
+            assertEquals(expected, query(server, options));
+            assertEquals(expected, query(server, options));
+            assertEquals("\"v2\"", server.getRequestHeaders().get(3).getFirst("If-None-Match"));
+            assertEquals(4, server.getQueries().size());
+
+            cache.clear();
+            assertEquals(0, cache.size());
+            query(server, options);
+            assertNull(server.getRequestHeaders().get(4).getFirst("If-None-Match"));
+        }
+    }
+
+    @Test
+    public void testUncachedResults() throws IOException {
+        try (SparqlTestServer server = new SparqlTestServer(query -> TSV_RESPONSE)) {
+            RevalidationCache cache = RevalidationCache.builder().build();
+            ResultSetOptions options = createOptions(cache);
+
+            // responses without validators
+            query(server, options);
+            assertEquals(0, cache.size());
+
+            // partially consumed results
+            server.setResponseHeader("ETag", "\"v1\"");
+            try (StreamingResultSet resultSet =
+                    StreamingQueryExecutor.getResultSet(server.getUrl(), QUERY, -1, options)) {
+                resultSet.next();
+            }
+            assertEquals(0, cache.size());
+
+            // results exceeding the maximum number of rows
+            options = createOptions(RevalidationCache.builder().maxRows(2).build());
+            query(server, options);
+            assertEquals(0, options.getRevalidationCache().size());
+            assertEquals(3, query(server, options).size());
+            assertNull(server.getRequestHeaders().get(3).getFirst("If-None-Match"));
+        }
+    }
+
+    @Test
+    public void testEviction() throws IOException {
+        try (SparqlTestServer server = new SparqlTestServer(query -> TSV_RESPONSE)) {
+            server.setResponseHeader("ETag", "\"v1\"");
+            RevalidationCache cache = RevalidationCache.builder().maxEntries(2).build();
+            ResultSetOptions options = createOptions(cache);
+            for (int i = 0; i < 3; i++) {
+                consume(StreamingQueryExecutor.getResultSet(server.getUrl(), QUERY + " LIMIT " + i, -1, options));
+            }
+            assertEquals(2, cache.size());
+            assertNull(cache.lookup(server.getUrl(), QUERY + " LIMIT 0", -1, options));
+        }
+    }
+
+    @Test
+    public void testOptions() throws IOException {
+        try (SparqlTestServer server = new SparqlTestServer(query -> TSV_RESPONSE)) {
+            server.setResponseHeader("ETag", "\"v1\"");
+            RevalidationCache cache = RevalidationCache.builder().build();
+            ResultSetOptions options = createOptions(cache);
+            query(server, options);
+            assertNotNull(cache.lookup(server.getUrl(), QUERY, -1, options));
+            assertNotNull(cache.lookup(server.getUrl(), QUERY, 0, options));
+
+            // options which affect the result are part of the key
+            assertNull(cache.lookup(server.getUrl(), QUERY, 1000, options));
+            for (ResultSetOptions.ResultSetOptionsBuilder builder : Arrays.asList(
+                    ResultSetOptions.builder().format(ResultFormat.JSON),
+                    ResultSetOptions.builder().negotiator(FormatNegotiator.builder().build()),
+                    ResultSetOptions.builder().projection(Collections.singleton("s")),
+                    ResultSetOptions.builder().parallelism(2).parallelUnordered(true))) {
+                assertNull(cache.lookup(server.getUrl(), QUERY, -1, builder.revalidationCache(cache).build()));
+            }
+
+            // all TSV modes yield the same rows and, therefore, share the cached result
+            for (TsvMode tsvMode : TsvMode.values()) {
+                assertNotNull(cache.lookup(server.getUrl(), QUERY, -1,
+                        ResultSetOptions.builder().tsvMode(tsvMode).revalidationCache(cache).build()));
+            }
+
+            // the projection is cached independently of the order of its variables
+            options = ResultSetOptions.builder().tsvMode(TsvMode.CHAR_BUFFER)
+                    .projection(new LinkedHashSet<>(Arrays.asList("s", "o"))).revalidationCache(cache).build();
+            assertEquals(2, query(server, options).get(0).size());
+            options = ResultSetOptions.builder().tsvMode(TsvMode.CHAR_BUFFER)
+                    .projection(new LinkedHashSet<>(Arrays.asList("o", "s"))).revalidationCache(cache).build();
+            assertNotNull(cache.lookup(server.getUrl(), QUERY, -1, options));
+            assertEquals(2, cache.size());
+        }
+    }
+}
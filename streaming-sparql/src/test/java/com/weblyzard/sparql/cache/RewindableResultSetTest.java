@@ -0,0 +1,145 @@
+package com.weblyzard.sparql.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+import org.apache.jena.graph.Node;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import com.weblyzard.sparql.ResultSetOptions;
+import com.weblyzard.sparql.StreamingResultSet;
+import com.weblyzard.sparql.tsv.TsvMode;
+
+/**
+ * Tests the {@link RewindableResultSet}.
+ *
+ * @author Albert Weichselbraun
+ *
+ */
+public class RewindableResultSetTest {
+
+    private static final ResultSetOptions OPTIONS = ResultSetOptions.builder().tsvMode(TsvMode.CHAR_BUFFER).build();
+    private static final int ROWS = 500;
+    private static final String TSV_RESPONSE = createResponse();
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static String createResponse() {
+        StringBuilder tsv = new StringBuilder("?s\t?o\t?x\n");
+        for (int i = 0; i < ROWS; i++) {
+            tsv.append("<http://test.org/").append(i).append(">\t");
+            switch (i % 3) {
+                case 0:
+                    tsv.append("\"Grüße ").append(i).append("\"@de\t\n");
+                    break;
+                case 1:
+                    tsv.append('"').append(i).append("\"^^<http://www.w3.org/2001/XMLSchema#integer>\t_:b")
+                            .append(i).append('\n');
+                    break;
+                default:
+                    tsv.append("\"multi\\nline\"\t<http://test.org/x>\n");
+            }
+        }
+        return tsv.toString();
+    }
+
+    private static StreamingResultSet createResultSet() throws IOException {
+        return new StreamingResultSet(new StringReader(TSV_RESPONSE), OPTIONS);
+    }
+
+    private static List<Map<String, Node>> consume(RewindableResultSet resultSet) {
+        List<Map<String, Node>> result = new ArrayList<>();
+        resultSet.forEachRemaining(result::add);
+        return result;
+    }
+
+    private long countSpillFiles() throws IOException {
+        try (Stream<Path> files = Files.list(folder.getRoot().toPath())) {
+            return files.count();
+        }
+    }
+
+    @Test
+    public void testRewind() throws IOException {
+        List<Map<String, Node>> expected = new ArrayList<>();
+        try (StreamingResultSet resultSet = createResultSet()) {
+            resultSet.forEachRemaining(expected::add);
+        }
+        assertEquals(ROWS, expected.size());
+
+        // small windows require remapping while reading the spill files
+        try (RewindableResultSet resultSet = new RewindableResultSet(createResultSet(), folder.getRoot().toPath(),
+                100)) {
+            assertEquals(expected, consume(resultSet));
+            assertEquals(ROWS, resultSet.getRowNumber());
+            assertEquals(ROWS, resultSet.getSpilledRows());
+
+            resultSet.rewind();
+            assertEquals(0, resultSet.getRowNumber());
+            assertEquals(expected, consume(resultSet));
+
+            // random access
+            for (int i = ROWS - 1; i >= 0; i -= 7) {
+                assertEquals(expected.get(i), resultSet.getRow(i));
+            }
+            resultSet.seek(ROWS - 2);
+            assertEquals(expected.get(ROWS - 2), resultSet.next());
+            assertEquals(expected.get(ROWS - 1), resultSet.next());
+            assertFalse(resultSet.hasNext());
+        }
+        assertEquals(0, countSpillFiles());
+    }
+
+    @Test
+    public void testRandomAccess() throws IOException {
+        List<Map<String, Node>> expected = new ArrayList<>();
+        try (StreamingResultSet resultSet = createResultSet()) {
+            resultSet.forEachRemaining(expected::add);
+        }
+
+        try (RewindableResultSet resultSet = new RewindableResultSet(createResultSet(), folder.getRoot().toPath())) {
+            // rows are read ahead on demand
+            assertEquals(expected.get(10), resultSet.getRow(10));
+            assertEquals(11, resultSet.getSpilledRows());
+            assertEquals(0, resultSet.getRowNumber());
+            assertEquals(expected.subList(0, 20), consume(resultSet).subList(0, 20));
+            assertTrue(resultSet.getRow(ROWS - 1).containsKey("s"));
+
+            try {
+                resultSet.getRow(ROWS);
+                fail("Expected IndexOutOfBoundsException");
+            } catch (IndexOutOfBoundsException e) {
+                // expected
+            }
+            try {
+                resultSet.seek(ROWS + 1);
+                fail("Expected IndexOutOfBoundsException");
+            } catch (IndexOutOfBoundsException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void testEmptyResult() throws IOException {
+        try (RewindableResultSet resultSet = new RewindableResultSet(
+                new StreamingResultSet(new StringReader("?s\t?o\n"), OPTIONS), folder.getRoot().toPath())) {
+            assertFalse(resultSet.hasNext());
+            assertEquals(2, resultSet.getResultVars().length);
+            resultSet.rewind();
+            assertFalse(resultSet.hasNext());
+        }
+        assertEquals(0, countSpillFiles());
+    }
+}
@@ -0,0 +1,23 @@
+package com.weblyzard.sparql.encoding;
+
+import java.io.InputStream;
+import java.util.Base64;
+
+/**
+ * A {@link ContentDecoder} registered with the {@link java.util.ServiceLoader} for testing.
+ *
+ * @author Albert Weichselbraun
+ *
+ */
+public class Base64Decoder implements ContentDecoder {
+
+    @Override
+    public String getEncoding() {
+        return "x-base64";
+    }
+
+    @Override
+    public InputStream decode(InputStream in) {
+        return Base64.getMimeDecoder().wrap(in);
+    }
+}
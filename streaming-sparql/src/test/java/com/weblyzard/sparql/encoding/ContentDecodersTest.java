@@ -0,0 +1,134 @@
+package com.weblyzard.sparql.encoding;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+import org.apache.jena.graph.NodeFactory;
+import org.junit.Test;
+import com.weblyzard.sparql.ResultSetOptions;
+import com.weblyzard.sparql.StreamingResultSet;
+import com.weblyzard.sparql.transport.SparqlResponse;
+
+/**
+ * Tests the {@link ContentDecoders}.
+ *
+ * @author Albert Weichselbraun
+ *
+ */
+public class ContentDecodersTest {
+
+    private static final String TSV_RESPONSE = "?s\n<http://test.org/1>\n<http://test.org/2>\n";
+
+    private static byte[] gzip(byte[] content) throws IOException {
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        try (OutputStream out = new GZIPOutputStream(result)) {
+            out.write(content);
+        }
+        return result.toByteArray();
+    }
+
+    private static byte[] deflate(byte[] content, boolean nowrap) throws IOException {
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        try (OutputStream out = new DeflaterOutputStream(result, new Deflater(Deflater.DEFAULT_COMPRESSION, nowrap))) {
+            out.write(content);
+        }
+        return result.toByteArray();
+    }
+
+    private static String decode(String contentEncoding, byte[] body) throws IOException {
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        try (InputStream in = ContentDecoders.getDefault().decode(contentEncoding, new ByteArrayInputStream(body))) {
+            byte[] buf = new byte[1024];
+            int read;
+            while ((read = in.read(buf)) != -1) {
+                result.write(buf, 0, read);
+            }
+        }
+        return new String(result.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testDecoders() throws IOException {
+        byte[] content = TSV_RESPONSE.getBytes(StandardCharsets.UTF_8);
+        assertEquals(TSV_RESPONSE, decode(null, content));
+        assertEquals(TSV_RESPONSE, decode("identity", content));
+        assertEquals(TSV_RESPONSE, decode("GZIP", gzip(content)));
+        assertEquals(TSV_RESPONSE, decode("deflate", deflate(content, false)));
+        // some servers send deflate data without the zlib wrapper
+        assertEquals(TSV_RESPONSE, decode("deflate", deflate(content, true)));
+        // encodings are removed in the reverse order of their application
+        assertEquals(TSV_RESPONSE, decode("deflate, gzip", gzip(deflate(content, false))));
+    }
+
+    @Test
+    public void testUnsupportedEncoding() throws IOException {
+        try {
+            decode("compress", new byte[0]);
+            fail("Unsupported encodings must not be passed to the parser.");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("compress"));
+        }
+    }
+
+    @Test
+    public void testRegisteredDecoder() throws IOException {
+        assertEquals("x-base64, gzip, deflate", ContentDecoders.getDefault().getAcceptEncoding());
+        assertEquals(TSV_RESPONSE,
+                decode("x-base64", Base64.getEncoder().encode(TSV_RESPONSE.getBytes(StandardCharsets.UTF_8))));
+
+        ContentDecoders gzipOnly = new ContentDecoders(Arrays.asList(new GzipDecoder(), new GzipDecoder(1024)));
+        assertEquals("gzip", gzipOnly.getAcceptEncoding());
+        assertFalse(gzipOnly.get("deflate").isPresent());
+        assertEquals("identity", new ContentDecoders(Collections.emptyList()).getAcceptEncoding());
+    }
+
+    @Test
+    public void testDeflateResponse() throws IOException {
+        Map<String, String> headers = new HashMap<>();
+        headers.put("Content-Type", "text/tab-separated-values");
+        headers.put("Content-Encoding", "deflate");
+        byte[] body = deflate(TSV_RESPONSE.getBytes(StandardCharsets.UTF_8), false);
+        SparqlResponse response = new SparqlResponse() {
+
+            @Override
+            public int getStatusCode() {
+                return 200;
+            }
+
+            @Override
+            public String getHeader(String name) {
+                return headers.get(name);
+            }
+
+            @Override
+            public InputStream getBody() {
+                return new ByteArrayInputStream(body);
+            }
+
+            @Override
+            public void close() {
+                // nothing to release
+            }
+        };
+        try (StreamingResultSet resultSet = new StreamingResultSet(response, ResultSetOptions.DEFAULT)) {
+            assertEquals(NodeFactory.createURI("http://test.org/1"), resultSet.next().get("s"));
+            assertEquals(NodeFactory.createURI("http://test.org/2"), resultSet.next().get("s"));
+            assertFalse(resultSet.hasNext());
+        }
+    }
+}
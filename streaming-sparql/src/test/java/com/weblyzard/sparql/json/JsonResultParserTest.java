@@ -0,0 +1,105 @@
+package com.weblyzard.sparql.json;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import org.apache.jena.datatypes.xsd.XSDDatatype;
+import org.apache.jena.graph.NodeFactory;
+import org.junit.Test;
+import com.weblyzard.sparql.ResultFormat;
+import com.weblyzard.sparql.ResultRow;
+import com.weblyzard.sparql.ResultSetOptions;
+import com.weblyzard.sparql.SparqlTestServer;
+import com.weblyzard.sparql.StreamingQueryExecutor;
+import com.weblyzard.sparql.StreamingResultSet;
+import com.weblyzard.sparql.transport.HttpClientTransport;
+import com.weblyzard.sparql.transport.Transport;
+
+/**
+ * Tests the {@link JsonResultParser}.
+ *
+ * @author Albert Weichselbraun
+ *
+ */
+public class JsonResultParserTest {
+
+    private static final String JSON_RESPONSE = "{ \"head\": { \"link\": [], \"vars\": [\"s\", \"o\", \"x\"] },\n"
+            + "  \"results\": { \"distinct\": false, \"bindings\": [\n"
+            + "    { \"s\": { \"type\": \"uri\", \"value\": \"http://test.org/1\" },\n"
+            + "      \"o\": { \"xml:lang\": \"de\", \"type\": \"literal\","
+            + " \"value\": \"Gr\\u00fc\\u00dfe \\\"1\\\"\" } },\n"
+            + "    { \"s\": { \"type\": \"bnode\", \"value\": \"b0\" },\n"
+            + "      \"o\": { \"type\": \"typed-literal\", \"datatype\": \"http://www.w3.org/2001/XMLSchema#integer\","
+            + " \"value\": \"42\" },\n"
+            + "      \"x\": { \"type\": \"literal\", \"value\": \"line1\\nline2\" } }\n"
+            + "  ] } }";
+
+    private static JsonResultParser parse(String json, ResultSetOptions options) throws IOException {
+        InputStream in = new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+        return new JsonResultParser(in, options);
+    }
+
+    @Test
+    public void testParser() throws IOException {
+        JsonResultParser parser = parse(JSON_RESPONSE, ResultSetOptions.DEFAULT);
+        assertArrayEquals(new String[] {"s", "o", "x"}, parser.getResultVars());
+
+        ResultRow row = parser.getTuple();
+        assertEquals(NodeFactory.createURI("http://test.org/1"), row.get("s"));
+        assertEquals(NodeFactory.createLiteral("Grüße \"1\"", "de"), row.get("o"));
+        assertNull(row.get("x"));
+        assertEquals(2, row.size());
+
+        row = parser.getTuple();
+        assertTrue(row.get("s").isBlank());
+        assertEquals("b0", row.get("s").getBlankNodeLabel());
+        assertEquals(NodeFactory.createLiteral("42", XSDDatatype.XSDinteger), row.get("o"));
+        assertEquals(NodeFactory.createLiteral("line1\nline2"), row.get("x"));
+        assertNull(parser.getTuple());
+        assertNull(parser.getTuple());
+    }
+
+    @Test
+    public void testProjection() throws IOException {
+        JsonResultParser parser = parse(JSON_RESPONSE,
+                ResultSetOptions.builder().projection(Collections.singleton("o")).build());
+        assertEquals(1, parser.getTuple().size());
+        ResultRow row = parser.getTuple();
+        assertNull(row.get("s"));
+        assertEquals(NodeFactory.createLiteral("42", XSDDatatype.XSDinteger), row.get("o"));
+        assertNull(parser.getTuple());
+    }
+
+    @Test
+    public void testAskResult() throws IOException {
+        JsonResultParser parser = parse("{ \"head\": {}, \"boolean\": true }", ResultSetOptions.DEFAULT);
+        assertEquals(0, parser.getResultVars().length);
+        assertNull(parser.getTuple());
+    }
+
+    @Test(expected = IOException.class)
+    public void testMissingHeader() throws IOException {
+        parse("{ \"results\": { \"bindings\": [] }, \"head\": { \"vars\": [\"s\"] } }", ResultSetOptions.DEFAULT);
+    }
+
+    @Test
+    public void testQuery() throws IOException {
+        try (SparqlTestServer server = new SparqlTestServer(query -> JSON_RESPONSE, "application/sparql-results+json");
+                Transport transport = HttpClientTransport.builder().build();
+                StreamingResultSet resultSet = StreamingQueryExecutor.getResultSet(transport, server.getUrl(),
+                        "SELECT ?s ?o ?x WHERE { ?s ?p ?o }", 1000,
+                        ResultSetOptions.builder().format(ResultFormat.JSON).build())) {
+            assertEquals(ResultFormat.JSON.getContentType(), server.getRequestHeaders().get(0).getFirst("Accept"));
+            assertEquals(3, resultSet.getResultVars().length);
+            assertEquals(NodeFactory.createURI("http://test.org/1"), resultSet.next().get("s"));
+            assertEquals(3, resultSet.next().size());
+            assertTrue(!resultSet.hasNext());
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.weblyzard.sparql.pagination;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import org.apache.jena.query.Query;
+import org.apache.jena.query.QueryFactory;
+import org.apache.jena.sparql.util.NodeFactoryExtra;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import com.weblyzard.sparql.SparqlTestServer;
+
+/**
+ * Tests the {@link PaginatedQueryExecutor}.
+ *
+ * @author Albert Weichselbraun
+ *
+ */
+public class PaginatedQueryExecutorTest {
+
+    private static final int ROWS = 1050;
+    private static final int LARGE_ROWS = 100000;
+    private static final String QUERY = "SELECT ?s WHERE { ?s ?p ?o } ORDER BY ?s";
+
+    private SparqlTestServer server;
+    private PaginatedQueryExecutor executor;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new SparqlTestServer(PaginatedQueryExecutorTest::evaluate);
+        executor = PaginatedQueryExecutor.builder().pageSize(100).prefetchPages(3).build();
+    }
+
+    @After
+    public void tearDown() {
+        server.close();
+    }
+
+    /**
+     * Returns the requested slice of ROWS (or LARGE_ROWS) rows.
+     */
+    private static String evaluate(String queryString) {
+        Query query = QueryFactory.create(queryString);
+        String pattern = query.getQueryPattern().toString();
+        if (pattern.contains("fail") && query.getOffset() > 300) {
+            return null;
+        }
+        int rows = pattern.contains("large") ? LARGE_ROWS : ROWS;
+        long start = Math.min(query.getOffset(), rows);
+        long end = Math.min(start + query.getLimit(), rows);
+        StringBuilder tsv = new StringBuilder("?s\n");
+        for (long i = start; i < end; i++) {
+            tsv.append("<http://test.org/").append(i).append(">\n");
+        }
+        return tsv.toString();
+    }
+
+    @Test
+    public void testPagination() {
+        try (PaginatedResultSet resultSet = executor.getResultSet(server.getUrl(), QUERY)) {
+            for (int i = 0; i < ROWS; i++) {
+                assertTrue(resultSet.hasNext());
+                assertEquals(NodeFactoryExtra.parseNode("<http://test.org/" + i + ">"), resultSet.next().get("s"));
+            }
+            assertFalse(resultSet.hasNext());
+            assertEquals(11, resultSet.getPageCount());
+        }
+        // all pages have been rewritten with the page size
+        assertTrue(server.getQueries().stream().allMatch(query -> QueryFactory.create(query).getLimit() == 100));
+    }
+
+    @Test
+    public void testLimitAndOffset() {
+        try (PaginatedResultSet resultSet = executor.getResultSet(server.getUrl(), QUERY + " LIMIT 250 OFFSET 10")) {
+            int count = 0;
+            while (resultSet.hasNext()) {
+                assertEquals(NodeFactoryExtra.parseNode("<http://test.org/" + (count + 10) + ">"),
+                        resultSet.nextRow().get(0));
+                count++;
+            }
+            assertEquals(250, count);
+            assertEquals(3, resultSet.getPageCount());
+        }
+        assertEquals(3, server.getQueries().size());
+    }
+
+    @Test
+    public void testFailure() {
+        try (PaginatedResultSet resultSet =
+                executor.getResultSet(server.getUrl(), "SELECT ?s WHERE { ?s ?p \"fail\" } ORDER BY ?s")) {
+            while (resultSet.hasNext()) {
+                resultSet.next();
+            }
+            fail("Failing pages must be reported.");
+        } catch (UncheckedIOException e) {
+            assertTrue(e.getMessage().contains("500"));
+        }
+    }
+
+    @Test
+    public void testResultVars() {
+        // the variables are available before the first row and for empty results
+        for (String query : new String[] {QUERY, QUERY + " OFFSET 5000", QUERY + " LIMIT 0"}) {
+            try (PaginatedResultSet resultSet = executor.getResultSet(server.getUrl(), query)) {
+                assertArrayEquals(new String[] {"s"}, resultSet.getResultVars());
+                assertEquals(0, resultSet.getSchema().indexOf("s"));
+                assertEquals(query.equals(QUERY), resultSet.hasNext());
+            }
+        }
+    }
+
+    @Test
+    public void testCloseAbortsPages() throws InterruptedException {
+        server.stallResponses(2000);
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(0, 4, 1, TimeUnit.SECONDS, new SynchronousQueue<>());
+        PaginatedQueryExecutor largeExecutor =
+                PaginatedQueryExecutor.builder().executor(pool).pageSize(LARGE_ROWS).prefetchPages(1).build();
+        try {
+            PaginatedResultSet resultSet =
+                    largeExecutor.getResultSet(server.getUrl(), "SELECT ?s WHERE { ?s ?p \"large\" } ORDER BY ?s");
+            // the first page stalls, whereas the empty second page is completed
+            long deadline = System.currentTimeMillis() + 5000;
+            while (server.getQueries().size() < 2 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            Thread.sleep(200);
+            assertEquals(1, pool.getActiveCount());
+
+            resultSet.close();
+            deadline = System.currentTimeMillis() + 1000;
+            while (pool.getActiveCount() > 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(0, pool.getActiveCount());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testAskQuery() {
+        executor.getResultSet(server.getUrl(), "ASK { ?s ?p ?o }");
+    }
+}
@@ -0,0 +1,137 @@
+package com.weblyzard.sparql.pagination;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import org.apache.jena.query.Query;
+import org.apache.jena.query.QueryFactory;
+import org.apache.jena.sparql.util.NodeFactoryExtra;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import com.weblyzard.sparql.SparqlTestServer;
+import com.weblyzard.sparql.StreamingQueryExecutor;
+import com.weblyzard.sparql.StreamingResultSet;
+
+/**
+ * Tests the {@link ResumableQueryExecutor}.
+ *
+ * @author Albert Weichselbraun
+ *
+ */
+public class ResumableQueryExecutorTest {
+
+    private static final int ROWS = 1000;
+    private static final String QUERY = "SELECT ?s WHERE { ?s ?p ?o } ORDER BY ?s";
+    private static final String VENDOR_QUERY = "DEFINE input:inference 'test' " + QUERY;
+
+    private SparqlTestServer server;
+    private ResumableQueryExecutor executor;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new SparqlTestServer(ResumableQueryExecutorTest::evaluate);
+        executor = ResumableQueryExecutor.builder().backoff(Duration.ofMillis(1)).build();
+    }
+
+    @After
+    public void tearDown() {
+        server.close();
+    }
+
+    /**
+     * Returns the requested slice of ROWS rows.
+     */
+    private static String evaluate(String queryString) {
+        long start = 0;
+        long end = ROWS;
+        if (!queryString.startsWith("DEFINE")) {
+            Query query = QueryFactory.create(queryString);
+            start = query.hasOffset() ? Math.min(query.getOffset(), ROWS) : 0;
+            end = query.hasLimit() ? Math.min(start + query.getLimit(), ROWS) : ROWS;
+        }
+        StringBuilder tsv = new StringBuilder("?s\n");
+        for (long i = start; i < end; i++) {
+            tsv.append("<http://test.org/").append(i).append(">\n");
+        }
+        return tsv.toString();
+    }
+
+    private static void assertRows(ResumableResultSet resultSet, int start, int end) {
+        for (int i = start; i < end; i++) {
+            assertTrue(resultSet.hasNext());
+            assertEquals(NodeFactoryExtra.parseNode("<http://test.org/" + i + ">"), resultSet.next().get("s"));
+        }
+        assertFalse(resultSet.hasNext());
+    }
+
+    @Test
+    public void testTruncationDetection() throws IOException {
+        try (StreamingResultSet resultSet = StreamingQueryExecutor.getResultSet(server.getUrl(), QUERY)) {
+            resultSet.forEachRemaining(row -> { });
+            assertEquals(ROWS, resultSet.getRowNumber());
+            assertFalse(resultSet.isTruncated());
+        }
+        server.truncateResponses(1, 1000);
+        try (StreamingResultSet resultSet = StreamingQueryExecutor.getResultSet(server.getUrl(), QUERY)) {
+            resultSet.forEachRemaining(row -> { });
+            assertTrue(resultSet.getRowNumber() < ROWS);
+            assertTrue(resultSet.isTruncated());
+        }
+    }
+
+    @Test
+    public void testResume() throws IOException {
+        server.truncateResponses(2, 1000);
+        try (ResumableResultSet resultSet = executor.getResultSet(server.getUrl(), QUERY)) {
+            assertRows(resultSet, 0, ROWS);
+            assertEquals(ROWS, resultSet.getRowNumber());
+            assertEquals(2, resultSet.getResumeCount());
+        }
+        assertEquals(3, server.getQueries().size());
+        long offset = QueryFactory.create(server.getQueries().get(1)).getOffset();
+        assertTrue(offset > 0 && offset < ROWS);
+        assertTrue(QueryFactory.create(server.getQueries().get(2)).getOffset() > offset);
+    }
+
+    @Test
+    public void testLimitAndOffset() throws IOException {
+        server.truncateResponses(1, 1500);
+        try (ResumableResultSet resultSet = executor.getResultSet(server.getUrl(), QUERY + " LIMIT 900 OFFSET 50")) {
+            assertRows(resultSet, 50, 950);
+            assertEquals(1, resultSet.getResumeCount());
+        }
+        Query resumed = QueryFactory.create(server.getQueries().get(1));
+        assertEquals(900, resumed.getLimit() + resumed.getOffset() - 50);
+    }
+
+    @Test
+    public void testSkipDeliveredRows() throws IOException {
+        server.truncateResponses(1, 1000);
+        try (ResumableResultSet resultSet = executor.getResultSet(server.getUrl(), VENDOR_QUERY)) {
+            assertRows(resultSet, 0, ROWS);
+            assertEquals(1, resultSet.getResumeCount());
+        }
+        assertEquals(VENDOR_QUERY, server.getQueries().get(1));
+    }
+
+    @Test
+    public void testRetriesExhausted() throws IOException {
+        server.truncateResponses(3, 1000);
+        executor = ResumableQueryExecutor.builder().backoff(Duration.ofMillis(1)).maxRetries(2).build();
+        try (ResumableResultSet resultSet = executor.getResultSet(server.getUrl(), QUERY)) {
+            // both attempts to resume fail, since their responses are truncated before the header
+            server.truncateResponses(3, 10);
+            while (resultSet.hasNext()) {
+                resultSet.next();
+            }
+            fail("Expected UncheckedIOException");
+        } catch (UncheckedIOException e) {
+            assertEquals(3, server.getQueries().size());
+        }
+    }
+}
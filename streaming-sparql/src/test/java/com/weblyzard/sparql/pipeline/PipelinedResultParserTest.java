@@ -0,0 +1,203 @@
+package com.weblyzard.sparql.pipeline;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import org.apache.jena.ext.com.google.common.collect.Lists;
+import org.apache.jena.graph.Node;
+import org.junit.Test;
+import com.weblyzard.sparql.ResultParser;
+import com.weblyzard.sparql.ResultRow;
+import com.weblyzard.sparql.ResultSetOptions;
+import com.weblyzard.sparql.StreamingResultSet;
+import com.weblyzard.sparql.tsv.TsvMode;
+import com.weblyzard.sparql.tsv.TsvParser;
+
+/**
+ * Tests the {@link PipelinedResultParser} and its {@link SpscRingBuffer}.
+ *
+ * @author Albert Weichselbraun
+ *
+ */
+public class PipelinedResultParserTest {
+
+    private static final int ROWS = 5000;
+
+    @Test
+    public void testRingBuffer() throws InterruptedException {
+        SpscRingBuffer<Integer> buffer = new SpscRingBuffer<>(3);
+        assertNull(buffer.poll());
+        for (int i = 0; i < 4; i++) {
+            buffer.offer(i);
+        }
+        assertFalse(buffer.offer(4));
+        assertEquals(Integer.valueOf(0), buffer.poll());
+
+        // elements are passed in order between threads
+        SpscRingBuffer<Integer> transfer = new SpscRingBuffer<>(2);
+        Thread producer = new Thread(() -> {
+            for (int i = 0; i < ROWS; i++) {
+                while (!transfer.offer(i)) {
+                    Thread.yield();
+                }
+            }
+        });
+        producer.start();
+        for (int i = 0; i < ROWS; i++) {
+            Integer element;
+            while ((element = transfer.poll()) == null) {
+                Thread.yield();
+            }
+            assertEquals(Integer.valueOf(i), element);
+        }
+        producer.join();
+    }
+
+    @Test
+    public void testEquivalence() throws IOException {
+        String tsv = getTsv();
+        for (TsvMode mode : TsvMode.values()) {
+            List<Map<String, Node>> expected = parse(tsv, ResultSetOptions.builder().tsvMode(mode).build());
+            for (int capacity : new int[] {1, 16, PipelinedResultParser.DEFAULT_CAPACITY}) {
+                List<Map<String, Node>> result =
+                        parse(tsv, ResultSetOptions.builder().tsvMode(mode).pipelineCapacity(capacity).build());
+                assertEquals(ROWS, result.size());
+                assertEquals(expected, result);
+            }
+        }
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void testFailure() throws IOException {
+        parse("?s\t?o\n" + "<http://test.org/1>\t\"unterminated\n",
+                ResultSetOptions.builder().pipelineCapacity(4).build());
+    }
+
+    @Test
+    public void testClose() throws Exception {
+        PipelinedResultParser parser =
+                new PipelinedResultParser(new TsvParser(new BufferedReader(new StringReader(getTsv()))), 1);
+        assertEquals(2, parser.getTuple().size());
+        parser.close();
+        parser.producer.get(10, TimeUnit.SECONDS);
+        // the consumer receives the buffered row but does not wait for further rows
+        int remaining = 0;
+        while (parser.getTuple() != null) {
+            remaining++;
+        }
+        assertTrue(remaining <= 1);
+    }
+
+    @Test
+    public void testInterrupt() throws Exception {
+        // a parser which blocks until the test has finished
+        CountDownLatch released = new CountDownLatch(1);
+        ResultParser blockingParser = new TsvParser(new BufferedReader(new StringReader(getTsv()))) {
+            @Override
+            public ResultRow getTuple() {
+                try {
+                    released.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return null;
+            }
+        };
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        PipelinedResultParser parser = new PipelinedResultParser(blockingParser, 4, executor);
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        scheduler.schedule(Thread.currentThread()::interrupt, 100, TimeUnit.MILLISECONDS);
+        try {
+            parser.getTuple();
+            fail("Expected IllegalStateException");
+        } catch (IllegalStateException e) {
+            assertTrue(Thread.interrupted());
+        } finally {
+            released.countDown();
+            executor.shutdown();
+            scheduler.shutdown();
+        }
+        // the background thread has been taken from the given executor
+        parser.producer.get(10, TimeUnit.SECONDS);
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testCloseParallelParser() throws Exception {
+        // an endless response, which keeps the parallel parser busy until it is closed
+        Reader endlessResponse = new Reader() {
+            private final char[] row = "<http://test.org/s>\t\"o\"\n".toCharArray();
+            private int pos = -1;
+
+            @Override
+            public int read(char[] cbuf, int off, int len) {
+                if (pos < 0) {
+                    cbuf[off] = '?';
+                    cbuf[off + 1] = 's';
+                    cbuf[off + 2] = '\t';
+                    cbuf[off + 3] = '?';
+                    cbuf[off + 4] = 'o';
+                    cbuf[off + 5] = '\n';
+                    pos = 0;
+                    return 6;
+                }
+                for (int i = 0; i < len; i++) {
+                    cbuf[off + i] = row[pos++ % row.length];
+                }
+                return len;
+            }
+
+            @Override
+            public void close() {
+                // nothing to close
+            }
+        };
+        ThreadPoolExecutor executor = (ThreadPoolExecutor) Executors.newCachedThreadPool();
+        ResultSetOptions options = ResultSetOptions.builder().tsvMode(TsvMode.CHAR_BUFFER).pipelineCapacity(4)
+                .parallelism(2).executor(executor).build();
+        try {
+            try (StreamingResultSet resultSet = new StreamingResultSet(endlessResponse, options)) {
+                for (int i = 0; i < 10; i++) {
+                    assertEquals(2, resultSet.next().size());
+                }
+            }
+            // the pipeline, the splitter and the parsing threads stop
+            long deadline = System.currentTimeMillis() + 10_000;
+            while (executor.getActiveCount() > 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(0, executor.getActiveCount());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static String getTsv() {
+        StringBuilder tsv = new StringBuilder("?s\t?o\n");
+        for (int i = 0; i < ROWS; i++) {
+            tsv.append("<http://test.org/").append(i).append(">\t\"line\nbreak ").append(i).append("\"@en\n");
+        }
+        return tsv.toString();
+    }
+
+    private static List<Map<String, Node>> parse(String tsv, ResultSetOptions options) throws IOException {
+        try (StreamingResultSet s = new StreamingResultSet(new StringReader(tsv), options)) {
+            return Lists.newArrayList(s);
+        }
+    }
+}
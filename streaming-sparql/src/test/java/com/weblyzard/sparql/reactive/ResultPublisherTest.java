@@ -0,0 +1,201 @@
+package com.weblyzard.sparql.reactive;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import org.apache.jena.sparql.util.NodeFactoryExtra;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import com.weblyzard.sparql.ResultRow;
+import com.weblyzard.sparql.ResultSetOptions;
+import com.weblyzard.sparql.SparqlTestServer;
+import com.weblyzard.sparql.StreamingQueryExecutor;
+
+/**
+ * Tests the demand-driven {@link ResultPublisher}.
+ *
+ * @author Albert Weichselbraun
+ *
+ */
+public class ResultPublisherTest {
+
+    private static final int ROWS = 1000;
+    private static final int LARGE_ROWS = 100000;
+
+    private SparqlTestServer server;
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() throws IOException {
+        String tsv = getTsv(ROWS);
+        String largeTsv = getTsv(LARGE_ROWS);
+        server = new SparqlTestServer(
+                query -> query.contains("FAIL") ? null : query.contains("LARGE") ? largeTsv : tsv);
+        executor = Executors.newFixedThreadPool(2);
+    }
+
+    private static String getTsv(int rows) {
+        StringBuilder tsv = new StringBuilder("?s\t?o\n");
+        for (int i = 0; i < rows; i++) {
+            tsv.append("<http://test.org/").append(i).append(">\t\"").append(i).append("\"\n");
+        }
+        return tsv.toString();
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdown();
+        server.close();
+    }
+
+    @Test
+    public void testBackpressure() throws Exception {
+        ResultPublisher publisher = publish("SELECT ?s ?o WHERE { ?s ?p ?o }");
+        TestSubscriber subscriber = new TestSubscriber();
+        publisher.subscribe(subscriber);
+        assertEquals(2, publisher.getSchema().get(5, TimeUnit.SECONDS).size());
+
+        subscriber.subscription.request(10);
+        subscriber.awaitItems(10);
+        // no further rows are emitted without demand
+        Thread.sleep(100);
+        assertEquals(10, subscriber.items.size());
+        assertFalse(subscriber.completed.await(0, TimeUnit.MILLISECONDS));
+
+        subscriber.subscription.request(Long.MAX_VALUE);
+        assertTrue(subscriber.completed.await(5, TimeUnit.SECONDS));
+        assertEquals(ROWS, subscriber.items.size());
+        assertNull(subscriber.error);
+        for (int i = 0; i < ROWS; i++) {
+            assertEquals(NodeFactoryExtra.parseNode("\"" + i + "\""), subscriber.items.get(i).get("o"));
+        }
+    }
+
+    @Test
+    public void testCancel() throws Exception {
+        ResultPublisher publisher = publish("SELECT ?s ?o WHERE { ?s ?p ?o }");
+        TestSubscriber subscriber = new TestSubscriber();
+        publisher.subscribe(subscriber);
+        subscriber.subscription.request(5);
+        subscriber.awaitItems(5);
+        subscriber.subscription.cancel();
+        subscriber.subscription.request(5);
+        Thread.sleep(100);
+        assertEquals(5, subscriber.items.size());
+        assertFalse(subscriber.completed.await(0, TimeUnit.MILLISECONDS));
+
+        // the publisher accepts only a single subscriber
+        TestSubscriber second = new TestSubscriber();
+        publisher.subscribe(second);
+        assertTrue(second.error instanceof IllegalStateException);
+    }
+
+    @Test
+    public void testCancelStalledResponse() throws Exception {
+        server.stallResponses(2000);
+        // no query timeout, so that only the cancellation ends the stalled read
+        ResultPublisher publisher = StreamingQueryExecutor.getResultPublisher(
+                StreamingQueryExecutor.getDefaultTransport(), server.getUrl(),
+                "SELECT ?s ?o WHERE { ?s ?p ?o } # LARGE", 0, ResultSetOptions.DEFAULT, executor);
+        TestSubscriber subscriber = new TestSubscriber();
+        publisher.subscribe(subscriber);
+        subscriber.subscription.request(Long.MAX_VALUE);
+        long deadline = System.currentTimeMillis() + 5000;
+        while (subscriber.items.isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertFalse(subscriber.items.isEmpty());
+        // the drain loop blocks on the stalled response
+        Thread.sleep(200);
+        ThreadPoolExecutor pool = (ThreadPoolExecutor) executor;
+        assertEquals(1, pool.getActiveCount());
+
+        subscriber.subscription.cancel();
+        deadline = System.currentTimeMillis() + 1000;
+        while (pool.getActiveCount() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, pool.getActiveCount());
+        assertTrue(subscriber.items.size() < LARGE_ROWS);
+        assertNull(subscriber.error);
+        assertFalse(subscriber.completed.await(0, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testErrors() throws Exception {
+        ResultPublisher publisher = publish("FAIL");
+        TestSubscriber subscriber = new TestSubscriber();
+        publisher.subscribe(subscriber);
+        assertTrue(subscriber.completed.await(5, TimeUnit.SECONDS));
+        assertTrue(subscriber.error instanceof IOException);
+        try {
+            publisher.getSchema().get();
+            fail("The schema must not be available.");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+
+        publisher = publish("SELECT ?s ?o WHERE { ?s ?p ?o }");
+        subscriber = new TestSubscriber();
+        publisher.subscribe(subscriber);
+        subscriber.subscription.request(0);
+        assertTrue(subscriber.completed.await(5, TimeUnit.SECONDS));
+        assertTrue(subscriber.error instanceof IllegalArgumentException);
+    }
+
+    private ResultPublisher publish(String query) {
+        return StreamingQueryExecutor.getResultPublisher(StreamingQueryExecutor.getDefaultTransport(),
+                server.getUrl(), query, 1000, ResultSetOptions.DEFAULT, executor);
+    }
+
+    /**
+     * Records the received signals; completed is also counted down on errors.
+     */
+    private static class TestSubscriber implements Subscriber<ResultRow> {
+        private final List<ResultRow> items = new CopyOnWriteArrayList<>();
+        private final CountDownLatch completed = new CountDownLatch(1);
+        private volatile Subscription subscription;
+        private volatile Throwable error;
+
+        @Override
+        public void onSubscribe(Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(ResultRow item) {
+            items.add(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+            completed.countDown();
+        }
+
+        @Override
+        public void onComplete() {
+            completed.countDown();
+        }
+
+        void awaitItems(int count) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + 5000;
+            while (items.size() < count && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(count, items.size());
+        }
+    }
+}
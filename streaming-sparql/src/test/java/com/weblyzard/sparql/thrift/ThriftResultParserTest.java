@@ -0,0 +1,162 @@
+package com.weblyzard.sparql.thrift;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.apache.jena.datatypes.xsd.XSDDatatype;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.query.ResultSetFactory;
+import org.apache.jena.riot.thrift.BinRDF;
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.engine.ResultSetStream;
+import org.apache.jena.sparql.engine.binding.Binding;
+import org.apache.jena.sparql.engine.binding.BindingFactory;
+import org.apache.jena.sparql.engine.binding.BindingMap;
+import org.junit.Test;
+import com.weblyzard.sparql.ResultFormat;
+import com.weblyzard.sparql.ResultRow;
+import com.weblyzard.sparql.ResultSetOptions;
+import com.weblyzard.sparql.SparqlTestServer;
+import com.weblyzard.sparql.StreamingQueryExecutor;
+import com.weblyzard.sparql.StreamingResultSet;
+import com.weblyzard.sparql.transport.HttpClientTransport;
+import com.weblyzard.sparql.transport.Transport;
+import com.weblyzard.sparql.tsv.TsvMode;
+
+/**
+ * Tests the {@link ThriftResultParser}.
+ *
+ * @author Albert Weichselbraun
+ *
+ */
+public class ThriftResultParserTest {
+
+    private static final List<String> VARS = Arrays.asList("s", "o", "x");
+
+    /**
+     * Serializes the given rows with Jena's RDF Thrift writer.
+     */
+    private static byte[] toThrift(List<String> vars, Node[]... rows) {
+        List<Binding> bindings = new ArrayList<>();
+        for (Node[] row : rows) {
+            BindingMap binding = BindingFactory.create();
+            for (int i = 0; i < row.length; i++) {
+                if (row[i] != null) {
+                    binding.add(Var.alloc(vars.get(i)), row[i]);
+                }
+            }
+            bindings.add(binding);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinRDF.writeResultSet(out, new ResultSetStream(vars, null, bindings.iterator()));
+        return out.toByteArray();
+    }
+
+    private static byte[] createResponse() {
+        return toThrift(VARS,
+                new Node[] {NodeFactory.createURI("http://test.org/1"),
+                        NodeFactory.createLiteral("Grüße \"1\"\t\n", "de"), null},
+                new Node[] {NodeFactory.createBlankNode("b0"), NodeFactory.createLiteral("42", XSDDatatype.XSDinteger),
+                        NodeFactory.createLiteral("plain")});
+    }
+
+    @Test
+    public void testParser() throws IOException {
+        ThriftResultParser parser = new ThriftResultParser(new ByteArrayInputStream(createResponse()),
+                ResultSetOptions.DEFAULT);
+        assertArrayEquals(new String[] {"s", "o", "x"}, parser.getResultVars());
+
+        ResultRow row = parser.getTuple();
+        assertEquals(NodeFactory.createURI("http://test.org/1"), row.get("s"));
+        assertEquals(NodeFactory.createLiteral("Grüße \"1\"\t\n", "de"), row.get("o"));
+        assertNull(row.get("x"));
+
+        row = parser.getTuple();
+        assertTrue(row.get("s").isBlank());
+        assertEquals("b0", row.get("s").getBlankNodeLabel());
+        assertEquals(NodeFactory.createLiteral("42", XSDDatatype.XSDinteger), row.get("o"));
+        assertEquals(NodeFactory.createLiteral("plain"), row.get("x"));
+        assertNull(parser.getTuple());
+        assertNull(parser.getTuple());
+    }
+
+    @Test
+    public void testProjection() throws IOException {
+        ThriftResultParser parser = new ThriftResultParser(new ByteArrayInputStream(createResponse()),
+                ResultSetOptions.builder().projection(Collections.singleton("o")).build());
+        assertEquals(1, parser.getTuple().size());
+        ResultRow row = parser.getTuple();
+        assertNull(row.get("s"));
+        assertEquals(NodeFactory.createLiteral("42", XSDDatatype.XSDinteger), row.get("o"));
+        assertNull(parser.getTuple());
+    }
+
+    @Test
+    public void testTruncatedResponse() throws IOException {
+        byte[] response = createResponse();
+        ThriftResultParser parser = new ThriftResultParser(
+                new ByteArrayInputStream(Arrays.copyOf(response, response.length - 3)), ResultSetOptions.DEFAULT);
+        assertEquals(NodeFactory.createURI("http://test.org/1"), parser.getTuple().get("s"));
+        assertNull(parser.getTuple());
+    }
+
+    @Test(expected = IOException.class)
+    public void testMissingHeader() throws IOException {
+        new ThriftResultParser(new ByteArrayInputStream(new byte[0]), ResultSetOptions.DEFAULT);
+    }
+
+    /**
+     * Compares the parser's output with the TSV parser for a response serialized by Jena.
+     */
+    @Test
+    public void testJenaResponse() throws IOException {
+        StringBuilder tsv = new StringBuilder("?s\t?o\n");
+        for (int i = 0; i < 100; i++) {
+            tsv.append("<http://test.org/").append(i).append(">\t\"literal \\\"").append(i).append("\\\"\"@en\n");
+        }
+        ByteArrayOutputStream thrift = new ByteArrayOutputStream();
+        BinRDF.writeResultSet(thrift,
+                ResultSetFactory.fromTSV(new ByteArrayInputStream(tsv.toString().getBytes(StandardCharsets.UTF_8))));
+
+        List<ResultRow> expected = new ArrayList<>();
+        try (StreamingResultSet resultSet = new StreamingResultSet(new StringReader(tsv.toString()),
+                ResultSetOptions.builder().tsvMode(TsvMode.CHAR_BUFFER).build())) {
+            resultSet.forEachRemaining(row -> expected.add((ResultRow) row));
+        }
+        try (StreamingResultSet resultSet = new StreamingResultSet(new ByteArrayInputStream(thrift.toByteArray()),
+                ResultSetOptions.builder().format(ResultFormat.THRIFT).build())) {
+            for (ResultRow row : expected) {
+                assertEquals(row, resultSet.next());
+            }
+            assertTrue(!resultSet.hasNext());
+        }
+    }
+
+    /**
+     * Endpoints which do not support the Thrift format respond with TSV.
+     */
+    @Test
+    public void testTsvFallback() throws IOException {
+        try (SparqlTestServer server = new SparqlTestServer(query -> "?s\n<http://test.org/1>\n");
+                Transport transport = HttpClientTransport.builder().build();
+                StreamingResultSet resultSet = StreamingQueryExecutor.getResultSet(transport, server.getUrl(),
+                        "SELECT ?s WHERE { ?s ?p ?o }", 1000,
+                        ResultSetOptions.builder().format(ResultFormat.THRIFT).build())) {
+            assertEquals("application/sparql-results+thrift, text/tab-separated-values;q=0.9",
+                    server.getRequestHeaders().get(0).getFirst("Accept"));
+            assertEquals(NodeFactory.createURI("http://test.org/1"), resultSet.next().get("s"));
+            assertTrue(!resultSet.hasNext());
+        }
+    }
+}
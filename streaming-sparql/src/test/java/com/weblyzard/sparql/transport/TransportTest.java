@@ -0,0 +1,108 @@
+package com.weblyzard.sparql.transport;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import org.apache.jena.ext.com.google.common.collect.Lists;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.jena.graph.Node;
+import org.junit.Test;
+import com.weblyzard.sparql.ResultSetOptions;
+import com.weblyzard.sparql.SparqlTestServer;
+import com.weblyzard.sparql.StreamingQueryExecutor;
+import com.weblyzard.sparql.StreamingResultSet;
+
+/**
+ * Tests the {@link Transport} implementations against a local SPARQL endpoint.
+ *
+ * @author Albert Weichselbraun
+ *
+ */
+public class TransportTest {
+
+    private static final String TSV_RESPONSE =
+            "?s\t?o\n" + "<http://test.org/1>\t\"o1\"\n" + "<http://test.org/2>\t\"o2\"@en\n";
+
+    @Test
+    public void testTransports() throws IOException {
+        try (SparqlTestServer server =
+                new SparqlTestServer(query -> query.contains("FAIL") ? null : TSV_RESPONSE)) {
+            for (Transport transport : Arrays.asList(new UrlConnectionTransport(1000, 1000),
+                    HttpClientTransport.builder().connectTimeout(1000).readTimeout(1000).build())) {
+                try (Transport t = transport) {
+                    // short queries are sent as GET and long ones as POST requests
+                    String longQuery =
+                            "SELECT ?s ?o WHERE { ?s ?o ?x } #" + new String(new char[4096]).replace('\0', 'x');
+                    for (String query : new String[] {"SELECT ?s ?o WHERE { ?s ?o ?x }", longQuery}) {
+                        assertEquals(2, query(t, server.getUrl(), query).size());
+                        assertEquals(query, server.getQueries().get(server.getQueries().size() - 1));
+                    }
+                    try {
+                        query(t, server.getUrl(), "FAIL");
+                        fail("Server errors must be reported.");
+                    } catch (IOException e) {
+                        assertTrue(e.getMessage().contains("500"));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testConnectionReuse() throws IOException {
+        try (SparqlTestServer server = new SparqlTestServer(query -> TSV_RESPONSE);
+                Transport transport = HttpClientTransport.builder().maxConnectionsPerEndpoint(1)
+                        .endpointConnectionLimit(server.getUrl(), 2).build()) {
+            for (int i = 0; i < 10; i++) {
+                assertEquals(2, query(transport, server.getUrl(), "SELECT ?s ?o WHERE { ?s ?o ?x }").size());
+            }
+            assertEquals(1, server.getClientPorts().size());
+            assertEquals(ResultSetOptions.DEFAULT.getContentDecoders().getAcceptEncoding(),
+                    server.getRequestHeaders().get(0).getFirst("Accept-Encoding"));
+        }
+    }
+
+    @Test
+    public void testExhaustedPool() throws IOException {
+        int maxConnections = 2;
+        List<StreamingResultSet> openResults = new ArrayList<>();
+        StringBuilder largeResponse = new StringBuilder("?s\n");
+        for (int i = 0; i < 100000; i++) {
+            largeResponse.append("<http://test.org/").append(i).append(">\n");
+        }
+        try (SparqlTestServer server = new SparqlTestServer(query -> largeResponse.toString());
+                Transport transport = HttpClientTransport.builder().maxConnectionsPerEndpoint(maxConnections)
+                        .connectTimeout(300).build()) {
+            // partially read responses occupy their connections
+            server.stallResponses(2000);
+            for (int i = 0; i < maxConnections; i++) {
+                openResults.add(StreamingQueryExecutor.getResultSet(transport, server.getUrl(), "SELECT ?s", 0,
+                        ResultSetOptions.DEFAULT));
+            }
+            long start = System.currentTimeMillis();
+            try {
+                StreamingQueryExecutor.getResultSet(transport, server.getUrl(), "SELECT ?s", 0,
+                        ResultSetOptions.DEFAULT);
+                fail("Requests must not wait for a connection indefinitely.");
+            } catch (ConnectionPoolTimeoutException e) {
+                assertTrue(System.currentTimeMillis() - start < 5000);
+            }
+            for (StreamingResultSet resultSet : openResults) {
+                resultSet.cancel();
+                resultSet.close();
+            }
+        }
+    }
+
+    private static List<Map<String, Node>> query(Transport transport, String url, String query) throws IOException {
+        try (StreamingResultSet s =
+                StreamingQueryExecutor.getResultSet(transport, url, query, 1000, ResultSetOptions.DEFAULT)) {
+            return Lists.newArrayList(s);
+        }
+    }
+}
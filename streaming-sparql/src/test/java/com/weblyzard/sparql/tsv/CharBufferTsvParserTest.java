@@ -0,0 +1,104 @@
+package com.weblyzard.sparql.tsv;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+import java.util.Map;
+import org.apache.jena.ext.com.google.common.collect.Lists;
+import org.apache.jena.graph.Node;
+import org.apache.jena.sparql.util.NodeFactoryExtra;
+import org.junit.Test;
+import com.weblyzard.sparql.ResultSetOptions;
+import com.weblyzard.sparql.StreamingResultSet;
+
+/**
+ * Tests the {@link CharBufferTsvParser} against the line based {@link TsvParser}.
+ *
+ * @author Albert Weichselbraun
+ *
+ */
+public class CharBufferTsvParserTest {
+
+    private static final String QUOTED_LITERAL =
+            "\"\"Bruder Klaus\"\" ist der \"\"Schutzpatron\"\" der Schweiz.";
+
+    private static final String[] TSV_RESPONSES = {"?s\t?p\t?o\n",
+        "?s\n" + "<http://test.org/1>\n" + "<http://test.org/1>\n",
+        "?s\t?p\t?o\n" + "<http://test.org/1>\t\t\"o2\"\n", "?s\t?p\t?o\n" + "\t\t\"o2\"\n",
+        "?s\t?p\t?o\n" + "<http://test.org/1>\t\t\n", "?s\t?p\t?o\n" + "\t\t\t\n",
+        String.format("?s\t?p\t?o\n" + "\t\t\"%s\"@en\n", QUOTED_LITERAL),
+        String.format("?s\t?p\t?o\n" + "\"%s\"\t\t\"%s\"^^<http://www.w3.org/2001/XMLSchema#string>\n",
+                QUOTED_LITERAL, QUOTED_LITERAL),
+        "\"s\"\t\"p\"\t\"o\"\n" + "<http://test.org/1>\t<https://www.w3.org/TR/rdf-schema/label>\t\"o1\"\n"
+                + "<http://test.org/2>\t<https://www.w3.org/TR/rdf-schema/label>\t\"o2\"\t\"o21\"\n"
+                + "<http://test.org/3>\t<https://www.w3.org/TR/rdf-schema/label>\t"};
+
+    @Test
+    public void testEquivalenceToLineParser() throws IOException {
+        for (int readAheadSize : new int[] {2, 3, 7, CharBufferTsvParser.DEFAULT_READ_AHEAD_SIZE}) {
+            for (String tsv : TSV_RESPONSES) {
+                List<Map<String, Node>> expected;
+                try (StreamingResultSet s = new StreamingResultSet(new BufferedReader(new StringReader(tsv)))) {
+                    expected = Lists.newArrayList(s);
+                }
+                try (StreamingResultSet s = getResultSet(tsv, readAheadSize)) {
+                    assertEquals(expected, Lists.newArrayList(s));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testHeader() throws IOException {
+        try (StreamingResultSet s = getResultSet("\"s\"\t\"p\"\t\"o\"", 2)) {
+            assertArrayEquals(new String[] {"s", "p", "o"}, s.getResultVars());
+            assertFalse(s.hasNext());
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testEmptyStream() throws IOException {
+        getResultSet("", 16).close();
+    }
+
+    @Test
+    public void testMultilineLiteral() throws IOException {
+        for (int readAheadSize : new int[] {2, 5, CharBufferTsvParser.DEFAULT_READ_AHEAD_SIZE}) {
+            try (StreamingResultSet s = getResultSet(
+                    "?s\t?o\r\n" + "<http://test.org/1>\t\"first\nsecond\r\nthird\"@en\r\n" + "<http://test.org/2>\t\"o2\"",
+                    readAheadSize)) {
+                Map<String, Node> result = s.next();
+                assertEquals("first second third", result.get("o").getLiteralLexicalForm());
+                assertEquals("en", result.get("o").getLiteralLanguage());
+                assertEquals(NodeFactoryExtra.parseNode("<http://test.org/2>"), s.next().get("s"));
+                assertFalse(s.hasNext());
+            }
+        }
+    }
+
+    @Test
+    public void testBackslashEscapes() throws IOException {
+        try (StreamingResultSet s = getResultSet("?o\n" + "\"say \\\"hi\\\"\"\n" + "\"tab\\tnewline\\n\"", 4)) {
+            assertEquals("say \"hi\"", s.next().get("o").getLiteralLexicalForm());
+            assertEquals("tab\tnewline\n", s.next().get("o").getLiteralLexicalForm());
+        }
+    }
+
+    @Test
+    public void testSuperfluousMultilineLiteral() throws IOException {
+        try (StreamingResultSet s = getResultSet("?s\n" + "<http://test.org/1>\t\"a\nb\"\n" + "<http://test.org/2>", 3)) {
+            assertEquals(NodeFactoryExtra.parseNode("<http://test.org/1>"), s.next().get("s"));
+            assertEquals(NodeFactoryExtra.parseNode("<http://test.org/2>"), s.next().get("s"));
+            assertFalse(s.hasNext());
+        }
+    }
+
+    private static StreamingResultSet getResultSet(String tsv, int readAheadSize) throws IOException {
+        return new StreamingResultSet(new StringReader(tsv),
+                ResultSetOptions.builder().tsvMode(TsvMode.CHAR_BUFFER).readAheadSize(readAheadSize).build());
+    }
+}
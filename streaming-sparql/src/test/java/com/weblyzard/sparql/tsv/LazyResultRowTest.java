@@ -0,0 +1,88 @@
+package com.weblyzard.sparql.tsv;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.jena.ext.com.google.common.collect.Lists;
+import org.apache.jena.graph.Node;
+import org.junit.Test;
+import com.weblyzard.sparql.ResultRow;
+import com.weblyzard.sparql.ResultSchema;
+import com.weblyzard.sparql.ResultSetOptions;
+import com.weblyzard.sparql.StreamingResultSet;
+
+/**
+ * Tests the lazy materialization of {@link Node}s.
+ *
+ * @author Albert Weichselbraun
+ *
+ */
+public class LazyResultRowTest {
+
+    private static final String TSV_RESPONSE = "?s\t?p\t?o\n"
+            + "<http://test.org/1>\t<http://www.w3.org/2000/01/rdf-schema#label>\t\"\"\"Chur\"\"\"@de\n"
+            + "<http://test.org/2>\t\t\"multi\nline\"\t\"superfluous\"\n" + "\t\t\n"
+            + "_:b0\t<http://test.org/p>\t\"1\"^^<http://www.w3.org/2001/XMLSchema#int>\n";
+
+    @Test
+    public void testEquivalence() throws IOException {
+        for (TsvMode mode : TsvMode.values()) {
+            List<Map<String, Node>> expected = parse(ResultSetOptions.builder().tsvMode(mode).build());
+            List<Map<String, Node>> lazy =
+                    parse(ResultSetOptions.builder().tsvMode(mode).lazyNodes(true).build());
+            assertEquals(4, lazy.size());
+            assertEquals(expected, lazy);
+        }
+    }
+
+    @Test
+    public void testMemoization() throws IOException {
+        for (TsvMode mode : TsvMode.values()) {
+            try (StreamingResultSet s = new StreamingResultSet(new StringReader(TSV_RESPONSE),
+                    ResultSetOptions.builder().tsvMode(mode).lazyNodes(true).build())) {
+                ResultRow row = s.nextRow();
+                assertTrue(row instanceof LazyResultRow);
+                Node object = row.get("o");
+                assertEquals("\"Chur\"", object.getLiteralLexicalForm());
+                assertSame(object, row.get(2));
+
+                row = s.nextRow();
+                assertFalse(row.containsKey("p"));
+                assertEquals(2, row.size());
+            }
+        }
+    }
+
+    @Test
+    public void testUnparseableCells() {
+        AtomicInteger lookups = new AtomicInteger();
+        TermCache termCache = new TermCache() {
+            @Override
+            public Node get(String term) {
+                lookups.incrementAndGet();
+                return super.get(term);
+            }
+        };
+        ResultRow row = new LazyResultRow(new ResultSchema(new String[] {"s", "o"}),
+                new String[] {"<http://test.org/1>", "not a term"}, termCache);
+        assertNull(row.get("o"));
+        assertNull(row.get(1));
+        assertFalse(row.containsKey("o"));
+        assertEquals(1, row.size());
+        // the failed cell has only been parsed once
+        assertEquals(2, lookups.get());
+    }
+
+    private static List<Map<String, Node>> parse(ResultSetOptions options) throws IOException {
+        try (StreamingResultSet s = new StreamingResultSet(new StringReader(TSV_RESPONSE), options)) {
+            return Lists.newArrayList(s);
+        }
+    }
+}
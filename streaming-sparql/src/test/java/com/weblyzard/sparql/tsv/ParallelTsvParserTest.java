@@ -0,0 +1,161 @@
+package com.weblyzard.sparql.tsv;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import org.apache.jena.ext.com.google.common.collect.Lists;
+import org.apache.jena.graph.Node;
+import org.junit.Test;
+import com.weblyzard.sparql.ResultSetOptions;
+import com.weblyzard.sparql.StreamingResultSet;
+
+/**
+ * Tests the {@link ParallelTsvParser} against the sequential {@link CharBufferTsvParser}.
+ *
+ * @author Albert Weichselbraun
+ *
+ */
+public class ParallelTsvParserTest {
+
+    private static final int ROWS = 2000;
+
+    @Test
+    public void testRowBoundary() {
+        assertEquals(0, ParallelTsvParser.findRowBoundary("<a>\t\"b".toCharArray(), 6));
+        assertEquals(4, ParallelTsvParser.findRowBoundary("<a>\n\"b\nc\"\n<d>".toCharArray(), 8));
+        assertEquals(10, ParallelTsvParser.findRowBoundary("<a>\n\"b\nc\"\n<d>".toCharArray(), 13));
+        // quoted quotes and escapes
+        assertEquals(0, ParallelTsvParser.findRowBoundary("\"\"\"\n\"\n".toCharArray(), 5));
+        assertEquals(6, ParallelTsvParser.findRowBoundary("\"\"\"\n\"\n".toCharArray(), 6));
+        assertEquals(0, ParallelTsvParser.findRowBoundary("\"\\\"\n\"".toCharArray(), 5));
+        // quotes within resources do not start literals
+        assertEquals(5, ParallelTsvParser.findRowBoundary("<\"a>\n".toCharArray(), 5));
+        // CRLF is never split
+        assertEquals(0, ParallelTsvParser.findRowBoundary("<a>\r".toCharArray(), 4));
+        assertEquals(5, ParallelTsvParser.findRowBoundary("<a>\r\n".toCharArray(), 5));
+    }
+
+    @Test
+    public void testEquivalence() throws IOException {
+        String tsv = getTsv();
+        List<Map<String, Node>> expected = parse(tsv, ResultSetOptions.builder().tsvMode(TsvMode.CHAR_BUFFER).build());
+        assertEquals(ROWS, expected.size());
+        for (int chunkSize : new int[] {2, 7, 256, ParallelTsvParser.DEFAULT_CHUNK_SIZE}) {
+            ResultSetOptions options = ResultSetOptions.builder().parallelism(4).build();
+            try (ParallelTsvParser parser = new ParallelTsvParser(new StringReader(tsv), options, chunkSize)) {
+                assertArrayEquals(new String[] {"s", "o"}, parser.getResultVars());
+                List<Map<String, Node>> result = new ArrayList<>();
+                Map<String, Node> row;
+                while ((row = parser.getTuple()) != null) {
+                    result.add(row);
+                }
+                assertEquals(expected, result);
+            }
+        }
+    }
+
+    @Test
+    public void testUnordered() throws IOException {
+        String tsv = getTsv();
+        Comparator<Map<String, Node>> bySubject = Comparator.comparing(row -> row.get("s").getURI());
+        List<Map<String, Node>> expected = parse(tsv, ResultSetOptions.builder().tsvMode(TsvMode.CHAR_BUFFER).build());
+        expected.sort(bySubject);
+        List<Map<String, Node>> result =
+                parse(tsv, ResultSetOptions.builder().parallelism(4).parallelUnordered(true).build());
+        result.sort(bySubject);
+        assertEquals(expected, result);
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void testUnterminatedLiteral() throws IOException {
+        parse("?s\t?o\n" + "<http://test.org/1>\t\"unterminated\n", ResultSetOptions.builder().parallelism(2).build());
+    }
+
+    @Test
+    public void testClose() throws Exception {
+        ParallelTsvParser parser = new ParallelTsvParser(new StringReader(getTsv()),
+                ResultSetOptions.builder().parallelism(1).build(), 16);
+        parser.getTuple();
+        parser.close();
+        parser.splitter.get(10, TimeUnit.SECONDS);
+        // the consumer receives the chunks which have been split before closing
+        while (parser.getTuple() != null) {
+            // skip the remaining rows
+        }
+    }
+
+    @Test
+    public void testLazyStart() throws IOException {
+        // the response is not read before the first access
+        Reader failingReader = new Reader() {
+            @Override
+            public int read(char[] cbuf, int off, int len) throws IOException {
+                throw new IOException("Unexpected read.");
+            }
+
+            @Override
+            public void close() {
+                // nothing to close
+            }
+        };
+        try (ParallelTsvParser parser =
+                new ParallelTsvParser(failingReader, ResultSetOptions.builder().parallelism(2).build())) {
+            assertNull(parser.splitter);
+        }
+
+        // the parsing threads are taken from the given executor
+        ExecutorService executor = Executors.newCachedThreadPool();
+        ResultSetOptions options = ResultSetOptions.builder().parallelism(2).executor(executor).build();
+        try (ParallelTsvParser parser = new ParallelTsvParser(new StringReader(getTsv()), options, 256)) {
+            assertArrayEquals(new String[] {"s", "o"}, parser.getResultVars());
+            int rows = 0;
+            while (parser.getTuple() != null) {
+                rows++;
+            }
+            assertEquals(ROWS, rows);
+        } finally {
+            executor.shutdown();
+        }
+        assertTrue(((ThreadPoolExecutor) executor).getCompletedTaskCount() > 2);
+    }
+
+    private static String getTsv() {
+        StringBuilder tsv = new StringBuilder("?s\t?o\r\n");
+        for (int i = 0; i < ROWS; i++) {
+            tsv.append("<http://test.org/").append(i).append(">\t");
+            switch (i % 4) {
+                case 0:
+                    tsv.append("\"multi\nline\r\n\"\"literal\"\"\n").append(i).append("\"@en\n");
+                    break;
+                case 1:
+                    tsv.append("\"escaped \\\"\n\\\\\"\r\n");
+                    break;
+                case 2:
+                    tsv.append("\"tab\tin literal\"\n");
+                    break;
+                default:
+                    tsv.append(i).append('\n');
+            }
+        }
+        return tsv.toString();
+    }
+
+    private static List<Map<String, Node>> parse(String tsv, ResultSetOptions options) throws IOException {
+        try (StreamingResultSet s = new StreamingResultSet(new StringReader(tsv), options)) {
+            return Lists.newArrayList(s);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.weblyzard.sparql.tsv;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.apache.jena.ext.com.google.common.collect.Lists;
+import org.apache.jena.graph.Node;
+import org.junit.Test;
+import com.weblyzard.sparql.ResultSetOptions;
+import com.weblyzard.sparql.StreamingResultSet;
+
+/**
+ * Tests the column projection of the TSV parsers.
+ *
+ * @author Albert Weichselbraun
+ *
+ */
+public class ProjectionTest {
+
+    private static final String TSV_RESPONSE = "?s\t?abstract\t?o\t?comment\n"
+            + "<http://test.org/1>\t\"first\nsecond \"\"quoted\"\"\tstill\nthird\"@en\t\"o1\"\t\"x\"\"\ty\"\n"
+            + "<http://test.org/2>\t\t\"o2\"\t\n" + "<http://test.org/3>\t\"a\"\t\"o3\"\t\"c\"\t\"superfluous\"\n";
+
+    @Test
+    public void testProjection() throws IOException {
+        Set<String> projection = new HashSet<>(Arrays.asList("s", "o", "unknown"));
+        for (TsvMode mode : TsvMode.values()) {
+            for (int readAheadSize : new int[] {2, 5, CharBufferTsvParser.DEFAULT_READ_AHEAD_SIZE}) {
+                for (boolean lazyNodes : new boolean[] {false, true}) {
+                    ResultSetOptions.ResultSetOptionsBuilder options = ResultSetOptions.builder().tsvMode(mode)
+                            .readAheadSize(readAheadSize).lazyNodes(lazyNodes);
+                    List<Map<String, Node>> expected = parse(options.build()).stream()
+                            .map(row -> row.entrySet().stream().filter(e -> projection.contains(e.getKey()))
+                                    .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue)))
+                            .collect(Collectors.toList());
+                    List<Map<String, Node>> result = parse(options.projection(projection).build());
+                    assertEquals(3, result.size());
+                    assertEquals(expected, result);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testResultVars() throws IOException {
+        try (StreamingResultSet s = new StreamingResultSet(new StringReader(TSV_RESPONSE),
+                ResultSetOptions.builder().projection(new HashSet<>(Arrays.asList("o"))).build())) {
+            assertArrayEquals(new String[] {"s", "abstract", "o", "comment"}, s.getResultVars());
+            assertEquals(1, s.next().size());
+        }
+    }
+
+    private static List<Map<String, Node>> parse(ResultSetOptions options) throws IOException {
+        try (StreamingResultSet s = new StreamingResultSet(new StringReader(TSV_RESPONSE), options)) {
+            return Lists.newArrayList(s);
+        }
+    }
+}
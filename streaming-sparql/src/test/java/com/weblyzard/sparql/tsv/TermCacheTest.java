@@ -0,0 +1,80 @@
+package com.weblyzard.sparql.tsv;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+import java.util.Map;
+import org.apache.jena.ext.com.google.common.collect.Lists;
+import org.apache.jena.graph.Node;
+import org.apache.jena.sparql.util.NodeFactoryExtra;
+import org.junit.Test;
+import com.weblyzard.sparql.ResultSetOptions;
+import com.weblyzard.sparql.StreamingResultSet;
+
+/**
+ * Tests the {@link TermCache}.
+ *
+ * @author Albert Weichselbraun
+ *
+ */
+public class TermCacheTest {
+
+    private static final String TSV_RESPONSE = "?s\t?p\t?o\n"
+            + "<http://test.org/1>\t<http://www.w3.org/2000/01/rdf-schema#label>\t\"Chur\"@de\n"
+            + "<http://test.org/2>\t<http://www.w3.org/2000/01/rdf-schema#label>\t\"Coira\"@it\n"
+            + "<http://test.org/1>\t<http://www.w3.org/2000/01/rdf-schema#label>\t\"Cuira\"@de\n";
+
+    @Test
+    public void testSharedNodes() throws IOException {
+        TermCache cache = new TermCache();
+        for (TsvMode mode : TsvMode.values()) {
+            List<Map<String, Node>> result = parse(mode, cache);
+            assertEquals(3, result.size());
+            // terms are admitted on their second occurrence
+            assertSame(result.get(1).get("p"), result.get(2).get("p"));
+            assertEquals("de", result.get(2).get("o").getLiteralLanguage());
+            assertSame(result.get(0).get("o").getLiteralLanguage(), result.get(2).get("o").getLiteralLanguage());
+
+            // the cache is shared across result sets
+            List<Map<String, Node>> nextResult = parse(mode, cache);
+            assertSame(result.get(1).get("p"), nextResult.get(0).get("p"));
+            assertSame(result.get(2).get("s"), nextResult.get(0).get("s"));
+        }
+    }
+
+    @Test
+    public void testBoundedCache() throws IOException {
+        TermCache cache = new TermCache(1);
+        for (TsvMode mode : TsvMode.values()) {
+            List<Map<String, Node>> expected = parse(mode, null);
+            assertEquals(expected, parse(mode, cache));
+        }
+    }
+
+    @Test
+    public void testCache() {
+        TermCache cache = new TermCache(16);
+        Node node = NodeFactoryExtra.parseNode("<http://test.org/1>");
+        assertNull(cache.get("<http://test.org/1>"));
+        cache.put("<http://test.org/1>", node);
+        assertNull(cache.get("<http://test.org/1>"));
+        cache.put("<http://test.org/1>", node);
+        assertSame(node, cache.get("<http://test.org/1>"));
+
+        // long terms are not cached
+        String longLiteral = "\"" + new String(new char[TermCache.MAX_TERM_LENGTH]).replace('\0', 'x') + "\"";
+        cache.put(longLiteral, NodeFactoryExtra.parseNode(longLiteral));
+        cache.put(longLiteral, NodeFactoryExtra.parseNode(longLiteral));
+        assertNull(cache.get(longLiteral));
+    }
+
+    private static List<Map<String, Node>> parse(TsvMode mode, TermCache cache) throws IOException {
+        try (StreamingResultSet s = new StreamingResultSet(new StringReader(TSV_RESPONSE),
+                ResultSetOptions.builder().tsvMode(mode).termCache(cache).build())) {
+            return Lists.newArrayList(s);
+        }
+    }
+}
@@ -5,13 +5,19 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import org.apache.jena.ext.com.google.common.collect.Lists;
 import org.apache.jena.graph.Node;
 import org.apache.jena.sparql.util.NodeFactoryExtra;
 import org.junit.Test;
 
+import com.weblyzard.sparql.ResultSetOptions;
 import com.weblyzard.sparql.StreamingResultSet;
 
 /**
@@ -125,6 +131,35 @@ public class TsvParserTest {
     	assertEquals("Hallo \"Echo\"!", parseNode.getLiteralValue());
     }
     
+    /**
+     * All {@link TsvMode}s replace newlines within literals with a single space.
+     */
+    @Test
+    public void testMultilineLiteralsInAllModes() throws IOException {
+        String tsv = "?s\t?o\n" + "<http://test.org/1>\t\"multi\nline\"@en\n" + "<http://test.org/2>\t\"end\n\"\n"
+                + "<http://test.org/3>\t\"crlf\r\nline\"\r\n" + "<http://test.org/4>\t\"\n\nblank lines\"\n";
+        List<List<Map<String, Node>>> results = new ArrayList<>();
+        for (TsvMode mode : TsvMode.values()) {
+            for (int parallelism : new int[] {0, 2}) {
+                ResultSetOptions options = ResultSetOptions.builder().tsvMode(mode).parallelism(parallelism).build();
+                ByteArrayInputStream in = new ByteArrayInputStream(tsv.getBytes(StandardCharsets.UTF_8));
+                try (StreamingResultSet resultSet = new StreamingResultSet(in, options)) {
+                    results.add(Lists.newArrayList(resultSet));
+                }
+            }
+        }
+        List<Map<String, Node>> expected = results.get(0);
+        assertEquals(4, expected.size());
+        assertEquals("multi line", expected.get(0).get("o").getLiteralLexicalForm());
+        assertEquals("en", expected.get(0).get("o").getLiteralLanguage());
+        assertEquals("end ", expected.get(1).get("o").getLiteralLexicalForm());
+        assertEquals("crlf line", expected.get(2).get("o").getLiteralLexicalForm());
+        assertEquals("  blank lines", expected.get(3).get("o").getLiteralLexicalForm());
+        for (List<Map<String, Node>> result : results) {
+            assertEquals(expected, result);
+        }
+    }
+
     /**
      * Performs a query and returns the first result tuple.
      */
@@ -0,0 +1,59 @@
+package com.weblyzard.sparql.tsv;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import org.apache.jena.graph.Node;
+import org.apache.jena.sparql.util.NodeFactoryExtra;
+import org.junit.Test;
+
+/**
+ * Verifies that the {@link TsvTermParser} yields the same {@link Node}s as Jena's
+ * {@link NodeFactoryExtra}.
+ *
+ * @author Albert Weichselbraun
+ *
+ */
+public class TsvTermParserTest {
+
+    private static final String[] SUPPORTED_TERMS = {"<http://test.org/1>", "<http://test.org/1> ", "<rel>",
+        "<http://www.htwchur.ch/12#>", "\"o1\"", "\"\"", "\"\"@en", "\"o1\" ", "\"Zürich\"@de-CH", "\"x\"@EN",
+        "\"Hallo \\\"Echo\\\"!\"@de", "\"tab\\tnewline\\n\\\\\"", "\"a\\u00e4\\U0001F687\"",
+        "\"12\"^^<http://www.w3.org/2001/XMLSchema#int>", "\"x\"^^<http://www.w3.org/2001/XMLSchema#string>",
+        "\"zz\"^^<http://www.w3.org/2001/XMLSchema#int>",
+        "\"2019-01-01T10:00:00Z\"^^<http://www.w3.org/2001/XMLSchema#dateTime>", "_:b0", "_:node1abc",
+        "_:a.b-c", "12", "+12", "-1.5", ".5", "1e3", "1.E3", "-2.5e-10", "true", "false"};
+
+    private static final String[] UNSUPPORTED_TERMS = {"...", "1.", "'x'", "\"\"\"x\"\"\"", "<http://a b>",
+        "<http://a/\\u00e4>", "\"x\"@en-", "\"x\"@1en", "_:b.", "\"a\\qb\"", "\"unterminated", "xsd:int",
+        "\"12\"^^xsd:int", "trueish", "1e", "-", ""};
+
+    @Test
+    public void testSupportedTerms() {
+        for (String term : SUPPORTED_TERMS) {
+            Node expected = NodeFactoryExtra.parseNode(term);
+            Node node = TsvTermParser.parse(term);
+            assertNotNull(term, node);
+            assertEquals(term, expected, node);
+            if (expected.isLiteral()) {
+                assertEquals(term, expected.getLiteralLexicalForm(), node.getLiteralLexicalForm());
+                assertEquals(term, expected.getLiteralDatatypeURI(), node.getLiteralDatatypeURI());
+                assertEquals(term, expected.getLiteralLanguage(), node.getLiteralLanguage());
+            }
+        }
+    }
+
+    @Test
+    public void testUnsupportedTerms() {
+        for (String term : UNSUPPORTED_TERMS) {
+            assertNull(term, TsvTermParser.parse(term));
+        }
+    }
+
+    @Test
+    public void testFallbackToJena() {
+        assertEquals(NodeFactoryExtra.parseNode("'x'"), TsvParser.parseNode("'x'").get());
+        assertEquals(NodeFactoryExtra.parseNode("\"\"\"x\"\"\"@en"), TsvParser.parseNode("\"\"\"x\"\"\"@en").get());
+        assertEquals(false, TsvParser.parseNode("...").isPresent());
+    }
+}
@@ -0,0 +1,75 @@
+package com.weblyzard.sparql.tsv;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import org.apache.jena.ext.com.google.common.collect.Lists;
+import org.apache.jena.graph.Node;
+import org.junit.Test;
+import com.weblyzard.sparql.ResultSetOptions;
+import com.weblyzard.sparql.StreamingResultSet;
+
+/**
+ * Tests the byte based {@link Utf8TsvParser}.
+ *
+ * @author Albert Weichselbraun
+ *
+ */
+public class Utf8TsvParserTest {
+
+    private static final String TSV_RESPONSE = "?s\t?label\t?o\n"
+            + "<http://test.org/Zürich>\t\"Zürich – \"\"die Stadt\"\" am See\"@de\t\"12\"^^<http://www.w3.org/2001/XMLSchema#int>\n"
+            + "<http://test.org/東京>\t\"東京\nメトロポリス 🚇\"@ja\t\n"
+            + "\t\t\"Ελλάδα\"\t\"superfluous\"\n"
+            + "<http://test.org/Chur>\t\"Chur\"\t<http://test.org/Graubünden>";
+
+    @Test
+    public void testEquivalenceToCharBufferParser() throws IOException {
+        List<Map<String, Node>> expected;
+        try (StreamingResultSet s = new StreamingResultSet(new StringReader(TSV_RESPONSE),
+                ResultSetOptions.builder().tsvMode(TsvMode.CHAR_BUFFER).build())) {
+            expected = Lists.newArrayList(s);
+        }
+        assertEquals(4, expected.size());
+
+        // small buffers split multi-byte sequences across reads
+        for (int readAheadSize : new int[] {2, 3, 5, Utf8TsvParser.DEFAULT_READ_AHEAD_SIZE}) {
+            try (StreamingResultSet s = getResultSet(TSV_RESPONSE, readAheadSize)) {
+                assertArrayEquals(new String[] {"s", "label", "o"}, s.getResultVars());
+                assertEquals(expected, Lists.newArrayList(s));
+            }
+        }
+    }
+
+    @Test
+    public void testMultiByteLiteral() throws IOException {
+        try (StreamingResultSet s = getResultSet(TSV_RESPONSE, 3)) {
+            assertEquals("Zürich – \"die Stadt\" am See", s.next().get("label").getLiteralLexicalForm());
+            assertEquals("東京 メトロポリス 🚇", s.next().get("label").getLiteralLexicalForm());
+        }
+    }
+
+    @Test
+    public void testEmptyResult() throws IOException {
+        try (StreamingResultSet s = getResultSet("\"s\"\t\"ö\"\r\n", 4)) {
+            assertArrayEquals(new String[] {"s", "ö"}, s.getResultVars());
+            assertFalse(s.hasNext());
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testEmptyStream() throws IOException {
+        getResultSet("", 16).close();
+    }
+
+    private static StreamingResultSet getResultSet(String tsv, int readAheadSize) throws IOException {
+        return new StreamingResultSet(new ByteArrayInputStream(tsv.getBytes(StandardCharsets.UTF_8)),
+                ResultSetOptions.builder().tsvMode(TsvMode.UTF8_BYTES).readAheadSize(readAheadSize).build());
+    }
+}
@@ -0,0 +1,122 @@
+package com.weblyzard.sparql.xml;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.apache.jena.datatypes.xsd.XSDDatatype;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.query.ResultSetFactory;
+import org.apache.jena.query.ResultSetFormatter;
+import org.junit.Test;
+import com.weblyzard.sparql.ResultFormat;
+import com.weblyzard.sparql.ResultRow;
+import com.weblyzard.sparql.ResultSetOptions;
+import com.weblyzard.sparql.StreamingResultSet;
+import com.weblyzard.sparql.tsv.TsvMode;
+
+/**
+ * Tests the {@link XmlResultParser}.
+ *
+ * @author Albert Weichselbraun
+ *
+ */
+public class XmlResultParserTest {
+
+    private static final String XML_RESPONSE = "<?xml version=\"1.0\"?>\n"
+            + "<sparql xmlns=\"http://www.w3.org/2005/sparql-results#\">\n"
+            + "  <head><variable name=\"s\"/><variable name=\"o\"/><variable name=\"x\"/><link href=\"m\"/></head>\n"
+            + "  <results>\n"
+            + "    <result>\n"
+            + "      <binding name=\"s\"><uri>http://test.org/1</uri></binding>\n"
+            + "      <binding name=\"o\"><literal xml:lang=\"de\">Gr&#xFC;&#xDF;e &quot;1&quot; &amp; &lt;2&gt;</literal>"
+            + "</binding>\n"
+            + "    </result>\n"
+            + "    <result>\n"
+            + "      <binding name=\"s\"><bnode>b0</bnode></binding>\n"
+            + "      <binding name=\"o\">"
+            + "<literal datatype=\"http://www.w3.org/2001/XMLSchema#integer\">42</literal></binding>\n"
+            + "      <binding name=\"x\"><literal>line1\nline2</literal></binding>\n"
+            + "    </result>\n"
+            + "  </results>\n"
+            + "</sparql>\n";
+
+    private static XmlResultParser parse(String xml, ResultSetOptions options) throws IOException {
+        InputStream in = new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8));
+        return new XmlResultParser(in, options);
+    }
+
+    @Test
+    public void testParser() throws IOException {
+        XmlResultParser parser = parse(XML_RESPONSE, ResultSetOptions.DEFAULT);
+        assertArrayEquals(new String[] {"s", "o", "x"}, parser.getResultVars());
+
+        ResultRow row = parser.getTuple();
+        assertEquals(NodeFactory.createURI("http://test.org/1"), row.get("s"));
+        assertEquals(NodeFactory.createLiteral("Grüße \"1\" & <2>", "de"), row.get("o"));
+        assertNull(row.get("x"));
+
+        row = parser.getTuple();
+        assertTrue(row.get("s").isBlank());
+        assertEquals("b0", row.get("s").getBlankNodeLabel());
+        assertEquals(NodeFactory.createLiteral("42", XSDDatatype.XSDinteger), row.get("o"));
+        assertEquals(NodeFactory.createLiteral("line1\nline2"), row.get("x"));
+        assertNull(parser.getTuple());
+        assertNull(parser.getTuple());
+    }
+
+    @Test
+    public void testProjection() throws IOException {
+        XmlResultParser parser = parse(XML_RESPONSE,
+                ResultSetOptions.builder().projection(Collections.singleton("o")).build());
+        assertEquals(1, parser.getTuple().size());
+        ResultRow row = parser.getTuple();
+        assertNull(row.get("s"));
+        assertEquals(NodeFactory.createLiteral("42", XSDDatatype.XSDinteger), row.get("o"));
+        assertNull(parser.getTuple());
+    }
+
+    @Test
+    public void testAskResult() throws IOException {
+        XmlResultParser parser = parse("<sparql xmlns=\"http://www.w3.org/2005/sparql-results#\">"
+                + "<head/><boolean>true</boolean></sparql>", ResultSetOptions.DEFAULT);
+        assertEquals(0, parser.getResultVars().length);
+        assertNull(parser.getTuple());
+    }
+
+    /**
+     * Compares the parser's output with the TSV parser for a response serialized by Jena.
+     */
+    @Test
+    public void testJenaResponse() throws IOException {
+        StringBuilder tsv = new StringBuilder("?s\t?o\n");
+        for (int i = 0; i < 100; i++) {
+            tsv.append("<http://test.org/").append(i).append(">\t\"literal \\\"").append(i).append("\\\"\"@en\n");
+        }
+        ByteArrayOutputStream xml = new ByteArrayOutputStream();
+        ResultSetFormatter.outputAsXML(xml,
+                ResultSetFactory.fromTSV(new ByteArrayInputStream(tsv.toString().getBytes(StandardCharsets.UTF_8))));
+
+        List<ResultRow> expected = new ArrayList<>();
+        try (StreamingResultSet resultSet = new StreamingResultSet(new StringReader(tsv.toString()),
+                ResultSetOptions.builder().tsvMode(TsvMode.CHAR_BUFFER).build())) {
+            resultSet.forEachRemaining(row -> expected.add((ResultRow) row));
+        }
+        try (StreamingResultSet resultSet = new StreamingResultSet(new ByteArrayInputStream(xml.toByteArray()),
+                ResultSetOptions.builder().format(ResultFormat.XML).build())) {
+            for (ResultRow row : expected) {
+                assertEquals(row, resultSet.next());
+            }
+            assertTrue(!resultSet.hasNext());
+        }
+    }
+}